@@ -0,0 +1,35 @@
+package com.github.sftwnd.crayfish.alarms.benchmarks;
+
+import com.github.sftwnd.crayfish.common.expectation.Expected;
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import java.time.Instant;
+import java.util.Comparator;
+
+/**
+ * Element of the benchmarks: the time marker with the unique identifier, so the elements with the same time marker
+ * are not merged by the TimeRange
+ */
+public final class Alarm implements Expected<Instant> {
+
+    /** Order of the elements with the same time marker */
+    public static final Comparator<Alarm> ORDER = Comparator.comparingLong(Alarm::getId);
+
+    private final Instant tick;
+    private final long id;
+
+    public Alarm(@NonNull Instant tick, long id) {
+        this.tick = tick;
+        this.id = id;
+    }
+
+    @Override
+    public @NonNull Instant getTick() {
+        return this.tick;
+    }
+
+    public long getId() {
+        return this.id;
+    }
+
+}
@@ -0,0 +1,75 @@
+package com.github.sftwnd.crayfish.alarms.benchmarks;
+
+import com.github.sftwnd.crayfish.alarms.service.AlarmTimeRangeService;
+import com.github.sftwnd.crayfish.alarms.service.IAlarmService;
+import com.github.sftwnd.crayfish.alarms.timerange.ITimeRangeFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * End-to-end latency of AlarmTimeRangeService from addElement of the alarm due now until its delivery to the consumer.
+ * Every benchmark thread is the producer (4 by default, can be changed by -t), the process of the service is shared
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class AlarmServiceLatencyBenchmark {
+
+    private static final Duration DURATION = Duration.ofHours(1);
+    private static final Duration INTERVAL = Duration.ofMillis(100);
+    private static final long FIRE_TIMEOUT_SECONDS = 10;
+
+    private final AtomicLong ids = new AtomicLong();
+    private final Map<Alarm, CompletableFuture<Alarm>> pending = new ConcurrentHashMap<>();
+    private IAlarmService<Alarm, Alarm> alarmService;
+    private CompletableFuture<Void> process;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.alarmService = new AlarmTimeRangeService<>(
+                ITimeRangeFactory.<Alarm>expected(DURATION, INTERVAL, Duration.ZERO, Alarm.ORDER).timeRange(Instant.now()),
+                null
+        );
+        this.process = this.alarmService.processAsync(alarms -> alarms.forEach(alarm -> this.pending.remove(alarm).complete(alarm)), null);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.process.cancel(true);
+    }
+
+    @Benchmark
+    public Alarm registrationToFire() throws InterruptedException, ExecutionException, TimeoutException {
+        Alarm alarm = new Alarm(Instant.now(), this.ids.getAndIncrement());
+        CompletableFuture<Alarm> fired = new CompletableFuture<>();
+        this.pending.put(alarm, fired);
+        this.alarmService.addElement(alarm);
+        return fired.get(FIRE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+}
@@ -0,0 +1,244 @@
+package com.github.sftwnd.crayfish.alarms.benchmarks;
+
+import com.github.sftwnd.crayfish.alarms.service.AlarmSimulation;
+import com.github.sftwnd.crayfish.alarms.service.AlarmTimeRangeService;
+import com.github.sftwnd.crayfish.alarms.timerange.ITimeRangeFactory;
+import com.github.sftwnd.crayfish.alarms.timerange.VirtualTimeSource;
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * Capacity planning by the replay of the alarm traffic through AlarmTimeRangeService in the virtual time. The time
+ * jumps to the next alarm or registration instead of waiting, so the day of the traffic is replayed in minutes. The
+ * report contains the peak pending count, the density of the alarms per bucket of the interval and the processing cost
+ * <pre>
+ *     java -cp benchmarks.jar com.github.sftwnd.crayfish.alarms.benchmarks.CapacitySimulation file=traffic.csv
+ *     java -cp benchmarks.jar com.github.sftwnd.crayfish.alarms.benchmarks.CapacitySimulation profile=DIURNAL rate=1000 duration=P1D
+ * </pre>
+ * Arguments (key=value):
+ * <ul>
+ *     <li>file - recorded traffic: the lines "registration,tick" with ISO-8601 instants in the order of the registration.
+ *         The traffic of the load profile is generated if the file is not set</li>
+ *     <li>profile - STEADY, DIURNAL or HERD (STEADY). CANCEL is replayed as STEADY: the removals are not simulated</li>
+ *     <li>rate - base rate of the registrations in alarms per second (1000)</li>
+ *     <li>duration - duration of the generated load (P1D)</li>
+ *     <li>horizon - maximal distance of the time marker from the registration (PT30S)</li>
+ *     <li>period - period of the DIURNAL profile (the duration)</li>
+ *     <li>range - duration of the TimeRange from the first registration (duration + horizon + 1 minute)</li>
+ *     <li>interval - interval of the TimeRange and the bucket of the density (PT1S)</li>
+ * </ul>
+ */
+public final class CapacitySimulation {
+
+    private static final Instant START = Instant.parse("2023-01-01T00:00:00Z");
+
+    private final Map<String, String> arguments;
+    private final Duration interval;
+
+    private CapacitySimulation(@NonNull Map<String, String> arguments) {
+        this.arguments = arguments;
+        this.interval = Duration.parse(arguments.getOrDefault("interval", "PT1S"));
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> arguments = new HashMap<>();
+        for (String arg : args) {
+            int index = arg.indexOf('=');
+            if (index <= 0) {
+                throw new IllegalArgumentException("CapacitySimulation::main - argument has to be key=value: " + arg);
+            }
+            arguments.put(arg.substring(0, index), arg.substring(index + 1));
+        }
+        new CapacitySimulation(arguments).run();
+    }
+
+    private void run() throws IOException {
+        String file = this.arguments.get("file");
+        if (file == null) {
+            Generated traffic = new Generated(this.arguments);
+            System.out.printf("CapacitySimulation: profile=%s rate=%.0f/s duration=%s horizon=%s%n",
+                    traffic.profile, traffic.rate, traffic.duration, traffic.horizon);
+            simulate(traffic, traffic.duration.plus(traffic.horizon).plus(Duration.ofMinutes(1)));
+        } else {
+            try (BufferedReader reader = Files.newBufferedReader(Path.of(file))) {
+                Recorded traffic = new Recorded(reader);
+                System.out.printf("CapacitySimulation: file=%s%n", file);
+                simulate(traffic, Duration.ofDays(1));
+            }
+        }
+    }
+
+    private void simulate(@NonNull Traffic traffic, @NonNull Duration defaultRange) {
+        Duration range = Duration.parse(this.arguments.getOrDefault("range", defaultRange.toString()));
+        // The range starts at the first registration, the alarms outside of the range are rejected
+        Instant start = traffic.hasNext() ? traffic.start().truncatedTo(ChronoUnit.SECONDS) : START;
+        VirtualTimeSource timeSource = new VirtualTimeSource(start);
+        AlarmTimeRangeService<Registration, Registration> alarmService = new AlarmTimeRangeService<>(
+                ITimeRangeFactory.timed(
+                        ITimeRangeFactory.create(range, this.interval, Duration.ZERO, Registration::getTick, Registration.ORDER),
+                        timeSource
+                ).timeRange(start),
+                Duration.ZERO
+        );
+        AlarmSimulation.Report report = new AlarmSimulation<>(alarmService, Registration::getTick, this.interval)
+                .replay(traffic, Registration::getRegistered, ignore -> {});
+        System.out.printf("CapacitySimulation: simulated=%s elapsed=%s (x%.0f)%n", report.getSimulated(), report.getElapsed(),
+                (double) report.getSimulated().toNanos() / Math.max(1L, report.getElapsed().toNanos()));
+        System.out.printf("  alarms: registered=%d rejected=%d fired=%d peakPending=%d steps=%d%n",
+                report.getRegistered(), report.getRejected(), report.getFired(), report.getPeakPending(), report.getSteps());
+        System.out.printf("  density per %s bucket: buckets=%d mean=%.1f p99=%d max=%d%n", this.interval,
+                report.getDensity().getCount(), report.getDensity().getMean(),
+                report.getDensity().getPercentile(99), report.getDensity().getMax());
+        long alarms = Math.max(1L, report.getRegistered());
+        System.out.printf("  cost: registration=%s (%.0fns/alarm) processing=%s (%.0fns/alarm)%n",
+                report.getRegistrationCost(), (double) report.getRegistrationCost().toNanos() / alarms,
+                report.getProcessingCost(), (double) report.getProcessingCost().toNanos() / alarms);
+    }
+
+    /**
+     * Alarm with the moment of its registration
+     */
+    static final class Registration {
+
+        static final Comparator<Registration> ORDER = Comparator.comparing(registration -> registration.alarm, Alarm.ORDER);
+
+        private final Instant registered;
+        private final Alarm alarm;
+
+        Registration(@NonNull Instant registered, @NonNull Alarm alarm) {
+            this.registered = registered;
+            this.alarm = alarm;
+        }
+
+        @NonNull Instant getRegistered() {
+            return this.registered;
+        }
+
+        @NonNull Instant getTick() {
+            return this.alarm.getTick();
+        }
+
+    }
+
+    private abstract static class Traffic implements Iterator<Registration> {
+
+        abstract @NonNull Instant start();
+
+    }
+
+    // The traffic of the load profile generated second by second, it is not kept in the memory
+    private static final class Generated extends Traffic {
+
+        private final LoadProfile profile;
+        private final double rate;
+        private final Duration duration;
+        private final Duration horizon;
+        private final Duration period;
+        private final Random random = new Random(20170101L);
+        private final Deque<Registration> batch = new ArrayDeque<>();
+        private long second = 0;
+        private long ids = 0;
+        private double debt = 0;
+
+        private Generated(@NonNull Map<String, String> arguments) {
+            this.profile = LoadProfile.valueOf(arguments.getOrDefault("profile", LoadProfile.STEADY.name()).toUpperCase());
+            this.rate = Double.parseDouble(arguments.getOrDefault("rate", "1000"));
+            this.duration = Duration.parse(arguments.getOrDefault("duration", "P1D"));
+            this.horizon = Duration.parse(arguments.getOrDefault("horizon", "PT30S"));
+            this.period = Duration.parse(arguments.getOrDefault("period", this.duration.toString()));
+        }
+
+        @Override
+        @NonNull Instant start() {
+            return START;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (this.batch.isEmpty() && this.second < this.duration.toSeconds()) {
+                Duration elapsed = Duration.ofSeconds(this.second++);
+                Instant now = START.plus(elapsed);
+                this.debt += this.profile.rate(this.rate, elapsed, this.period);
+                for (; this.debt >= 1; this.debt--) {
+                    this.batch.add(new Registration(now, new Alarm(this.profile.tick(now, this.horizon, this.random), this.ids++)));
+                }
+            }
+            return !this.batch.isEmpty();
+        }
+
+        @Override
+        public Registration next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return this.batch.poll();
+        }
+
+    }
+
+    // The traffic read line by line from the file of the recorded traffic
+    private static final class Recorded extends Traffic {
+
+        private final BufferedReader reader;
+        private Registration next;
+        private long ids = 0;
+
+        private Recorded(@NonNull BufferedReader reader) {
+            this.reader = reader;
+            this.next = read();
+        }
+
+        @Override
+        @NonNull Instant start() {
+            return this.next.getRegistered();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.next != null;
+        }
+
+        @Override
+        public Registration next() {
+            if (this.next == null) {
+                throw new NoSuchElementException();
+            }
+            Registration result = this.next;
+            this.next = read();
+            return result;
+        }
+
+        private Registration read() {
+            try {
+                for (String line = this.reader.readLine(); line != null; line = this.reader.readLine()) {
+                    int index = line.indexOf(',');
+                    if (!line.isBlank() && !line.startsWith("#") && index > 0) {
+                        return new Registration(Instant.parse(line.substring(0, index).trim()),
+                                new Alarm(Instant.parse(line.substring(index + 1).trim()), this.ids++));
+                    }
+                }
+                return null;
+            } catch (IOException ioex) {
+                throw new UncheckedIOException(ioex);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,67 @@
+package com.github.sftwnd.crayfish.alarms.benchmarks;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Distribution of the time markers of the registered elements over the range of the Flavour
+ */
+public enum Distribution {
+
+    /** Random time markers over the whole range */
+    UNIFORM {
+        @Override
+        long offset(@NonNull Random random) {
+            return nextLong(random, Flavour.DURATION.toNanos());
+        }
+    },
+    /** Random time markers within the same interval of the range */
+    BURST {
+        @Override
+        long offset(@NonNull Random random) {
+            return Flavour.DURATION.toNanos() / 2 + nextLong(random, Flavour.INTERVAL.toNanos());
+        }
+    },
+    /** Random time markers over the whole range in ascending order */
+    SORTED {
+        @Override
+        long offset(@NonNull Random random) {
+            return UNIFORM.offset(random);
+        }
+        @Override
+        public @NonNull List<Alarm> alarms(@NonNull Instant start, int size) {
+            return super.alarms(start, size).stream()
+                    .sorted(Comparator.comparing(Alarm::getTick))
+                    .collect(Collectors.toList());
+        }
+    };
+
+    // Fixed seed, so the elements are the same from run to run
+    private static final long SEED = 20170101L;
+
+    abstract long offset(@NonNull Random random);
+
+    /**
+     * Generate the elements of the distribution
+     * @param start beginning of the range
+     * @param size number of the elements
+     * @return elements of the distribution
+     */
+    public @NonNull List<Alarm> alarms(@NonNull Instant start, int size) {
+        Random random = new Random(SEED);
+        return IntStream.range(0, size)
+                .mapToObj(id -> new Alarm(start.plusNanos(offset(random)), id))
+                .collect(Collectors.toList());
+    }
+
+    private static long nextLong(@NonNull Random random, long bound) {
+        return Math.floorMod(random.nextLong(), bound);
+    }
+
+}
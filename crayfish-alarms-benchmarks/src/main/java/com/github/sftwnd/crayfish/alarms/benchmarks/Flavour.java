@@ -0,0 +1,76 @@
+package com.github.sftwnd.crayfish.alarms.benchmarks;
+
+import com.github.sftwnd.crayfish.alarms.timerange.ITimeRange;
+import com.github.sftwnd.crayfish.alarms.timerange.ITimeRangeFactory;
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Flavours of ITimeRangeFactory under the benchmark. All the flavours build the range of the same geometry, the
+ * elements are passed to the range in the form required by the flavour
+ */
+public enum Flavour {
+
+    /** ITimeRangeFactory.create with the expectation of the element */
+    CREATE {
+        @Override
+        public @NonNull ITimeRange<Object,Object> timeRange(@NonNull Instant time) {
+            return cast(ITimeRangeFactory.<Alarm>create(DURATION, INTERVAL, COMPLETE_TIMEOUT, Alarm::getTick, Alarm.ORDER).timeRange(time));
+        }
+    },
+    /** ITimeRangeFactory.packable: the element is wrapped into ExpectedPackage on the registration */
+    PACKABLE {
+        @Override
+        public @NonNull ITimeRange<Object,Object> timeRange(@NonNull Instant time) {
+            return cast(ITimeRangeFactory.<Alarm,Instant>packable(DURATION, INTERVAL, COMPLETE_TIMEOUT, Alarm::getTick, Alarm.ORDER).timeRange(time));
+        }
+    },
+    /** ITimeRangeFactory.expected for the Expected elements */
+    EXPECTED {
+        @Override
+        public @NonNull ITimeRange<Object,Object> timeRange(@NonNull Instant time) {
+            return cast(ITimeRangeFactory.<Alarm>expected(DURATION, INTERVAL, COMPLETE_TIMEOUT, Alarm.ORDER).timeRange(time));
+        }
+    },
+    /** ITimeRangeFactory.temporal: the elements are the time markers themselves */
+    TEMPORAL {
+        @Override
+        public @NonNull ITimeRange<Object,Object> timeRange(@NonNull Instant time) {
+            return cast(ITimeRangeFactory.<Instant>temporal(DURATION, INTERVAL, COMPLETE_TIMEOUT, null).timeRange(time));
+        }
+        @Override
+        public @NonNull Object element(@NonNull Alarm alarm) {
+            return alarm.getTick();
+        }
+    };
+
+    /** Duration of the range */
+    public static final Duration DURATION = Duration.ofMinutes(1);
+    /** Interval of the range: the range consists of 60 buckets */
+    public static final Duration INTERVAL = Duration.ofSeconds(1);
+    private static final Duration COMPLETE_TIMEOUT = Duration.ofSeconds(1);
+
+    /**
+     * Create the range of the flavour
+     * @param time beginning of the range
+     * @return range of the flavour
+     */
+    public abstract @NonNull ITimeRange<Object,Object> timeRange(@NonNull Instant time);
+
+    /**
+     * Form of the element required by the flavour
+     * @param alarm the element
+     * @return element to register in the range of the flavour
+     */
+    public @NonNull Object element(@NonNull Alarm alarm) {
+        return alarm;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ITimeRange<Object,Object> cast(@NonNull ITimeRange<?,?> timeRange) {
+        return (ITimeRange<Object,Object>) timeRange;
+    }
+
+}
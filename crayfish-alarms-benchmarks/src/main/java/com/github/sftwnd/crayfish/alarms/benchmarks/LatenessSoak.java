@@ -0,0 +1,200 @@
+package com.github.sftwnd.crayfish.alarms.benchmarks;
+
+import com.github.sftwnd.crayfish.alarms.service.AlarmTimeRangeService;
+import com.github.sftwnd.crayfish.alarms.service.IAlarmService;
+import com.github.sftwnd.crayfish.alarms.timerange.AlarmMetrics;
+import com.github.sftwnd.crayfish.alarms.timerange.ITimeRange;
+import com.github.sftwnd.crayfish.alarms.timerange.ITimeRangeFactory;
+import com.github.sftwnd.crayfish.alarms.timerange.ITimeSource;
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Soak test of the firing lateness of AlarmTimeRangeService under the load profile. The lateness is the time from the
+ * time marker of the alarm until its delivery to the consumer, both taken from the time source of the service. The
+ * alarms rejected on the registration are counted apart from the cancelled ones. The report of the lateness percentiles, the heap usage and
+ * the GC time is printed every report period and at the end of the test
+ * <pre>
+ *     java -cp benchmarks.jar com.github.sftwnd.crayfish.alarms.benchmarks.LatenessSoak profile=HERD rate=5000 duration=PT1H
+ * </pre>
+ * Arguments (key=value):
+ * <ul>
+ *     <li>profile - STEADY, DIURNAL, HERD or CANCEL (STEADY)</li>
+ *     <li>rate - base rate of the registrations in alarms per second (1000)</li>
+ *     <li>duration - duration of the load (PT5M)</li>
+ *     <li>horizon - maximal distance of the time marker from the registration (PT30S)</li>
+ *     <li>period - period of the DIURNAL profile (the duration)</li>
+ *     <li>report - report period (PT10S)</li>
+ * </ul>
+ * The percentiles are the upper bounds of the power of two buckets of AlarmMetrics.Histogram
+ */
+public final class LatenessSoak {
+
+    private static final long PRODUCE_PERIOD_MILLIS = 10;
+    private static final Duration INTERVAL = Duration.ofMillis(100);
+
+    private final LoadProfile profile;
+    private final double rate;
+    private final Duration duration;
+    private final Duration horizon;
+    private final Duration period;
+    private final Duration report;
+    private final Random random = new Random(20170101L);
+    private final AlarmMetrics metrics = new AlarmMetrics();
+    private final AlarmMetrics.Histogram total = new AlarmMetrics.Histogram();
+    private final AtomicReference<AlarmMetrics.Histogram> current = new AtomicReference<>(new AlarmMetrics.Histogram());
+    private final AtomicLong fired = new AtomicLong();
+    private final AtomicLong registered = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    // Registered alarms that are candidates for the removal (producer thread only)
+    private final Deque<Alarm> cancellable = new ArrayDeque<>();
+    private long ids = 0;
+    private double debt = 0;
+    private long gcMillis = gcMillis();
+    // Time source of the service, set before the producer and the consumer are started
+    private ITimeSource timeSource;
+
+    private LatenessSoak(@NonNull Map<String, String> arguments) {
+        this.profile = LoadProfile.valueOf(arguments.getOrDefault("profile", LoadProfile.STEADY.name()).toUpperCase());
+        this.rate = Double.parseDouble(arguments.getOrDefault("rate", "1000"));
+        this.duration = Duration.parse(arguments.getOrDefault("duration", "PT5M"));
+        this.horizon = Duration.parse(arguments.getOrDefault("horizon", "PT30S"));
+        this.period = Duration.parse(arguments.getOrDefault("period", this.duration.toString()));
+        this.report = Duration.parse(arguments.getOrDefault("report", "PT10S"));
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> arguments = new HashMap<>();
+        for (String arg : args) {
+            int index = arg.indexOf('=');
+            if (index <= 0) {
+                throw new IllegalArgumentException("LatenessSoak::main - argument has to be key=value: " + arg);
+            }
+            arguments.put(arg.substring(0, index), arg.substring(index + 1));
+        }
+        new LatenessSoak(arguments).run();
+    }
+
+    private void run() throws InterruptedException {
+        Instant start = ITimeSource.system().instant();
+        // The range covers the whole test including the herd at the minute after the end of the load
+        Duration range = this.duration.plus(this.horizon).plus(Duration.ofMinutes(2));
+        ITimeRange<Alarm, Alarm> timeRange = ITimeRangeFactory.<Alarm>expected(range, INTERVAL, Duration.ZERO, Alarm.ORDER).timeRange(start);
+        this.timeSource = timeRange.getTimeSource();
+        IAlarmService<Alarm, Alarm> alarmService = new AlarmTimeRangeService<>(timeRange, null, this.metrics);
+        CompletableFuture<Void> process = alarmService.processAsync(this::consume, null);
+        System.out.printf("LatenessSoak: profile=%s rate=%.0f/s duration=%s horizon=%s%n", this.profile, this.rate, this.duration, this.horizon);
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
+        try {
+            scheduler.scheduleAtFixedRate(() -> produce(alarmService, start), 0, PRODUCE_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+            scheduler.scheduleAtFixedRate(() -> report(start), this.report.toMillis(), this.report.toMillis(), TimeUnit.MILLISECONDS);
+            Thread.sleep(this.duration.toMillis());
+            scheduler.shutdown();
+            scheduler.awaitTermination(1, TimeUnit.SECONDS);
+            // Wait for the pending alarms
+            Instant drain = this.timeSource.instant().plus(this.horizon).plus(Duration.ofMinutes(1));
+            while (this.fired.get() + this.cancelled.get() + this.rejected.get() < this.registered.get() && this.timeSource.instant().isBefore(drain)) {
+                Thread.sleep(100);
+            }
+        } finally {
+            scheduler.shutdownNow();
+            process.cancel(true);
+        }
+        summary(start);
+    }
+
+    private void produce(@NonNull IAlarmService<Alarm, Alarm> alarmService, @NonNull Instant start) {
+        Instant now = this.timeSource.instant();
+        this.debt += this.profile.rate(this.rate, Duration.between(start, now), this.period) * PRODUCE_PERIOD_MILLIS / 1000.0;
+        int count = (int) this.debt;
+        this.debt -= count;
+        if (count == 0) {
+            return;
+        }
+        List<Alarm> alarms = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            alarms.add(new Alarm(this.profile.tick(now, this.horizon, this.random), this.ids++));
+        }
+        this.registered.addAndGet(count);
+        alarmService.addElements(alarms).thenAccept(refused -> this.rejected.addAndGet(refused.size()));
+        if (this.profile.cancelRatio() > 0) {
+            this.cancellable.addAll(alarms);
+            List<Alarm> removed = new ArrayList<>();
+            // The alarms are removed some time after the registration, when they are still pending
+            while (!this.cancellable.isEmpty() && removed.size() < count * this.profile.cancelRatio()) {
+                Alarm alarm = this.cancellable.pollFirst();
+                if (alarm.getTick().isAfter(now.plus(INTERVAL))) {
+                    removed.add(alarm);
+                }
+            }
+            alarmService.removeElements(removed).thenAccept(missed -> this.cancelled.addAndGet(removed.size() - missed.size()));
+        }
+    }
+
+    private void consume(@NonNull Collection<Alarm> alarms) {
+        Instant now = this.timeSource.instant();
+        AlarmMetrics.Histogram histogram = this.current.get();
+        for (Alarm alarm : alarms) {
+            long lateness = Duration.between(alarm.getTick(), now).toNanos();
+            histogram.record(lateness);
+            this.total.record(lateness);
+        }
+        this.fired.addAndGet(alarms.size());
+    }
+
+    private void report(@NonNull Instant start) {
+        AlarmMetrics.Histogram histogram = this.current.getAndSet(new AlarmMetrics.Histogram());
+        long gc = gcMillis();
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        System.out.printf("%8ds fired=%d registered=%d cancelled=%d rejected=%d pending=%d queue=%d %s heap=%dMiB gc=%dms%n",
+                Duration.between(start, this.timeSource.instant()).toSeconds(), this.fired.get(), this.registered.get(), this.cancelled.get(),
+                this.rejected.get(), this.metrics.getPendingElements(), this.metrics.getQueueDepth(), lateness(histogram),
+                heap.getUsed() >> 20, gc - this.gcMillis);
+        this.gcMillis = gc;
+    }
+
+    private void summary(@NonNull Instant start) {
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        System.out.printf("LatenessSoak: %ds fired=%d registered=%d cancelled=%d rejected=%d %s heap=%dMiB/%dMiB gc=%dms%n",
+                Duration.between(start, this.timeSource.instant()).toSeconds(), this.fired.get(), this.registered.get(), this.cancelled.get(),
+                this.rejected.get(), lateness(this.total), heap.getUsed() >> 20, heap.getMax() >> 20, gcMillis());
+    }
+
+    private static @NonNull String lateness(@NonNull AlarmMetrics.Histogram histogram) {
+        return String.format("lateness[ms] p50=%.3f p99=%.3f p99.9=%.3f max=%.3f",
+                millis(histogram.getPercentile(50)), millis(histogram.getPercentile(99)),
+                millis(histogram.getPercentile(99.9)), millis(histogram.getMax()));
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private static long gcMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionTime)
+                .filter(time -> time > 0)
+                .sum();
+    }
+
+}
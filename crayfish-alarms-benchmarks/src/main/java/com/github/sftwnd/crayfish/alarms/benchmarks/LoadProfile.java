@@ -0,0 +1,71 @@
+package com.github.sftwnd.crayfish.alarms.benchmarks;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Random;
+
+/**
+ * Load profile of the soak test: the rate of the registrations over the time and the time markers of the registered
+ * alarms
+ */
+public enum LoadProfile {
+
+    /** Constant rate, the alarms are spread over the horizon */
+    STEADY,
+    /** The rate follows the day curve compressed to the period: from 20% at night to 180% at noon of the base rate */
+    DIURNAL {
+        @Override
+        double rate(double baseRate, @NonNull Duration elapsed, @NonNull Duration period) {
+            double phase = 2 * Math.PI * elapsed.toNanos() / Math.max(1L, period.toNanos());
+            return baseRate * (1.0 - 0.8 * Math.cos(phase));
+        }
+    },
+    /** Thundering herd: all the alarms registered during the minute are due at the beginning of the next minute */
+    HERD {
+        @Override
+        @NonNull Instant tick(@NonNull Instant now, @NonNull Duration horizon, @NonNull Random random) {
+            return now.truncatedTo(ChronoUnit.MINUTES).plus(1, ChronoUnit.MINUTES);
+        }
+    },
+    /** Constant rate, but most of the alarms are removed before they are due */
+    CANCEL {
+        @Override
+        double cancelRatio() {
+            return 0.8;
+        }
+    };
+
+    /**
+     * Rate of the registrations at the moment of the test
+     * @param baseRate configured rate in alarms per second
+     * @param elapsed time since the beginning of the test
+     * @param period period of the profile
+     * @return rate in alarms per second
+     */
+    double rate(double baseRate, @NonNull Duration elapsed, @NonNull Duration period) {
+        return baseRate;
+    }
+
+    /**
+     * Time marker of the alarm registered at the moment
+     * @param now moment of the registration
+     * @param horizon maximal distance of the time marker from the moment of the registration
+     * @param random source of the randomness
+     * @return time marker of the alarm
+     */
+    @NonNull Instant tick(@NonNull Instant now, @NonNull Duration horizon, @NonNull Random random) {
+        return now.plusNanos(Math.floorMod(random.nextLong(), Math.max(1L, horizon.toNanos())));
+    }
+
+    /**
+     * Part of the registered alarms that are removed before they are due
+     * @return ratio from 0 to 1
+     */
+    double cancelRatio() {
+        return 0.0;
+    }
+
+}
@@ -0,0 +1,65 @@
+package com.github.sftwnd.crayfish.alarms.benchmarks;
+
+import com.github.sftwnd.crayfish.alarms.timerange.ITimeRange;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Throughput of ITimeRange.addElements by the flavour of the factory, the size of the batch and the distribution of the
+ * time markers. The operation is the registration of one batch (elements/s = ops/s * batchSize), the range is cleaned
+ * after every batch, so every batch fills the empty buckets
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimeRangeAddBenchmark {
+
+    @Param({"CREATE", "PACKABLE", "EXPECTED", "TEMPORAL"})
+    private Flavour flavour;
+
+    @Param({"1", "64", "4096"})
+    private int batchSize;
+
+    @Param({"UNIFORM", "BURST", "SORTED"})
+    private Distribution distribution;
+
+    private ITimeRange<Object,Object> timeRange;
+    private List<Object> batch;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Instant start = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        this.timeRange = this.flavour.timeRange(start);
+        this.batch = this.distribution.alarms(start, this.batchSize).stream()
+                .map(this.flavour::element)
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public Collection<Object> addElements() {
+        Collection<Object> rejected = this.timeRange.addElements(this.batch);
+        this.timeRange.clean();
+        return rejected;
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.github.sftwnd.crayfish.alarms.benchmarks;
+
+import com.github.sftwnd.crayfish.alarms.timerange.ITimeRange;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Cost of ITimeRange.extractFiredElements of the whole range by the flavour of the factory and the number of the
+ * elements in every bucket. The extraction empties the range, so BATCH ranges are filled before every iteration
+ * (the filling is not measured) and the single shot extracts all of them: the extraction of one range takes
+ * microseconds, too short to be timed alone. The time of one extraction is score / BATCH. The sorting of the buckets
+ * deferred by addElements is the part of the extraction
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, batchSize = TimeRangeExtractBenchmark.BATCH)
+@Measurement(iterations = 10, batchSize = TimeRangeExtractBenchmark.BATCH)
+@Fork(1)
+public class TimeRangeExtractBenchmark {
+
+    // Number of the ranges extracted by one shot
+    static final int BATCH = 100;
+
+    @Param({"CREATE", "PACKABLE", "EXPECTED", "TEMPORAL"})
+    private Flavour flavour;
+
+    @Param({"1", "16", "256"})
+    private int density;
+
+    private Instant start;
+    private Instant last;
+    private List<Object> elements;
+    private final List<ITimeRange<Object,Object>> timeRanges = new ArrayList<>(BATCH);
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.start = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        this.last = this.start.plus(Flavour.DURATION);
+        int buckets = (int) Flavour.DURATION.dividedBy(Flavour.INTERVAL);
+        long step = Flavour.INTERVAL.toNanos() / this.density;
+        // The elements are spread evenly inside every bucket and are registered in the reverse order
+        this.elements = IntStream.range(0, buckets * this.density)
+                .map(id -> buckets * this.density - 1 - id)
+                .mapToObj(id -> new Alarm(this.start.plus(Flavour.INTERVAL.multipliedBy(id / this.density)).plus(Duration.ofNanos(step * (id % this.density))), id))
+                .map(this.flavour::element)
+                .collect(Collectors.toList());
+    }
+
+    @Setup(Level.Iteration)
+    public void fill() {
+        this.timeRanges.clear();
+        for (int i = 0; i < BATCH; i++) {
+            ITimeRange<Object,Object> timeRange = this.flavour.timeRange(this.start);
+            timeRange.addElements(this.elements);
+            this.timeRanges.add(timeRange);
+        }
+        this.next = 0;
+    }
+
+    @Benchmark
+    public int extractFiredElements(Blackhole blackhole) {
+        return this.timeRanges.get(this.next++).extractFiredElements(this.last, blackhole::consume);
+    }
+
+}
@@ -0,0 +1,118 @@
+package com.github.sftwnd.crayfish.alarms.service;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import lombok.extern.java.Log;
+
+import java.util.Collection;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+
+/**
+ * Dispatch stage between the extraction of the fired alarms and the consumer. The fired alarms are passed to the consumer
+ * on the executor, so the process thread of the service is not delayed by the slow consumer. The number of the pending
+ * (queued or processed) sets of the fired alarms is limited by the capacity, and the overflow policy defines the behaviour
+ * when the limit is reached
+ * <pre>
+ *     alarmService.process(new AlarmDispatcher&lt;&gt;(consumer, executor, 1024, OverflowPolicy.BLOCK));
+ * </pre>
+ * @param <R> type of alarm clock
+ */
+@Log
+public class AlarmDispatcher<R> implements Consumer<Collection<R>> {
+
+    /**
+     * Behaviour of the dispatcher when the number of the pending sets of the fired alarms reaches the capacity
+     */
+    public enum OverflowPolicy {
+        /** The process thread waits for the release of the place in the queue */
+        BLOCK,
+        /** The set of the fired alarms is dropped */
+        DROP,
+        /** The set of the fired alarms is passed to the consumer on the process thread */
+        CALLER_RUNS
+    }
+
+    private final Consumer<Collection<R>> consumer;
+    private final Executor executor;
+    private final OverflowPolicy overflowPolicy;
+    private final Semaphore permits;
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * Construct the dispatch stage
+     * @param consumer handler for a set of triggered alarms
+     * @param executor executor of the handler calls
+     * @param capacity limit of the pending sets of the triggered alarms (not less than 1)
+     * @param overflowPolicy behaviour on the overflow of the limit
+     */
+    public AlarmDispatcher(
+            @NonNull Consumer<Collection<R>> consumer,
+            @NonNull Executor executor,
+                     int capacity,
+            @NonNull OverflowPolicy overflowPolicy
+    ) {
+        this.consumer = Objects.requireNonNull(consumer, "AlarmDispatcher::new - consumer is null");
+        this.executor = Objects.requireNonNull(executor, "AlarmDispatcher::new - executor is null");
+        this.overflowPolicy = Objects.requireNonNull(overflowPolicy, "AlarmDispatcher::new - overflowPolicy is null");
+        this.permits = new Semaphore(Math.max(1, capacity));
+    }
+
+    /**
+     * Pass the set of the triggered alarms to the consumer on the executor according to the overflow policy
+     * @param elements set of the triggered alarms
+     */
+    @Override
+    public void accept(@NonNull Collection<R> elements) {
+        Objects.requireNonNull(elements, "AlarmDispatcher::accept - elements is null");
+        if (this.permits.tryAcquire()) {
+            dispatch(elements);
+        } else if (this.overflowPolicy == OverflowPolicy.DROP) {
+            this.dropped.addAndGet(elements.size());
+            logger.log(Level.WARNING, "AlarmDispatcher::accept - {0} fired alarm(s) dropped on overflow", elements.size());
+        } else if (this.overflowPolicy == OverflowPolicy.CALLER_RUNS) {
+            this.consumer.accept(elements);
+        } else {
+            try {
+                this.permits.acquire();
+            } catch (InterruptedException itrex) {
+                // The alarms are not lost on the stop of the process thread
+                Thread.currentThread().interrupt();
+                this.consumer.accept(elements);
+                return;
+            }
+            dispatch(elements);
+        }
+    }
+
+    /**
+     * Number of the alarms dropped on the overflow by DROP policy
+     * @return number of the dropped alarms
+     */
+    public long getDropped() {
+        return this.dropped.get();
+    }
+
+    private void dispatch(@NonNull Collection<R> elements) {
+        try {
+            this.executor.execute(() -> {
+                try {
+                    this.consumer.accept(elements);
+                } catch (RuntimeException rtex) {
+                    logger.log(Level.WARNING, "AlarmDispatcher::dispatch - consumer failed by cause: {0}", Optional.ofNullable(rtex.getLocalizedMessage()).orElseGet(() -> String.valueOf(rtex)));
+                } finally {
+                    this.permits.release();
+                }
+            });
+        } catch (RejectedExecutionException rjex) {
+            this.permits.release();
+            this.consumer.accept(elements);
+        }
+    }
+
+}
@@ -0,0 +1,323 @@
+package com.github.sftwnd.crayfish.alarms.service;
+
+import com.github.sftwnd.crayfish.alarms.timerange.IAlarmMetrics;
+import com.github.sftwnd.crayfish.alarms.timerange.ITimeRange;
+import com.github.sftwnd.crayfish.alarms.timerange.ITimeRangeFactory;
+import com.github.sftwnd.crayfish.common.expectation.TemporalExtractor;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import lombok.extern.java.Log;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * The service allows you to register alarm clocks for operation according to a schedule and sets them
+ * on fire at the right time for the continuous sequence of the TimeRange windows. The windows are created by
+ * ITimeRangeFactory one after another, the upcoming windows are created ahead of time and the completed ones are retired.
+ * The elements after the last of the upcoming windows are rejected, so the far-future element does not create the window,
+ * as well as the elements of the retired windows. The sequence with the defined end is complete when all its windows are retired
+ * @param <M> type of incoming alarm to register
+ * @param <R> type of alarm clock
+ */
+@Log
+public class AlarmRollingService<M,R> extends AlarmService<M,R> {
+
+    private final ITimeRangeFactory<M,R> timeRangeFactory;
+    private final TemporalExtractor<M, ? extends TemporalAccessor> expectation;
+    // Active windows by the start instant
+    private final NavigableMap<Instant, ITimeRange<M,R>> windows = new TreeMap<>();
+    // The beginning of the first window
+    private final Instant origin;
+    // Size of the window
+    private final Duration window;
+    // Shift of the time passed to the factory relative to the beginning of the created window
+    private final Duration anchor;
+    // Number of the windows created ahead of the current one
+    private final int ahead;
+    // The end of the sequence (null for the endless one)
+    private final Instant end;
+    // Listener of the metrics (null if metrics are disabled)
+    private final IAlarmMetrics metrics;
+    // The windows before this border are retired, it is held by the service so that the retired window is not created again
+    private Instant retired;
+    // Number of the pending elements and of the buckets of the active windows
+    private int pendingElements;
+    private int pendingBuckets;
+
+    /**
+     * Construct IAlarmService for the sequence of ITimeRange windows
+     * @param timeRangeFactory factory of the windows
+     * @param expectation getting timestamp from the incoming element to route it to the window
+     * @param time actual border for plotting the first window
+     * @param ahead number of the upcoming windows created ahead of time and accepting the elements (not less than 1)
+     * @param minimalWait on the timeout less than minimalWait spinCount will be used instead of wait
+     */
+    public AlarmRollingService(
+            @NonNull  ITimeRangeFactory<M,R> timeRangeFactory,
+            @NonNull  TemporalExtractor<M, ? extends TemporalAccessor> expectation,
+            @NonNull  TemporalAccessor time,
+                      int ahead,
+            @Nullable Duration minimalWait
+    ) {
+        this(timeRangeFactory, expectation, time, null, ahead, minimalWait, null);
+    }
+
+    /**
+     * Construct IAlarmService for the sequence of ITimeRange windows with the metrics of the service and the windows
+     * @param timeRangeFactory factory of the windows
+     * @param expectation getting timestamp from the incoming element to route it to the window
+     * @param time actual border for plotting the first window
+     * @param ahead number of the upcoming windows created ahead of time and accepting the elements (not less than 1)
+     * @param minimalWait on the timeout less than minimalWait spinCount will be used instead of wait
+     * @param metrics listener of the metrics
+     */
+    public AlarmRollingService(
+            @NonNull  ITimeRangeFactory<M,R> timeRangeFactory,
+            @NonNull  TemporalExtractor<M, ? extends TemporalAccessor> expectation,
+            @NonNull  TemporalAccessor time,
+                      int ahead,
+            @Nullable Duration minimalWait,
+            @Nullable IAlarmMetrics metrics
+    ) {
+        this(timeRangeFactory, expectation, time, null, ahead, minimalWait, metrics);
+    }
+
+    /**
+     * Construct IAlarmService for the sequence of ITimeRange windows up to the end
+     * @param timeRangeFactory factory of the windows
+     * @param expectation getting timestamp from the incoming element to route it to the window
+     * @param time actual border for plotting the first window
+     * @param end the end of the sequence: the elements after it are rejected and the service is complete when the windows
+     *            before it are retired (null for the endless sequence)
+     * @param ahead number of the upcoming windows created ahead of time and accepting the elements (not less than 1)
+     * @param minimalWait on the timeout less than minimalWait spinCount will be used instead of wait
+     * @param metrics listener of the metrics
+     */
+    public AlarmRollingService(
+            @NonNull  ITimeRangeFactory<M,R> timeRangeFactory,
+            @NonNull  TemporalExtractor<M, ? extends TemporalAccessor> expectation,
+            @NonNull  TemporalAccessor time,
+            @Nullable TemporalAccessor end,
+                      int ahead,
+            @Nullable Duration minimalWait,
+            @Nullable IAlarmMetrics metrics
+    ) {
+        this(
+                Objects.requireNonNull(timeRangeFactory, "AlarmRollingService::new - timeRangeFactory is null")
+                        .timeRange(Objects.requireNonNull(time, "AlarmRollingService::new - time is null")),
+                timeRangeFactory, expectation, time, end, ahead, minimalWait, metrics
+        );
+    }
+
+    // The service uses the time source of the first window
+    private AlarmRollingService(
+            @NonNull  ITimeRange<M,R> first,
+            @NonNull  ITimeRangeFactory<M,R> timeRangeFactory,
+            @NonNull  TemporalExtractor<M, ? extends TemporalAccessor> expectation,
+            @NonNull  TemporalAccessor time,
+            @Nullable TemporalAccessor end,
+                      int ahead,
+            @Nullable Duration minimalWait,
+            @Nullable IAlarmMetrics metrics
+    ) {
+        super(minimalWait, metrics, first.getTimeSource());
+        this.timeRangeFactory = timeRangeFactory;
+        this.expectation = Objects.requireNonNull(expectation, "AlarmRollingService::new - expectation is null");
+        this.origin = first.getStartInstant();
+        this.window = Duration.between(first.getStartInstant(), first.getLastInstant());
+        if (this.window.isZero()) {
+            throw new IllegalArgumentException("AlarmRollingService::new - duration of the window is zero");
+        }
+        this.anchor = Duration.between(first.getStartInstant(), Instant.from(time));
+        this.ahead = Math.max(1, ahead);
+        this.end = end == null ? null : Instant.from(end);
+        this.metrics = metrics;
+        this.retired = this.origin;
+        this.windows.put(this.origin, metered(first));
+    }
+
+    /**
+     * The sequence with the end is complete when all its windows are retired. The endless sequence is stopped
+     * by the interruption of the process thread only
+     * @return true if the windows up to the end are retired
+     */
+    @Override
+    protected boolean isComplete() {
+        return this.end != null && this.windows.isEmpty() && !this.retired.isBefore(this.end);
+    }
+
+    // At the end of the time the window is complete only if it is empty
+    @Override
+    protected boolean isEmpty() {
+        return this.windows.values().stream().allMatch(timeRange -> timeRange.isComplete(Instant.MAX));
+    }
+
+    @Override
+    protected void processFiredElements(int limit, Consumer<Collection<R>> consumer) {
+        Instant now = currentInstant();
+        List<R> fired = new ArrayList<>();
+        Iterator<ITimeRange<M,R>> iterator = this.windows.values().iterator();
+        while (iterator.hasNext()) {
+            ITimeRange<M,R> timeRange = iterator.next();
+            if (timeRange.getStartInstant().isAfter(now)) {
+                break;
+            }
+            if (fired.size() < limit) {
+                timeRange.extractFiredElements(now, limit - fired.size(), fired::add);
+            }
+            if (timeRange.isComplete(now)) {
+                iterator.remove();
+                retire(timeRange);
+            }
+        }
+        prepare(now);
+        if (!fired.isEmpty()) {
+            consumer.accept(fired);
+        }
+    }
+
+    @Override
+    protected Duration durationToFirstAlarm(Instant fromInstant) {
+        Duration result = null;
+        for (ITimeRange<M,R> timeRange : this.windows.values()) {
+            // Windows are ordered by the start, so the later ones can't fire before the found timeout
+            if (result != null && fromInstant.plus(result).isBefore(timeRange.getStartInstant())) {
+                break;
+            }
+            Duration duration = timeRange.duration(fromInstant);
+            if (result == null || duration.compareTo(result) < 0) {
+                result = duration;
+            }
+        }
+        return result == null ? this.window : result;
+    }
+
+    @Override
+    protected Collection<M> registerElements(@NonNull Collection<M> elements) {
+        return route(elements, true, ITimeRange::addElements);
+    }
+
+    @Override
+    protected Collection<M> unregisterElements(@NonNull Collection<M> elements) {
+        return route(elements, false, ITimeRange::removeElements);
+    }
+
+    @Override
+    protected boolean rescheduleElement(@NonNull M element, @NonNull M rescheduled) {
+        ITimeRange<M,R> source = timeRange(element, false);
+        ITimeRange<M,R> target = timeRange(rescheduled, true);
+        if (source == null || target == null) {
+            return false;
+        } else if (source == target) {
+            return source.reschedule(element, rescheduled);
+        } else if (!source.removeElement(element).isEmpty()) {
+            return false;
+        } else if (target.addElement(rescheduled).isEmpty()) {
+            return true;
+        } else {
+            source.addElement(element);
+            return false;
+        }
+    }
+
+    // Distribute the elements between the windows in a single pass and apply the operation to every window once
+    private Collection<M> route(
+            @NonNull Collection<M> elements, boolean create,
+            @NonNull BiFunction<ITimeRange<M,R>, Collection<M>, Collection<M>> operation) {
+        List<M> result = new ArrayList<>();
+        Map<ITimeRange<M,R>, List<M>> routes = new IdentityHashMap<>();
+        for (M element : elements) {
+            ITimeRange<M,R> timeRange = timeRange(element, create);
+            if (timeRange == null) {
+                result.add(element);
+            } else {
+                routes.computeIfAbsent(timeRange, ignore -> new ArrayList<>()).add(element);
+            }
+        }
+        routes.forEach((timeRange, routed) -> result.addAll(operation.apply(timeRange, routed)));
+        return result;
+    }
+
+    // Window that owns the element or null if the window is retired, is after the upcoming windows or after the end
+    // (or is not created when create == false)
+    private @Nullable ITimeRange<M,R> timeRange(@NonNull M element, boolean create) {
+        Instant instant = Instant.from(this.expectation.apply(element));
+        if (instant.isBefore(this.origin) || this.end != null && !instant.isBefore(this.end)) {
+            return null;
+        }
+        long number = Duration.between(this.origin, instant).dividedBy(this.window);
+        if (number > current(currentInstant()) + this.ahead) {
+            return null;
+        }
+        Instant start = this.origin.plus(this.window.multipliedBy(number));
+        ITimeRange<M,R> timeRange = this.windows.get(start);
+        return timeRange == null && create && !start.isBefore(this.retired) ? this.windows.computeIfAbsent(start, this::create) : timeRange;
+    }
+
+    // Create the windows ahead of time up to the defined number of the upcoming windows
+    private void prepare(@NonNull Instant now) {
+        if (!now.isBefore(this.origin)) {
+            Instant start = this.origin.plus(this.window.multipliedBy(current(now)));
+            for (int i = 0; i <= this.ahead && (this.end == null || start.isBefore(this.end)); i++, start = start.plus(this.window)) {
+                if (!start.isBefore(this.retired)) {
+                    this.windows.computeIfAbsent(start, this::create);
+                }
+            }
+        }
+    }
+
+    // The retired window moves the border of the retired windows
+    private void retire(@NonNull ITimeRange<M,R> timeRange) {
+        if (timeRange.getLastInstant().isAfter(this.retired)) {
+            this.retired = timeRange.getLastInstant();
+        }
+    }
+
+    // Number of the window of the moment counting from the first one (0 before the first window)
+    private long current(@NonNull Instant now) {
+        return now.isBefore(this.origin) ? 0L : Duration.between(this.origin, now).dividedBy(this.window);
+    }
+
+    private @NonNull ITimeRange<M,R> create(@NonNull Instant start) {
+        return metered(this.timeRangeFactory.timeRange(start.plus(this.anchor)));
+    }
+
+    // The pending elements of the windows are summed up, the other metrics are passed as is
+    private @NonNull ITimeRange<M,R> metered(@NonNull ITimeRange<M,R> timeRange) {
+        if (this.metrics != null) {
+            timeRange.setMetrics(new WindowMetrics());
+        }
+        return timeRange;
+    }
+
+    private class WindowMetrics implements IAlarmMetrics {
+        private int elements;
+        private int buckets;
+        @Override
+        public void fired(long latenessNanos) {
+            metrics.fired(latenessNanos);
+        }
+        @Override
+        public void pending(int elements, int buckets) {
+            pendingElements += elements - this.elements;
+            pendingBuckets += buckets - this.buckets;
+            this.elements = elements;
+            this.buckets = buckets;
+            metrics.pending(pendingElements, pendingBuckets);
+        }
+    }
+
+}
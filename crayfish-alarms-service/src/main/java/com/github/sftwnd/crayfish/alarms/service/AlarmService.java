@@ -1,5 +1,7 @@
 package com.github.sftwnd.crayfish.alarms.service;
 
+import com.github.sftwnd.crayfish.alarms.timerange.IAlarmMetrics;
+import com.github.sftwnd.crayfish.alarms.timerange.ITimeSource;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.Nullable;
 import lombok.AccessLevel;
@@ -10,16 +12,27 @@ import lombok.extern.java.Log;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 import java.util.logging.Level;
 
 /**
@@ -27,25 +40,76 @@ import java.util.logging.Level;
  * on fire at the right time for the predefined TimeRange
  * @param <M> type of incoming alarm to register
  * @param <R> type of alarm clock
- *
- * P.S. SonarCube: <a href="https://sonarcloud.io/organizations/sftwnd-github/rules?open=java%3AS2274&amp;rule_key=java%3AS2274">java:S2274</a>
  */
 @Log
 public abstract class AlarmService<M,R> extends AbstractAlarmProcessor<R> implements IAlarmService<M,R> {
 
     private static final long DEFAULT_MINIMAL_WAIT_NANOS = Duration.ofMillis(75).toNanos();
-    private final ConcurrentLinkedQueue<RegistrationRequest> registrationQueue = new ConcurrentLinkedQueue<>();
+    private static final Duration DEMAND_WAIT = Duration.ofSeconds(1);
+    private final ConcurrentLinkedQueue<RegistrationRequest<?>> registrationQueue = new ConcurrentLinkedQueue<>();
     private final long minimalWaitNanos;
+    private final ITimeSource timeSource;
+    private final IAlarmMetrics metrics;
+    // The metrics are collected only if the listener is defined
+    private final boolean metered;
+    // Number of the queued registration requests, is counted for the metrics only
+    private final AtomicInteger queueDepth = new AtomicInteger();
 
     /**
      * Construct IAlarmService
      * @param minimalWait on the timeout less than minimalWait spinCount will be used instead of wait
      */
     protected AlarmService(@Nullable Duration minimalWait) {
+        this(minimalWait, null);
+    }
+
+    /**
+     * Construct IAlarmService with the metrics
+     * @param minimalWait on the timeout less than minimalWait spinCount will be used instead of wait
+     * @param metrics listener of the metrics of the service: queue depth, registration latency, rejects and wakeups
+     */
+    protected AlarmService(@Nullable Duration minimalWait, @Nullable IAlarmMetrics metrics) {
+        this(minimalWait, metrics, null);
+    }
+
+    /**
+     * Construct IAlarmService with the metrics and the source of the current moment
+     * @param minimalWait on the timeout less than minimalWait spinCount will be used instead of wait
+     * @param metrics listener of the metrics of the service: queue depth, registration latency, rejects and wakeups
+     * @param timeSource source of the current moment (ITimeSource.system() in the case of null)
+     */
+    protected AlarmService(@Nullable Duration minimalWait, @Nullable IAlarmMetrics metrics, @Nullable ITimeSource timeSource) {
+        this.timeSource = Optional.ofNullable(timeSource).orElseGet(ITimeSource::system);
         this.minimalWaitNanos = Optional.ofNullable(minimalWait)
                 .map(Duration::toNanos)
                 .map(nanos -> Math.max(0L, nanos))
                 .orElse(DEFAULT_MINIMAL_WAIT_NANOS);
+        this.metrics = Optional.ofNullable(metrics).orElse(IAlarmMetrics.NONE);
+        this.metered = this.metrics != IAlarmMetrics.NONE;
+    }
+
+    /**
+     * Source of the current moment of the service
+     * @return time source
+     */
+    protected final @NonNull ITimeSource getTimeSource() {
+        return this.timeSource;
+    }
+
+    /**
+     * Current moment of the time source shifted by the time offset
+     * @return current instant of the process
+     */
+    protected final @NonNull Instant currentInstant() {
+        return ITimeSource.instant(this.timeSource.nanos() + getTimeOffsetNanos());
+    }
+
+    /**
+     * Listener of the metrics of the service
+     * @return listener of the metrics (NONE if the metrics are disabled)
+     */
+    protected @NonNull IAlarmMetrics getMetrics() {
+        return this.metrics;
     }
 
     /**
@@ -55,19 +119,47 @@ public abstract class AlarmService<M,R> extends AbstractAlarmProcessor<R> implem
      */
     @Override
     public CompletionStage<Collection<M>> addElements(@NonNull Collection<M> elements) {
+        if (elements.isEmpty() || isDirectRegistration()) {
+            return request(elements, this::registerMetered);
+        }
+        return enqueue(new ElementsRequest<>(elements, () -> registerMetered(elements)));
+    }
+
+    private Collection<M> registerMetered(@NonNull Collection<M> elements) {
+        Collection<M> rejected = registerElements(elements);
+        if (this.metered && !rejected.isEmpty()) {
+            this.metrics.rejected(rejected.size());
+        }
+        return rejected;
+    }
+
+    /**
+     * Remove pending elements from Service with not found elements in CompletionStage result
+     * @param elements not null collection of elements to remove
+     * @return CompletionStage with not found elements on completion
+     */
+    @Override
+    public CompletionStage<Collection<M>> removeElements(@NonNull Collection<M> elements) {
+        return request(elements, this::unregisterElements);
+    }
+
+    /**
+     * Replace the pending element with the rescheduled one in one step
+     * @param element not null pending element
+     * @param rescheduled not null element with the new time marker
+     * @return CompletionStage with true if the element is rescheduled or false if the pending element is not found
+     *         or the rescheduled one is out of range
+     */
+    @Override
+    public CompletionStage<Boolean> reschedule(@NonNull M element, @NonNull M rescheduled) {
+        Objects.requireNonNull(element, "AlarmService::reschedule - element is null");
+        Objects.requireNonNull(rescheduled, "AlarmService::reschedule - rescheduled is null");
+        return request(() -> rescheduleElement(element, rescheduled), Boolean::booleanValue, Boolean.FALSE);
+    }
+
+    private CompletionStage<Collection<M>> request(@NonNull Collection<M> elements, @NonNull UnaryOperator<Collection<M>> operation) {
         if (!elements.isEmpty()) {
-            RegistrationRequest registrationRequest = registrationRequest(elements);
-            if (syncFlag.get()) {
-                synchronized (registrationQueue) {
-                    if (syncFlag.compareAndSet(true, false)) {
-                        registrationQueue.add(registrationRequest);
-                        registrationQueue.notifyAll();
-                        return registrationRequest.getCompletableFuture().minimalCompletionStage();
-                    }
-                }
-            }
-            registrationQueue.add(registrationRequest);
-            return registrationRequest.getCompletableFuture().minimalCompletionStage();
+            return request(() -> operation.apply(elements), rejected -> rejected.size() < elements.size(), elements);
         } else {
             CompletableFuture<Collection<M>> result = new CompletableFuture<>();
             result.complete(Collections.emptyList());
@@ -75,6 +167,26 @@ public abstract class AlarmService<M,R> extends AbstractAlarmProcessor<R> implem
         }
     }
 
+    // Apply the operation on the process thread or directly if it is allowed
+    private <T> CompletionStage<T> request(@NonNull Supplier<T> operation, @NonNull Predicate<T> changed, T rejected) {
+        if (isDirectRegistration()) {
+            CompletableFuture<T> result = new CompletableFuture<>();
+            result.complete(applyDirectly(operation, changed));
+            return result.minimalCompletionStage();
+        }
+        return enqueue(new RegistrationRequest<>(new CompletableFuture<>(), operation, changed, rejected));
+    }
+
+    // Pass the request to the process thread
+    private <T> CompletionStage<T> enqueue(@NonNull RegistrationRequest<T> registrationRequest) {
+        registrationQueue.add(registrationRequest);
+        if (this.metered) {
+            this.metrics.queued(this.queueDepth.incrementAndGet());
+        }
+        signal();
+        return registrationRequest.getCompletableFuture().minimalCompletionStage();
+    }
+
     /**
      * The process of igniting alarm clocks at a given moment in time
      * @param consumer Handler for a set of triggered alarms
@@ -82,32 +194,110 @@ public abstract class AlarmService<M,R> extends AbstractAlarmProcessor<R> implem
     @Override
     @SneakyThrows
     public final void process(@NonNull Consumer<Collection<R>> consumer, @Nullable Supplier<Duration> timeOffset) {
-        if (!processFlag.compareAndSet(false, true)) {
-            throw new IllegalStateException("AlarmTimeRangeService already in process");
-        }
-        super.process(consumer, timeOffset);
+        start(consumer, timeOffset, Long.MAX_VALUE);
         try {
             processLoop(consumer);
         } catch (InterruptedException itrex) {
             logger.log(Level.WARNING, "AlarmService::process is terminated by cause: {0}", Optional.ofNullable(itrex.getLocalizedMessage()).orElseGet(() -> String.valueOf(itrex)));
             Thread.currentThread().interrupt();
         } finally {
-            this.registrationQueue.forEach(RegistrationRequest::reject);
-            processFlag.set(false);
+            stop();
         }
     }
 
+    /**
+     * Publisher of the fired alarms. The process is started on the executor for the subscriber and the alarms are
+     * extracted only on the demand of the subscriber: undelivered alarms stay in the TimeRange. Just one subscriber
+     * (or process) can be active at the same time, the next one receives IllegalStateException in onError
+     * @param executor executor of the process
+     * @param timeOffset time offset supplier
+     * @return publisher of the fired alarms
+     */
+    public @NonNull Flow.Publisher<R> publisher(@NonNull Executor executor, @Nullable Supplier<Duration> timeOffset) {
+        Objects.requireNonNull(executor, "AlarmService::publisher - executor is null");
+        return subscriber -> {
+            Objects.requireNonNull(subscriber, "AlarmService::subscribe - subscriber is null");
+            executor.execute(() -> publish(subscriber, timeOffset));
+        };
+    }
+
+    private void publish(@NonNull Flow.Subscriber<? super R> subscriber, @Nullable Supplier<Duration> timeOffset) {
+        Consumer<Collection<R>> consumer = elements -> elements.forEach(element -> {
+            this.demand.decrementAndGet();
+            subscriber.onNext(element);
+        });
+        AlarmSubscription subscription = new AlarmSubscription();
+        try {
+            start(consumer, timeOffset, 0L);
+        } catch (IllegalStateException isex) {
+            subscriber.onSubscribe(subscription);
+            subscriber.onError(isex);
+            return;
+        }
+        Throwable failure = null;
+        try {
+            subscriber.onSubscribe(subscription);
+            processLoop(consumer);
+        } catch (InterruptedException itrex) {
+            Thread.currentThread().interrupt();
+            failure = itrex;
+        } catch (RuntimeException rtex) {
+            failure = rtex;
+        } finally {
+            stop();
+        }
+        failure = Optional.ofNullable(failure).orElse(subscription.failure);
+        if (failure != null) {
+            subscriber.onError(failure);
+        } else if (!subscription.cancelled) {
+            subscriber.onComplete();
+        }
+    }
+
+    private void start(@NonNull Consumer<Collection<R>> consumer, @Nullable Supplier<Duration> timeOffset, long initialDemand) {
+        if (!processFlag.compareAndSet(false, true)) {
+            throw new IllegalStateException("AlarmTimeRangeService already in process");
+        }
+        super.process(consumer, timeOffset);
+        this.demand.set(initialDemand);
+        this.stopRequested = false;
+        this.processThread = Thread.currentThread();
+    }
+
+    private void stop() {
+        this.processThread = null;
+        // The requests are polled, so the queue depth follows the rejected requests
+        pollQueued(RegistrationRequest::reject);
+        processFlag.set(false);
+    }
+
     /**
      * Check for completion of processing of all alarms and receptions of new ones
      * @return true if service has to be completed
      */
     protected abstract boolean isComplete();
 
+    /**
+     * Check that there are no pending alarms: all the registered alarms are fired or removed
+     * @return true if there are no pending alarms
+     */
+    protected abstract boolean isEmpty();
+
     /**
      * Ignition of alarms that have worked at the current moment
      * @param consumer Handler for a set of triggered alarms
      */
-    protected abstract void processFiredElements(Consumer<Collection<R>> consumer);
+    protected void processFiredElements(Consumer<Collection<R>> consumer) {
+        processFiredElements(Integer.MAX_VALUE, consumer);
+    }
+
+    /**
+     * Ignition of not more than limit of the alarms that have worked at the current moment. The rest of the alarms
+     * stay pending until the next call
+     * @param limit maximal number of the alarms
+     * @param consumer Handler for a set of triggered alarms
+     */
+    protected abstract void processFiredElements(int limit, Consumer<Collection<R>> consumer);
 
     /**
      * The interval from the specified time until the next alarm goes off
@@ -123,74 +313,314 @@ public abstract class AlarmService<M,R> extends AbstractAlarmProcessor<R> implem
      */
     protected abstract Collection<M> registerElements(@NonNull Collection<M> elements);
 
-    private void processLoop(Consumer<Collection<R>> consumer) throws InterruptedException {
-        while (!isComplete()) {
-            processFiredElements(consumer);
-            Instant now = Instant.now();
-            register(now.plus(durationToFirstAlarm(now.plusNanos(this.getTimeOffsetNanos()))));
+    /**
+     * Remove pending elements
+     * @param elements not null collection of elements to remove
+     * @return elements that were not found
+     */
+    protected abstract Collection<M> unregisterElements(@NonNull Collection<M> elements);
+
+    /**
+     * Replace the pending element with the rescheduled one
+     * @param element not null pending element
+     * @param rescheduled not null element with the new time marker
+     * @return true if the element is rescheduled
+     */
+    protected abstract boolean rescheduleElement(@NonNull M element, @NonNull M rescheduled);
+
+    /**
+     * Check that elements can be registered on the caller thread concurrently with the processing instead of passing
+     * them through the registration queue. The elements registered in this way are not rejected when the process stops
+     * @return true if registerElements can be called by any thread at any time
+     */
+    protected boolean isDirectRegistration() {
+        return false;
+    }
+
+    // Apply the operation on the caller thread and wake up the process thread if its wait has to be shortened
+    private <T> T applyDirectly(@NonNull Supplier<T> operation, @NonNull Predicate<T> changed) {
+        T result = operation.get();
+        if (changed.test(result)) {
+            long now = this.timeSource.nanos();
+            if (until(now, durationToFirstAlarm(ITimeSource.instant(now + getTimeOffsetNanos()))) < this.waitUntil) {
+                wakeUp();
+            }
         }
+        return result;
     }
 
-    private final AtomicBoolean syncFlag = new AtomicBoolean(false);
+    private void wakeUp() {
+        this.wakeUpFlag.set(true);
+        signal();
+    }
+
+    // Unpark the process thread if it waits. The producer publishes the request before the check of the parked flag and
+    // the process thread raises the flag before the last check of the queue, so the wakeup can't be missed
+    private void signal() {
+        if (this.parked) {
+            Thread thread = this.processThread;
+            if (thread != null) {
+                LockSupport.unpark(thread);
+            }
+        }
+    }
 
-    @SuppressWarnings("java:S2274")
-    private @Nullable RegistrationRequest syncNext(Instant until) throws InterruptedException {
-        RegistrationRequest next = this.registrationQueue.poll();
+    private void processLoop(Consumer<Collection<R>> target) throws InterruptedException {
+        Consumer<Collection<R>> consumer = traced(target);
+        while (!this.stopRequested && !isComplete()) {
+            if (this.metered) {
+                this.metrics.wakeUp();
+            }
+            long limit = this.demand.get();
+            if (limit > 0) {
+                processFiredElements((int) Math.min(limit, Integer.MAX_VALUE), consumer);
+            }
+            long now = this.timeSource.nanos();
+            Duration duration = durationToFirstAlarm(ITimeSource.instant(now + getTimeOffsetNanos()));
+            if (duration.isZero() && this.demand.get() == 0) {
+                // The fired alarms wait for the demand, which wakes up the process thread
+                duration = DEMAND_WAIT;
+            }
+            register(until(now, duration));
+        }
+        if (!this.stopRequested) {
+            drain(consumer);
+        }
+    }
+
+    // The requests queued before the completion are applied once before the stop of the process. The requests
+    // queued later are rejected on the stop, so the producers can't keep the complete service running. The requests
+    // are applied one by one: the bulk registration takes the requests while they are queued
+    private void drain(@NonNull Consumer<Collection<R>> consumer) {
+        pollQueued(next -> {
+            next.apply();
+            registered(next);
+        });
+        long limit = this.demand.get();
+        if (limit > 0) {
+            processFiredElements((int) Math.min(limit, Integer.MAX_VALUE), consumer);
+        }
+    }
+
+    // The moment after the duration from now in nanos of the time source, limited by Long.MAX_VALUE
+    private static long until(long now, @NonNull Duration duration) {
+        if (duration.getSeconds() >= Long.MAX_VALUE / 1_000_000_000L) {
+            return Long.MAX_VALUE;
+        }
+        long nanos = duration.toNanos();
+        return now > Long.MAX_VALUE - nanos ? Long.MAX_VALUE : now + nanos;
+    }
+
+    // The calls of the consumer are recorded by JFR
+    private static <R> Consumer<Collection<R>> traced(@NonNull Consumer<Collection<R>> consumer) {
+        return elements -> {
+            AlarmServiceEvents.Consume event = new AlarmServiceEvents.Consume();
+            event.begin();
+            try {
+                consumer.accept(elements);
+            } finally {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.alarms = elements.size();
+                    event.commit();
+                }
+            }
+        };
+    }
+
+    // Number of the alarms requested by the subscriber (MAX for the process with the consumer)
+    private final AtomicLong demand = new AtomicLong(Long.MAX_VALUE);
+    // The subscription is cancelled
+    private volatile boolean stopRequested = false;
+    // The thread of the active process
+    private volatile Thread processThread = null;
+    // The process thread is parked (or is going to be parked) until the registration request or the timeout
+    private volatile boolean parked = false;
+    // The process thread has to recalculate the time of the nearest alarm
+    private final AtomicBoolean wakeUpFlag = new AtomicBoolean(false);
+    // The moment in nanos of the time source until which the process thread waits for the registration requests
+    // (MAX out of the wait)
+    private volatile long waitUntil = Long.MAX_VALUE;
+
+    private @Nullable RegistrationRequest<?> syncNext(long until) throws InterruptedException {
+        RegistrationRequest<?> next = poll();
         if (next == null) {
-            boolean needNext = false;
-            synchronized (this.registrationQueue) {
-                syncFlag.compareAndSet(false, true);
+            long waitNanos = until - this.timeSource.nanos();
+            if (waitNanos > this.minimalWaitNanos) {
+                this.parked = true;
                 try {
-                    next = this.registrationQueue.poll();
-                    if (next == null) {
-                        long waitNanos = Duration.between(Instant.now(), until).toNanos();
-                        if (waitNanos > this.minimalWaitNanos) {
-                            // java:S2274
-                            this.registrationQueue.wait(waitNanos / 1000000, (int) (waitNanos % 1000000));
-                        }
-                        needNext = waitNanos > 0;
+                    next = poll();
+                    if (next == null && !this.wakeUpFlag.get()) {
+                        // Spurious return of parkNanos is handled by the loop of the register method
+                        park(waitNanos);
                     }
                 } finally {
-                    syncFlag.set(false);
+                    this.parked = false;
+                }
+                if (Thread.interrupted()) {
+                    throw new InterruptedException("AlarmService::syncNext - process thread is interrupted");
                 }
             }
-            if (needNext) {
-                next = this.registrationQueue.poll();
+            if (next == null && waitNanos > 0) {
+                next = poll();
             }
         }
         return next;
     }
 
-    private void register(Instant until) throws InterruptedException {
-        Instant instant = Instant.MIN;
-        while (
-            instant.isBefore(until) &&
-            !Optional.ofNullable(syncNext(until)).map(RegistrationRequest::apply).orElse(false)
-        ) {
-             instant = Instant.now();
+    private void park(long waitNanos) {
+        AlarmServiceEvents.Wait event = new AlarmServiceEvents.Wait();
+        long parkNanos = event.isEnabled() ? System.nanoTime() : 0L;
+        event.begin();
+        LockSupport.parkNanos(this, waitNanos);
+        event.end();
+        if (event.shouldCommit()) {
+            event.planned = waitNanos;
+            event.overshoot = System.nanoTime() - parkNanos - waitNanos;
+            event.signalled = this.wakeUpFlag.get() || !this.registrationQueue.isEmpty();
+            event.commit();
+        }
+    }
+
+    private @Nullable RegistrationRequest<?> poll() {
+        RegistrationRequest<?> next = this.registrationQueue.poll();
+        if (next != null && this.metered) {
+            this.metrics.queued(this.queueDepth.decrementAndGet());
+        }
+        return next;
+    }
+
+    // Poll the requests queued at the moment of the call only, so the producers can't keep the thread polling
+    private void pollQueued(@NonNull Consumer<RegistrationRequest<?>> action) {
+        for (int count = this.registrationQueue.size(); count > 0; count--) {
+            RegistrationRequest<?> next = poll();
+            if (next == null) {
+                break;
+            }
+            action.accept(next);
+        }
+    }
+
+    private void register(long until) throws InterruptedException {
+        long now = Long.MIN_VALUE;
+        this.waitUntil = until;
+        try {
+            while (now < until && !this.wakeUpFlag.getAndSet(false)) {
+                RegistrationRequest<?> next = syncNext(until);
+                if (next != null && apply(next)) {
+                    break;
+                }
+                now = this.timeSource.nanos();
+            }
+        } finally {
+            this.waitUntil = Long.MAX_VALUE;
+        }
+    }
+
+    // Apply the request on the process thread. The consecutive queued registrations of the elements are merged into
+    // one bulk registration and the rejected elements are returned to the owner requests
+    @SuppressWarnings("unchecked")
+    private boolean apply(@NonNull RegistrationRequest<?> registrationRequest) {
+        if (!(registrationRequest instanceof ElementsRequest) || !(this.registrationQueue.peek() instanceof ElementsRequest)) {
+            boolean result = registrationRequest.apply();
+            registered(registrationRequest);
+            return result;
+        }
+        List<ElementsRequest<M>> requests = new ArrayList<>();
+        requests.add((ElementsRequest<M>) registrationRequest);
+        // Only the process thread polls the queue, so the peeked request is the polled one
+        while (this.registrationQueue.peek() instanceof ElementsRequest) {
+            requests.add((ElementsRequest<M>) poll());
+        }
+        List<M> elements = new ArrayList<>();
+        requests.forEach(request -> elements.addAll(request.elements));
+        Collection<M> rejected = registerMetered(elements);
+        if (rejected.isEmpty()) {
+            requests.forEach(request -> request.complete(Collections.emptyList()));
+        } else {
+            // The rejected elements are the same instances as the registered ones
+            Map<M, Integer> counts = new IdentityHashMap<>();
+            rejected.forEach(element -> counts.merge(element, 1, Integer::sum));
+            for (ElementsRequest<M> request : requests) {
+                List<M> requestRejected = new ArrayList<>();
+                for (M element : request.elements) {
+                    Integer count = counts.get(element);
+                    if (count != null) {
+                        requestRejected.add(element);
+                        if (count > 1) {
+                            counts.put(element, count - 1);
+                        } else {
+                            counts.remove(element);
+                        }
+                    }
+                }
+                request.complete(requestRejected);
+            }
+        }
+        requests.forEach(this::registered);
+        return rejected.size() < elements.size();
+    }
+
+    private void registered(@NonNull RegistrationRequest<?> registrationRequest) {
+        if (this.metered) {
+            this.metrics.registered(System.nanoTime() - registrationRequest.created);
         }
     }
 
     private final AtomicBoolean processFlag = new AtomicBoolean(false);
 
     @AllArgsConstructor(access = AccessLevel.PRIVATE)
-    private class RegistrationRequest {
-        private final @Getter CompletableFuture<Collection<M>> completableFuture;
-        private final @Getter Collection<M> elements;
+    private static class RegistrationRequest<T> {
+        private final @Getter CompletableFuture<T> completableFuture;
+        private final Supplier<T> operation;
+        // The result of the operation means that the content of the service has been changed
+        private final Predicate<T> changed;
+        // The result in the case of the reject
+        private final T rejected;
+        // The moment of the request in nanos
+        private final long created = System.nanoTime();
         private boolean apply() {
-            Collection<M> rejected = registerElements(elements);
-            completableFuture.complete(rejected);
-            return elements.size() - rejected.size() > 0;
+            T result = operation.get();
+            complete(result);
+            return changed.test(result);
         }
         private void reject() {
-            completableFuture.complete(elements);
+            completableFuture.complete(rejected);
+        }
+        void complete(T result) {
+            completableFuture.complete(result);
         }
     }
-    private RegistrationRequest registrationRequest(@NonNull Collection<M> elements) {
-        return new RegistrationRequest(
-                new CompletableFuture<>(),
-                Objects.requireNonNull(elements, "RegistrationRequest::new - elements is null")
-        );
+
+    private final class AlarmSubscription implements Flow.Subscription {
+        private volatile boolean cancelled = false;
+        private volatile Throwable failure = null;
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                // The error is signalled by the process thread to keep the signals serialized
+                this.failure = new IllegalArgumentException("AlarmService::request - number of the requested alarms has to be positive: " + n);
+                stopRequested = true;
+            } else {
+                demand.accumulateAndGet(n, (current, requested) -> current + requested < 0 ? Long.MAX_VALUE : current + requested);
+            }
+            wakeUp();
+        }
+        @Override
+        public void cancel() {
+            this.cancelled = true;
+            stopRequested = true;
+            wakeUp();
+        }
+    }
+
+    // Registration of the elements that can be merged with the neighbouring ones
+    private static class ElementsRequest<E> extends RegistrationRequest<Collection<E>> {
+        private final Collection<E> elements;
+        private ElementsRequest(@NonNull Collection<E> elements, @NonNull Supplier<Collection<E>> operation) {
+            super(new CompletableFuture<>(), operation, rejected -> rejected.size() < elements.size(), elements);
+            this.elements = elements;
+        }
     }
 
 }
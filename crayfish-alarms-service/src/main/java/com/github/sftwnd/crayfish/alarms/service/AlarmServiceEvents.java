@@ -0,0 +1,51 @@
+package com.github.sftwnd.crayfish.alarms.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Java Flight Recorder events of the AlarmService. The fields are calculated and the event is committed only if the
+ * event is enabled in the active recording
+ */
+final class AlarmServiceEvents {
+
+    static final String CATEGORY = "Crayfish Alarms";
+
+    private AlarmServiceEvents() {
+    }
+
+    @Name("com.github.sftwnd.crayfish.alarms.AlarmServiceWait")
+    @Label("AlarmService Wait")
+    @Description("Wait of the process thread for the nearest alarm or the registration request")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static final class Wait extends Event {
+        @Label("Planned")
+        @Description("Planned duration of the wait")
+        @Timespan(Timespan.NANOSECONDS)
+        long planned;
+        @Label("Overshoot")
+        @Description("Actual duration of the wait minus the planned one, negative if the thread is woken up earlier")
+        @Timespan(Timespan.NANOSECONDS)
+        long overshoot;
+        @Label("Signalled")
+        @Description("The wait is interrupted by the registration request or the wakeup")
+        boolean signalled;
+    }
+
+    @Name("com.github.sftwnd.crayfish.alarms.AlarmServiceConsume")
+    @Label("AlarmService Consume")
+    @Description("Call of the consumer of the fired alarms")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static final class Consume extends Event {
+        @Label("Alarms")
+        int alarms;
+    }
+
+}
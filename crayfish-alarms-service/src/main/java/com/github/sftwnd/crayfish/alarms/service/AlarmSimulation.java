@@ -0,0 +1,259 @@
+package com.github.sftwnd.crayfish.alarms.service;
+
+import com.github.sftwnd.crayfish.alarms.timerange.AlarmMetrics;
+import com.github.sftwnd.crayfish.alarms.timerange.ITimeSource;
+import com.github.sftwnd.crayfish.alarms.timerange.VirtualTimeSource;
+import com.github.sftwnd.crayfish.common.expectation.TemporalExtractor;
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Replay of the recorded alarm traffic through AlarmService in the virtual time. The service has to use
+ * VirtualTimeSource (through its TimeRange). Instead of the waits of the process loop the time jumps straight to the
+ * nearest of the next alarm and the next recorded registration, so the day of the traffic is replayed in minutes.
+ * The simulation runs on the caller thread and the service must not be processed at the same time
+ * @param <M> type of incoming alarm to register
+ * @param <R> type of alarm clock
+ */
+public class AlarmSimulation<M,R> {
+
+    private final AlarmService<M,R> alarmService;
+    private final VirtualTimeSource timeSource;
+    private final TemporalExtractor<M, ? extends TemporalAccessor> expectation;
+    private final long intervalNanos;
+
+    /**
+     * Construct the simulation
+     * @param alarmService the service with VirtualTimeSource
+     * @param expectation getting timestamp from the incoming element
+     * @param interval size of the bucket for the calculation of the density of the alarms
+     */
+    public AlarmSimulation(
+            @NonNull AlarmService<M,R> alarmService,
+            @NonNull TemporalExtractor<M, ? extends TemporalAccessor> expectation,
+            @NonNull Duration interval
+    ) {
+        this.alarmService = Objects.requireNonNull(alarmService, "AlarmSimulation::new - alarmService is null");
+        this.expectation = Objects.requireNonNull(expectation, "AlarmSimulation::new - expectation is null");
+        Objects.requireNonNull(interval, "AlarmSimulation::new - interval is null");
+        if (!(alarmService.getTimeSource() instanceof VirtualTimeSource)) {
+            throw new IllegalArgumentException("AlarmSimulation::new - time source of the service is not virtual");
+        }
+        this.timeSource = (VirtualTimeSource) alarmService.getTimeSource();
+        this.intervalNanos = Math.max(1L, interval.toNanos());
+    }
+
+    /**
+     * Replay the recorded traffic until all the registered alarms are fired. The end of the replay is defined by the
+     * state of the service, so the duplicates merged by the TimeRange do not hold the replay. The number of the pending
+     * alarms is counted by the registered and fired ones and is reset when the service becomes empty, so the peak
+     * pending includes the merged duplicates
+     * @param traffic recorded elements in the order of the registration
+     * @param registration moment of the registration of the element
+     * @param consumer handler for a set of triggered alarms
+     * @return report of the simulation
+     */
+    public @NonNull Report replay(
+            @NonNull Iterator<M> traffic,
+            @NonNull Function<? super M, Instant> registration,
+            @NonNull Consumer<Collection<R>> consumer
+    ) {
+        Objects.requireNonNull(traffic, "AlarmSimulation::replay - traffic is null");
+        Objects.requireNonNull(registration, "AlarmSimulation::replay - registration is null");
+        Objects.requireNonNull(consumer, "AlarmSimulation::replay - consumer is null");
+        Report report = new Report();
+        long started = System.nanoTime();
+        long start = this.timeSource.nanos();
+        Map<Long, Integer> buckets = new HashMap<>();
+        Consumer<Collection<R>> counter = elements -> {
+            report.fired += elements.size();
+            consumer.accept(elements);
+        };
+        M next = traffic.hasNext() ? traffic.next() : null;
+        long pending = 0;
+        while (next != null || !this.alarmService.isEmpty()) {
+            long now = this.timeSource.nanos();
+            long fired = report.fired;
+            long nanos = System.nanoTime();
+            this.alarmService.processFiredElements(counter);
+            report.processingNanos += System.nanoTime() - nanos;
+            pending -= report.fired - fired;
+            // Registration of the elements recorded up to the current moment by one batch
+            List<M> batch = new ArrayList<>();
+            while (next != null && ITimeSource.nanos(registration.apply(next)) <= now) {
+                batch.add(next);
+                next = traffic.hasNext() ? traffic.next() : null;
+            }
+            if (!batch.isEmpty()) {
+                nanos = System.nanoTime();
+                Collection<M> rejects = this.alarmService.registerElements(batch);
+                report.registrationNanos += System.nanoTime() - nanos;
+                int rejected = rejects.size();
+                Set<M> skip = Collections.newSetFromMap(new IdentityHashMap<>());
+                skip.addAll(rejects);
+                batch.stream()
+                        .filter(element -> !skip.contains(element))
+                        .forEach(element -> buckets.merge(bucket(element), 1, Integer::sum));
+                report.registered += batch.size() - rejected;
+                report.rejected += rejected;
+                pending += batch.size() - rejected;
+                report.peakPending = Math.max(report.peakPending, pending);
+                // The registered elements can be fired already
+                continue;
+            }
+            boolean empty = this.alarmService.isEmpty();
+            if (empty) {
+                pending = 0;
+                if (next == null) {
+                    break;
+                }
+            }
+            // Jump to the nearest of the next alarm and the next registration
+            long until = empty ? Long.MAX_VALUE : now + durationNanos(this.alarmService.durationToFirstAlarm(ITimeSource.instant(now)));
+            if (next != null) {
+                until = Math.min(until, ITimeSource.nanos(registration.apply(next)));
+            }
+            this.timeSource.advanceTo(Math.max(until, now + 1));
+            report.steps++;
+        }
+        buckets.values().forEach(report.density::record);
+        report.simulated = Duration.ofNanos(this.timeSource.nanos() - start);
+        report.elapsed = Duration.ofNanos(System.nanoTime() - started);
+        return report;
+    }
+
+    private long bucket(@NonNull M element) {
+        return Math.floorDiv(ITimeSource.nanos(Instant.from(this.expectation.apply(element))), this.intervalNanos);
+    }
+
+    private static long durationNanos(@NonNull Duration duration) {
+        return duration.getSeconds() >= Long.MAX_VALUE / 1_000_000_000L ? Long.MAX_VALUE / 2 : duration.toNanos();
+    }
+
+    /**
+     * Result of the simulation
+     */
+    public static final class Report {
+
+        private long registered = 0;
+        private long rejected = 0;
+        private long fired = 0;
+        private long peakPending = 0;
+        private long steps = 0;
+        private long registrationNanos = 0;
+        private long processingNanos = 0;
+        private final AlarmMetrics.Histogram density = new AlarmMetrics.Histogram();
+        private Duration simulated = Duration.ZERO;
+        private Duration elapsed = Duration.ZERO;
+
+        private Report() {
+        }
+
+        /**
+         * Number of the registered alarms
+         * @return registered alarms
+         */
+        public long getRegistered() {
+            return this.registered;
+        }
+
+        /**
+         * Number of the alarms rejected on the registration
+         * @return rejected alarms
+         */
+        public long getRejected() {
+            return this.rejected;
+        }
+
+        /**
+         * Number of the fired alarms
+         * @return fired alarms
+         */
+        public long getFired() {
+            return this.fired;
+        }
+
+        /**
+         * Maximal number of the pending alarms
+         * @return peak pending alarms
+         */
+        public long getPeakPending() {
+            return this.peakPending;
+        }
+
+        /**
+         * Number of the jumps of the virtual time
+         * @return number of the steps
+         */
+        public long getSteps() {
+            return this.steps;
+        }
+
+        /**
+         * Histogram of the number of the alarms in the bucket of the interval
+         * @return density of the alarms by the buckets
+         */
+        public @NonNull AlarmMetrics.Histogram getDensity() {
+            return this.density;
+        }
+
+        /**
+         * Real time of the registration of the alarms
+         * @return registration cost
+         */
+        public @NonNull Duration getRegistrationCost() {
+            return Duration.ofNanos(this.registrationNanos);
+        }
+
+        /**
+         * Real time of the extraction and the delivery of the fired alarms
+         * @return processing cost
+         */
+        public @NonNull Duration getProcessingCost() {
+            return Duration.ofNanos(this.processingNanos);
+        }
+
+        /**
+         * Period of the virtual time covered by the simulation
+         * @return simulated period
+         */
+        public @NonNull Duration getSimulated() {
+            return this.simulated;
+        }
+
+        /**
+         * Real time of the simulation
+         * @return elapsed time
+         */
+        public @NonNull Duration getElapsed() {
+            return this.elapsed;
+        }
+
+        @Override
+        public String toString() {
+            return "Report{simulated=" + this.simulated + ", elapsed=" + this.elapsed
+                    + ", registered=" + this.registered + ", rejected=" + this.rejected + ", fired=" + this.fired
+                    + ", peakPending=" + this.peakPending + ", steps=" + this.steps
+                    + ", density[max=" + this.density.getMax() + ", mean=" + String.format("%.1f", this.density.getMean())
+                    + ", p99=" + this.density.getPercentile(99) + "]"
+                    + ", registrationCost=" + getRegistrationCost() + ", processingCost=" + getProcessingCost() + "}";
+        }
+
+    }
+
+}
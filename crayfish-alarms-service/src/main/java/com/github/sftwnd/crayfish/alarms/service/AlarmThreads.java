@@ -0,0 +1,70 @@
+package com.github.sftwnd.crayfish.alarms.service;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Threads of the alarm processing. On Java 21+ the virtual threads are used (detected at runtime, so the library
+ * stays compatible with Java 11), otherwise the platform threads. The virtual threads can be disabled by the system
+ * property crayfish.alarms.virtual-threads=false
+ */
+public final class AlarmThreads {
+
+    /** System property to disable the virtual threads */
+    public static final String VIRTUAL_THREADS_PROPERTY = "crayfish.alarms.virtual-threads";
+    private static final String THREAD_NAME_PREFIX = "crayfish-alarm-";
+    private static final AtomicLong THREAD_NUMBER = new AtomicLong();
+    private static final ThreadFactory VIRTUAL_THREAD_FACTORY = virtualThreadFactory();
+    private static final ThreadFactory THREAD_FACTORY = VIRTUAL_THREAD_FACTORY == null
+            ? runnable -> new Thread(runnable, THREAD_NAME_PREFIX + THREAD_NUMBER.getAndIncrement())
+            : VIRTUAL_THREAD_FACTORY;
+
+    private AlarmThreads() {
+    }
+
+    /**
+     * Check that the alarm processing threads are virtual
+     * @return true if the virtual threads are available and are not disabled
+     */
+    public static boolean isVirtual() {
+        return VIRTUAL_THREAD_FACTORY != null;
+    }
+
+    /**
+     * Factory of the alarm processing threads: virtual if available, otherwise platform
+     * @return thread factory
+     */
+    public static @NonNull ThreadFactory threadFactory() {
+        return THREAD_FACTORY;
+    }
+
+    /**
+     * Executor that starts the new thread of the threadFactory for every task. It is useful for the consumer dispatch
+     * with the virtual threads
+     * @return thread per task executor
+     */
+    public static @NonNull Executor executor() {
+        return runnable -> THREAD_FACTORY.newThread(runnable).start();
+    }
+
+    // Thread.ofVirtual().name(prefix, 0).factory() by reflection, null if the virtual threads are not supported
+    private static @Nullable ThreadFactory virtualThreadFactory() {
+        if (!Boolean.parseBoolean(System.getProperty(VIRTUAL_THREADS_PROPERTY, "true"))) {
+            return null;
+        }
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, THREAD_NAME_PREFIX, 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            // Java before 21 or the virtual threads are in the preview mode
+            return null;
+        }
+    }
+
+}
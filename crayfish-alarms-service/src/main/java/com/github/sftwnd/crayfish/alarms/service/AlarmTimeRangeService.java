@@ -1,5 +1,6 @@
 package com.github.sftwnd.crayfish.alarms.service;
 
+import com.github.sftwnd.crayfish.alarms.timerange.IAlarmMetrics;
 import com.github.sftwnd.crayfish.alarms.timerange.ITimeRange;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.Nullable;
@@ -7,19 +8,17 @@ import lombok.extern.java.Log;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Objects;
-import java.util.Optional;
 import java.util.function.Consumer;
-import java.util.function.Predicate;
 
 /**
  * The service allows you to register alarm clocks for operation according to a schedule and sets them
  * on fire at the right time for the predefined TimeRange
  * @param <M> type of incoming alarm to register
  * @param <R> type of alarm clock
- *
- * P.S. SonarCube: <a href="https://sonarcloud.io/organizations/sftwnd-github/rules?open=java%3AS2274&amp;rule_key=java%3AS2274">java:S2274</a>
  */
 @Log
 public class AlarmTimeRangeService<M,R> extends AlarmService<M, R> {
@@ -35,20 +34,44 @@ public class AlarmTimeRangeService<M,R> extends AlarmService<M, R> {
             @NonNull ITimeRange<M, R> timeRange,
             @Nullable Duration minimalWait
     ) {
-        super(minimalWait);
-        this.timeRange = Objects.requireNonNull(timeRange, "AlarmTimeRangeService::new - timeRange is null");
+        this(timeRange, minimalWait, null);
+    }
+
+    /**
+     * Construct IAlarmService for just one ITimeRange with the metrics of the service and the range
+     * @param timeRange predefined ITimeRange
+     * @param minimalWait on the timeout less than minimalWait spinCount will be used instead of wait
+     * @param metrics listener of the metrics
+     */
+    public AlarmTimeRangeService(
+            @NonNull ITimeRange<M, R> timeRange,
+            @Nullable Duration minimalWait,
+            @Nullable IAlarmMetrics metrics
+    ) {
+        super(minimalWait, metrics, Objects.requireNonNull(timeRange, "AlarmTimeRangeService::new - timeRange is null").getTimeSource());
+        this.timeRange = timeRange;
+        if (metrics != null) {
+            this.timeRange.setMetrics(metrics);
+        }
     }
 
     @Override
     protected boolean isComplete() {
-        return this.timeRange.isComplete(Instant.now().plusNanos(this.getTimeOffsetNanos()));
+        return this.timeRange.isComplete(currentInstant());
     }
 
+    // At the end of the time the range is complete only if it is empty
     @Override
-    protected void processFiredElements(Consumer<Collection<R>> consumer) {
-        Optional.of(timeRange.extractFiredElements(Instant.now().plusNanos(this.getTimeOffsetNanos())))
-                .filter(Predicate.not(Collection::isEmpty))
-                .ifPresent(consumer);
+    protected boolean isEmpty() {
+        return this.timeRange.isComplete(Instant.MAX);
+    }
+
+    @Override
+    protected void processFiredElements(int limit, Consumer<Collection<R>> consumer) {
+        List<R> fired = new ArrayList<>();
+        if (timeRange.extractFiredElements(currentInstant(), limit, fired::add) > 0) {
+            consumer.accept(fired);
+        }
     }
 
     @Override
@@ -61,4 +84,19 @@ public class AlarmTimeRangeService<M,R> extends AlarmService<M, R> {
         return this.timeRange.addElements(elements);
     }
 
+    @Override
+    protected Collection<M> unregisterElements(@NonNull Collection<M> elements) {
+        return this.timeRange.removeElements(elements);
+    }
+
+    @Override
+    protected boolean rescheduleElement(@NonNull M element, @NonNull M rescheduled) {
+        return this.timeRange.reschedule(element, rescheduled);
+    }
+
+    @Override
+    protected boolean isDirectRegistration() {
+        return this.timeRange.isThreadSafe();
+    }
+
 }
\ No newline at end of file
@@ -30,5 +30,30 @@ public interface IAlarmConsumer<E> {
                 .thenApply(reject -> reject.stream().findFirst().orElse(null));
     }
 
+    /**
+     * Remove pending elements from Service with not found elements in CompletionStage result
+     * @param elements not null collection of elements to remove
+     * @return CompletionStage with not found elements on completion
+     */
+    CompletionStage<Collection<E>> removeElements(@NonNull Collection<E> elements);
+
+    /**
+     * Remove single pending element from Service with not found element in CompletionStage result
+     * @param element not null element to remove
+     * @return CompletionStage with value in the case the element is not found
+     */
+    default CompletionStage<E> removeElement(@NonNull E element) {
+        return removeElements(List.of(Objects.requireNonNull(element, "IAlarmConsumer::removeElement - element is null")))
+                .thenApply(missed -> missed.stream().findFirst().orElse(null));
+    }
+
+    /**
+     * Replace the pending element with the rescheduled one in one step
+     * @param element not null pending element
+     * @param rescheduled not null element with the new time marker
+     * @return CompletionStage with true if the element is rescheduled or false if the pending element is not found
+     *         or the rescheduled one is out of range
+     */
+    CompletionStage<Boolean> reschedule(@NonNull E element, @NonNull E rescheduled);
 
 }
\ No newline at end of file
@@ -6,6 +6,7 @@ import edu.umd.cs.findbugs.annotations.Nullable;
 import java.time.Duration;
 import java.util.Collection;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
@@ -48,6 +49,37 @@ public interface IAlarmProcessor<R> {
         singleProcess(consumer, () -> timeOffset);
     }
 
+    /**
+     * The process of igniting alarm clocks on the separate thread of AlarmThreads (virtual if available)
+     * The cancellation of the result interrupts the process
+     * @param consumer Handler for a set of triggered alarms
+     * @param timeOffset time offset supplier
+     * @return CompletableFuture completed on the end of the process
+     */
+    default @NonNull CompletableFuture<Void> processAsync(@NonNull Consumer<Collection<R>> consumer, @Nullable Supplier<Duration> timeOffset) {
+        Objects.requireNonNull(consumer, "IAlarmProcessor::processAsync - consumer is null");
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        Thread thread = AlarmThreads.threadFactory().newThread(() -> {
+            try {
+                process(consumer, timeOffset);
+                result.complete(null);
+            } catch (Throwable throwable) {
+                result.completeExceptionally(throwable);
+            }
+        });
+        result.whenComplete((ignore, throwable) -> {
+            if (result.isCancelled()) {
+                thread.interrupt();
+            }
+        });
+        thread.start();
+        // The interruption of the thread cancelled before the start is lost, so it is repeated after the start
+        if (result.isCancelled()) {
+            thread.interrupt();
+        }
+        return result;
+    }
+
     /**
      * The process of igniting alarm clocks at a given moment in time
      * @param consumer Handler for a set of triggered alarms
@@ -0,0 +1,210 @@
+package com.github.sftwnd.crayfish.alarms.service;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import lombok.SneakyThrows;
+import lombok.extern.java.Log;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * The service partitions alarms by the key between independent shards. Each shard has its own TimeRange and
+ * processing loop on the separate thread of AlarmThreads (virtual if available), so the fired alarms are delivered
+ * to the consumer per shard and concurrently - the consumer has to be thread-safe
+ * @param <M> type of incoming alarm to register
+ * @param <R> type of alarm clock
+ */
+@Log
+public class ShardedAlarmService<M,R> implements IAlarmService<M,R> {
+
+    private final List<IAlarmService<M,R>> shards;
+    private final Function<? super M, ?> key;
+    private final AtomicBoolean processFlag = new AtomicBoolean(false);
+
+    /**
+     * Construct IAlarmService from the shards
+     * @param shards number of the shards (not less than 1)
+     * @param shardFactory constructor of the shard by its number
+     * @param key key of the element to define the shard (the element itself in the case of null). The pending element and
+     *            the rescheduled one with the same key are processed by the same shard
+     */
+    public ShardedAlarmService(
+                      int shards,
+            @NonNull  IntFunction<? extends IAlarmService<M,R>> shardFactory,
+            @Nullable Function<? super M, ?> key
+    ) {
+        Objects.requireNonNull(shardFactory, "ShardedAlarmService::new - shardFactory is null");
+        this.shards = IntStream.range(0, Math.max(1, shards))
+                .mapToObj(shard -> Objects.requireNonNull(shardFactory.apply(shard), "ShardedAlarmService::new - shard is null"))
+                .collect(Collectors.toUnmodifiableList());
+        this.key = key == null ? element -> element : key;
+    }
+
+    /**
+     * Add new elements to the shards with rejects in CompletionStage result
+     * @param elements not null collection of elements to add
+     * @return CompletionStage with rejected elements on completion
+     */
+    @Override
+    public CompletionStage<Collection<M>> addElements(@NonNull Collection<M> elements) {
+        return fanOut(elements, IAlarmService::addElements);
+    }
+
+    /**
+     * Remove pending elements from the shards with not found elements in CompletionStage result
+     * @param elements not null collection of elements to remove
+     * @return CompletionStage with not found elements on completion
+     */
+    @Override
+    public CompletionStage<Collection<M>> removeElements(@NonNull Collection<M> elements) {
+        return fanOut(elements, IAlarmService::removeElements);
+    }
+
+    /**
+     * Replace the pending element with the rescheduled one. If the keys define different shards, the element is removed
+     * from the one and added to the other
+     * @param element not null pending element
+     * @param rescheduled not null element with the new time marker
+     * @return CompletionStage with true if the element is rescheduled
+     */
+    @Override
+    public CompletionStage<Boolean> reschedule(@NonNull M element, @NonNull M rescheduled) {
+        Objects.requireNonNull(element, "ShardedAlarmService::reschedule - element is null");
+        Objects.requireNonNull(rescheduled, "ShardedAlarmService::reschedule - rescheduled is null");
+        IAlarmService<M,R> source = shard(element);
+        IAlarmService<M,R> target = shard(rescheduled);
+        if (source == target) {
+            return source.reschedule(element, rescheduled);
+        }
+        return source.removeElement(element).thenCompose(missed -> missed != null
+                ? CompletableFuture.completedFuture(Boolean.FALSE)
+                : target.addElement(rescheduled).thenCompose(rejected -> rejected == null
+                        ? CompletableFuture.completedFuture(Boolean.TRUE)
+                        : source.addElement(element).thenApply(ignore -> Boolean.FALSE)));
+    }
+
+    /**
+     * The process of igniting alarm clocks of all the shards. Every shard is processed on the own thread, the method
+     * returns when all the shards are completed
+     * @param consumer thread-safe handler for a set of triggered alarms of the shard
+     * @param timeOffset time offset supplier
+     */
+    @Override
+    @SneakyThrows
+    public void process(@NonNull Consumer<Collection<R>> consumer, @Nullable Supplier<Duration> timeOffset) {
+        Objects.requireNonNull(consumer, "ShardedAlarmService::process - consumer is null");
+        if (!processFlag.compareAndSet(false, true)) {
+            throw new IllegalStateException("ShardedAlarmService already in process");
+        }
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>(this.shards.size());
+        try {
+            for (int shard = 0; shard < this.shards.size(); shard++) {
+                IAlarmService<M,R> alarmService = this.shards.get(shard);
+                Thread thread = AlarmThreads.threadFactory().newThread(() -> {
+                    try {
+                        alarmService.process(consumer, timeOffset);
+                    } catch (Throwable throwable) {
+                        // The failure of one shard stops the whole service
+                        if (failure.compareAndSet(null, throwable)) {
+                            threads.forEach(Thread::interrupt);
+                        }
+                    }
+                });
+                thread.setName("crayfish-alarm-shard-" + shard);
+                threads.add(thread);
+            }
+            threads.forEach(Thread::start);
+            join(threads);
+        } finally {
+            processFlag.set(false);
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+
+    private static void join(@NonNull List<Thread> threads) {
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException itrex) {
+            logger.log(Level.WARNING, "ShardedAlarmService::process is terminated by cause: {0}", Optional.ofNullable(itrex.getLocalizedMessage()).orElseGet(() -> String.valueOf(itrex)));
+            threads.forEach(Thread::interrupt);
+            for (Thread thread : threads) {
+                joinUninterruptibly(thread);
+            }
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void joinUninterruptibly(@NonNull Thread thread) {
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException ignore) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Partition the elements between the shards and combine the results of the shards
+    private CompletionStage<Collection<M>> fanOut(
+            @NonNull Collection<M> elements,
+            @NonNull BiFunction<IAlarmService<M,R>, Collection<M>, CompletionStage<Collection<M>>> operation) {
+        Objects.requireNonNull(elements, "ShardedAlarmService::fanOut - elements is null");
+        List<List<M>> partitions = new ArrayList<>(this.shards.size());
+        this.shards.forEach(ignore -> partitions.add(new ArrayList<>()));
+        elements.forEach(element -> partitions.get(index(element)).add(element));
+        CompletableFuture<Collection<M>> result = CompletableFuture.completedFuture(Collections.emptyList());
+        for (int shard = 0; shard < this.shards.size(); shard++) {
+            if (!partitions.get(shard).isEmpty()) {
+                result = result.thenCombine(operation.apply(this.shards.get(shard), partitions.get(shard)), ShardedAlarmService::merge);
+            }
+        }
+        return result.minimalCompletionStage();
+    }
+
+    private static <M> Collection<M> merge(@NonNull Collection<M> left, @NonNull Collection<M> right) {
+        if (left.isEmpty()) {
+            return right;
+        } else if (right.isEmpty()) {
+            return left;
+        }
+        List<M> result = new ArrayList<>(left);
+        result.addAll(right);
+        return result;
+    }
+
+    private @NonNull IAlarmService<M,R> shard(@NonNull M element) {
+        return this.shards.get(index(element));
+    }
+
+    private int index(@NonNull M element) {
+        return Math.floorMod(Objects.hashCode(this.key.apply(element)), this.shards.size());
+    }
+
+}
@@ -2,5 +2,6 @@ open module com.github.sftwnd.crayfish_alarms_service {
     requires transitive com.github.sftwnd.crayfish_alarms_timerange;
     requires static lombok;
     requires java.logging;
+    requires jdk.jfr;
     exports com.github.sftwnd.crayfish.alarms.service;
 }
\ No newline at end of file
@@ -0,0 +1,109 @@
+package com.github.sftwnd.crayfish.alarms.service.test;
+
+import com.github.sftwnd.crayfish.alarms.service.AlarmDispatcher;
+import com.github.sftwnd.crayfish.alarms.service.AlarmDispatcher.OverflowPolicy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AlarmDispatcherTest {
+
+    private ExecutorService executor;
+    private CountDownLatch releaseCdl;
+    private Set<String> threads;
+    private Set<Integer> consumed;
+
+    @Test
+    void dropTest() throws InterruptedException {
+        AlarmDispatcher<Integer> dispatcher = new AlarmDispatcher<>(this::consume, executor, 1, OverflowPolicy.DROP);
+        dispatcher.accept(List.of(1));
+        dispatcher.accept(List.of(2, 3));
+        assertEquals(2, dispatcher.getDropped(), "Alarms over the capacity has to be dropped");
+        releaseCdl.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS), "Dispatched alarms has to be processed");
+        assertEquals(Set.of(1), consumed, "Dropped alarms hasn't got to be consumed");
+        assertFalse(threads.contains(Thread.currentThread().getName()), "Alarms has to be consumed on the executor");
+    }
+
+    @Test
+    void callerRunsTest() throws InterruptedException {
+        AlarmDispatcher<Integer> dispatcher = new AlarmDispatcher<>(this::consume, executor, 1, OverflowPolicy.CALLER_RUNS);
+        dispatcher.accept(List.of(1));
+        Thread thread = new Thread(() -> dispatcher.accept(List.of(2)));
+        thread.start();
+        for (int i = 0; i < 100 && !threads.contains(thread.getName()); i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(threads.contains(thread.getName()), "Alarms over the capacity has to be consumed on the caller thread");
+        releaseCdl.countDown();
+        thread.join(1000);
+        assertTrue(consumed.contains(2), "Alarms over the capacity has to be consumed");
+    }
+
+    @Test
+    void blockTest() throws InterruptedException {
+        AlarmDispatcher<Integer> dispatcher = new AlarmDispatcher<>(this::consume, executor, 1, OverflowPolicy.BLOCK);
+        dispatcher.accept(List.of(1));
+        CountDownLatch acceptedCdl = new CountDownLatch(1);
+        Thread thread = new Thread(() -> {
+            dispatcher.accept(List.of(2));
+            acceptedCdl.countDown();
+        });
+        thread.start();
+        assertFalse(acceptedCdl.await(100, TimeUnit.MILLISECONDS), "Caller has to be blocked on the overflow");
+        releaseCdl.countDown();
+        assertTrue(acceptedCdl.await(1, TimeUnit.SECONDS), "Caller has to be released after the consumption");
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS), "Dispatched alarms has to be processed");
+        assertEquals(Set.of(1, 2), consumed, "All the alarms has to be consumed");
+        assertFalse(threads.contains(thread.getName()), "Alarms has to be consumed on the executor");
+    }
+
+    private void consume(Collection<Integer> elements) {
+        threads.add(Thread.currentThread().getName());
+        try {
+            boolean ignore = releaseCdl.await(1, TimeUnit.SECONDS);
+        } catch (InterruptedException ignore) {
+            Thread.currentThread().interrupt();
+        }
+        consumed.addAll(elements);
+    }
+
+    @BeforeEach
+    void startUp() {
+        this.executor = Executors.newSingleThreadExecutor();
+        this.releaseCdl = new CountDownLatch(1);
+        this.threads = ConcurrentHashMap.newKeySet();
+        this.consumed = ConcurrentHashMap.newKeySet();
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.executor.shutdownNow();
+        this.executor = null;
+    }
+
+    @BeforeAll
+    public static void disableLogging() {
+        Logger.getLogger("com.github.sftwnd.crayfish.alarms.service.AlarmDispatcher")
+                .setLevel(Level.OFF);
+    }
+
+}
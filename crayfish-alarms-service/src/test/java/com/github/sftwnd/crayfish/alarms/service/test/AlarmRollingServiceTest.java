@@ -0,0 +1,165 @@
+package com.github.sftwnd.crayfish.alarms.service.test;
+
+import com.github.sftwnd.crayfish.alarms.service.AlarmRollingService;
+import com.github.sftwnd.crayfish.alarms.service.IAlarmService;
+import com.github.sftwnd.crayfish.alarms.timerange.AlarmMetrics;
+import com.github.sftwnd.crayfish.alarms.timerange.ITimeRangeFactory;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AlarmRollingServiceTest {
+
+    private static final Duration WINDOW = Duration.ofMillis(300);
+    private static final int AHEAD = 10;
+
+    @Test
+    void fireAcrossWindowsTest() throws InterruptedException, ExecutionException, TimeoutException {
+        Instant now = Instant.now();
+        IAlarmService<Instant, Instant> alarmService = alarmService(now);
+        List<Instant> elements = List.of(now.plusMillis(100), now.plusMillis(400), now.plusMillis(1000), now.plusSeconds(3));
+        Instant outdated = now.minusMillis(1);
+        Collection<Instant> fired = new ConcurrentLinkedQueue<>();
+        CountDownLatch cdl = new CountDownLatch(elements.size());
+        Thread thread = new Thread(() -> alarmService.singleProcess(instant -> {
+            fired.add(instant);
+            cdl.countDown();
+        }));
+        List<Instant> registered = new ArrayList<>(elements);
+        registered.add(outdated);
+        CompletableFuture<Collection<Instant>> rejected = alarmService.addElements(registered).toCompletableFuture();
+        thread.start();
+        try {
+            assertEquals(List.of(outdated), new ArrayList<>(rejected.get(1, TimeUnit.SECONDS)), "Element before the first window has to be rejected");
+            assertTrue(cdl.await(5, TimeUnit.SECONDS), "Elements of all the windows has to be fired");
+            assertTrue(fired.containsAll(elements), "Elements has to be fired in the own windows");
+        } finally {
+            thread.interrupt();
+        }
+    }
+
+    @Test
+    void rescheduleAcrossWindowsTest() throws InterruptedException, ExecutionException, TimeoutException {
+        Instant now = Instant.now();
+        IAlarmService<Instant, Instant> alarmService = alarmService(now);
+        Instant element = now.plusSeconds(2);
+        // The window of the rescheduled element hasn't got to be retired on the slow start of the process
+        Instant rescheduled = now.plus(WINDOW.multipliedBy(3)).plusMillis(100);
+        Instant removed = now.plusMillis(700);
+        CountDownLatch cdl = new CountDownLatch(1);
+        Collection<Instant> fired = new ConcurrentLinkedQueue<>();
+        Thread thread = new Thread(() -> alarmService.singleProcess(instant -> {
+            fired.add(instant);
+            cdl.countDown();
+        }));
+        thread.start();
+        try {
+            assertTrue(alarmService.addElements(List.of(element, removed)).toCompletableFuture().get(1, TimeUnit.SECONDS).isEmpty(), "Elements has to be registered");
+            assertNull(alarmService.removeElement(removed).toCompletableFuture().get(1, TimeUnit.SECONDS), "Element has to be removed from the own window");
+            assertTrue(alarmService.reschedule(element, rescheduled).toCompletableFuture().get(1, TimeUnit.SECONDS), "Element has to be rescheduled to the other window");
+            assertTrue(cdl.await(2, TimeUnit.SECONDS), "Rescheduled element has to be fired");
+            Thread.sleep(WINDOW.multipliedBy(2).toMillis());
+            assertEquals(List.of(rescheduled), new ArrayList<>(fired), "Removed and replaced elements hasn't got to be fired");
+        } finally {
+            thread.interrupt();
+        }
+    }
+
+    @Test
+    void rejectFarElementsTest() throws InterruptedException, ExecutionException, TimeoutException {
+        Instant now = Instant.now();
+        IAlarmService<Instant, Instant> alarmService = alarmService(now);
+        Instant upcoming = now.plus(WINDOW.multipliedBy(AHEAD));
+        Instant far = now.plus(WINDOW.multipliedBy(AHEAD + 2L));
+        Instant farFuture = now.plus(Duration.ofDays(365 * 1000L));
+        Thread thread = new Thread(() -> alarmService.singleProcess(instant -> {}));
+        thread.start();
+        try {
+            assertEquals(List.of(far, farFuture), new ArrayList<>(alarmService.addElements(List.of(upcoming, far, farFuture)).toCompletableFuture().get(1, TimeUnit.SECONDS)),
+                    "Elements after the upcoming windows have to be rejected");
+        } finally {
+            thread.interrupt();
+        }
+    }
+
+    @Test
+    void rejectRetiredElementsTest() throws InterruptedException, ExecutionException, TimeoutException {
+        Instant now = Instant.now();
+        IAlarmService<Instant, Instant> alarmService = alarmService(now);
+        Thread thread = new Thread(() -> alarmService.singleProcess(instant -> {}));
+        thread.start();
+        try {
+            Thread.sleep(WINDOW.multipliedBy(2).toMillis());
+            Instant retired = now.plusMillis(10);
+            assertEquals(List.of(retired), new ArrayList<>(alarmService.addElements(List.of(retired)).toCompletableFuture().get(1, TimeUnit.SECONDS)),
+                    "Element of the retired window has to be rejected");
+        } finally {
+            thread.interrupt();
+        }
+    }
+
+    @Test
+    void completeSequenceTest() throws InterruptedException, ExecutionException, TimeoutException {
+        Instant now = Instant.now();
+        AlarmMetrics metrics = new AlarmMetrics();
+        IAlarmService<Instant, Instant> alarmService = new AlarmRollingService<>(
+                ITimeRangeFactory.temporal(WINDOW, Duration.ofMillis(50), Duration.ofMillis(100), null),
+                instant -> instant, now, now.plus(WINDOW.multipliedBy(2)), AHEAD, Duration.ZERO, metrics);
+        Instant first = now.plusMillis(100);
+        Instant second = now.plus(WINDOW).plusMillis(100);
+        Instant after = now.plus(WINDOW.multipliedBy(2));
+        Collection<Instant> fired = new ConcurrentLinkedQueue<>();
+        Thread thread = new Thread(() -> alarmService.singleProcess(fired::add));
+        thread.start();
+        try {
+            assertEquals(List.of(after), new ArrayList<>(alarmService.addElements(List.of(first, second, after)).toCompletableFuture().get(1, TimeUnit.SECONDS)),
+                    "Element after the end of the sequence has to be rejected");
+            thread.join(WINDOW.multipliedBy(4).toMillis());
+            assertFalse(thread.isAlive(), "Sequence has to be complete when the windows up to the end are retired");
+            assertEquals(List.of(first, second), new ArrayList<>(fired), "Elements of the sequence has to be fired");
+            assertEquals(2, metrics.getLateness().getCount(), "Lateness of the fired elements of the windows has to be recorded");
+            assertEquals(0, metrics.getPendingElements(), "Pending elements of the windows have to be summed up");
+        } finally {
+            thread.interrupt();
+        }
+    }
+
+    @Test
+    void zeroWindowTest() {
+        ITimeRangeFactory<Instant, Instant> timeRangeFactory = ITimeRangeFactory.temporal(Duration.ZERO, Duration.ZERO, Duration.ZERO, null);
+        Instant now = Instant.now();
+        assertThrows(IllegalArgumentException.class, () -> new AlarmRollingService<>(timeRangeFactory, instant -> instant, now, 1, Duration.ZERO),
+                "Sequence of the empty windows hasn't got to be created");
+    }
+
+    private IAlarmService<Instant, Instant> alarmService(Instant time) {
+        ITimeRangeFactory<Instant, Instant> timeRangeFactory = ITimeRangeFactory.temporal(WINDOW, Duration.ofMillis(50), Duration.ofMillis(100), null);
+        return new AlarmRollingService<>(timeRangeFactory, instant -> instant, time, AHEAD, Duration.ZERO);
+    }
+
+    @BeforeAll
+    public static void startUp() {
+        Logger.getLogger("com.github.sftwnd.crayfish.alarms.service.AlarmService")
+                .setLevel(Level.OFF);
+    }
+
+}
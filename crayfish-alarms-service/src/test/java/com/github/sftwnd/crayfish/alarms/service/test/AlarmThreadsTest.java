@@ -0,0 +1,30 @@
+package com.github.sftwnd.crayfish.alarms.service.test;
+
+import com.github.sftwnd.crayfish.alarms.service.AlarmThreads;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+
+class AlarmThreadsTest {
+
+    @Test
+    void executorTest() throws InterruptedException, ExecutionException, TimeoutException {
+        CompletableFuture<Thread> thread = new CompletableFuture<>();
+        AlarmThreads.executor().execute(() -> thread.complete(Thread.currentThread()));
+        assertNotSame(Thread.currentThread(), thread.get(1, TimeUnit.SECONDS), "Task has to be executed on the new thread");
+    }
+
+    @Test
+    void virtualDetectionTest() {
+        boolean expected = Runtime.version().feature() >= 21
+                && Boolean.parseBoolean(System.getProperty(AlarmThreads.VIRTUAL_THREADS_PROPERTY, "true"));
+        assertEquals(expected, AlarmThreads.isVirtual(), "Virtual threads has to be used when they are available");
+    }
+
+}
@@ -1,35 +1,59 @@
 package com.github.sftwnd.crayfish.alarms.service.test;
 
+import com.github.sftwnd.crayfish.alarms.service.AlarmService;
+import com.github.sftwnd.crayfish.alarms.service.AlarmSimulation;
 import com.github.sftwnd.crayfish.alarms.service.AlarmTimeRangeService;
 import com.github.sftwnd.crayfish.alarms.service.IAlarmService;
+import com.github.sftwnd.crayfish.alarms.timerange.AlarmMetrics;
 import com.github.sftwnd.crayfish.alarms.timerange.ITimeRange;
 import com.github.sftwnd.crayfish.alarms.timerange.ITimeRangeFactory;
+import com.github.sftwnd.crayfish.alarms.timerange.ITimeSource;
+import com.github.sftwnd.crayfish.alarms.timerange.VirtualTimeSource;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.CompletionStage;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class AlarmTimeRangeServiceTest {
@@ -222,6 +246,37 @@ class AlarmTimeRangeServiceTest {
 
     }
 
+    @Test
+    void completeProducerTest() throws InterruptedException {
+        ITimeRange<Instant, Instant> timeRange = timeRangeFactory.timeRange(Instant.now().minusSeconds(10));
+        AlarmMetrics metrics = new AlarmMetrics();
+        IAlarmService<Instant, Instant> alarmService = new AlarmTimeRangeService<>(timeRange, Duration.ZERO, metrics);
+        CompletableFuture<Instant> queued = alarmService.addElement(timeRange.getStartInstant()).toCompletableFuture();
+        AtomicBoolean producing = new AtomicBoolean(true);
+        Thread producer = new Thread(() -> {
+            // The elements out of the range are rejected, so the range stays complete
+            while (producing.get()) {
+                alarmService.addElement(Instant.now());
+            }
+        });
+        Thread thread = new Thread(() -> alarmService.process(ignore -> {}));
+        producer.start();
+        thread.start();
+        try {
+            thread.join(1000);
+            assertFalse(thread.isAlive(), "Complete service hasn't got to be kept running by the producer");
+        } finally {
+            producing.set(false);
+            thread.interrupt();
+            producer.join();
+        }
+        assertNull(queued.getNow(timeRange.getStartInstant()), "Request queued before the process has to be applied");
+        thread = new Thread(() -> alarmService.process(ignore -> {}));
+        thread.start();
+        thread.join(1000);
+        assertEquals(0, metrics.getQueueDepth(), "Queue depth has to follow the rejected requests");
+    }
+
     @Test
     void timeOffsetTest() throws InterruptedException, ExecutionException {
         ITimeRange<Instant, Instant> timeRange = timeRangeFactory
@@ -242,14 +297,298 @@ class AlarmTimeRangeServiceTest {
             }
         });
         serviceThread.start();
+        // The element is queued before the start: with the offset the empty range can be already complete
+        Instant instant = timeRange.getStartInstant().plusSeconds(4);
+        alarmService.addElement(instant);
         serviceCdl.countDown();
         assertTrue(processCdl.await(1, TimeUnit.SECONDS), "AlarmService process thread has to be started");
-        Instant instant = Instant.now().truncatedTo(ChronoUnit.SECONDS).plusSeconds(3);
-        alarmService.addElement(instant);
         assertDoesNotThrow(() -> firedFuture.get(1, TimeUnit.SECONDS), "AlarmService has to fire alarm");
         assertTrue(Duration.between(instant, firedFuture.get()).toMillis() < -500L, "AlarmService has to fire alarm with timeOffset");
     }
 
+    @Test
+    void removeElementTest() throws InterruptedException, ExecutionException, TimeoutException {
+        ITimeRange<Instant, Instant> timeRange = timeRange();
+        IAlarmService<Instant, Instant> alarmService = alarmService(timeRange, Duration.ZERO);
+        Instant removed = Instant.now().plusMillis(200);
+        Instant fired = removed.plusMillis(100);
+        alarmService.addElements(List.of(removed, fired));
+        CompletableFuture<Collection<Instant>> firedFuture = new CompletableFuture<>();
+        Thread thread = new Thread(() -> alarmService.process(firedFuture::complete));
+        thread.start();
+        try {
+            assertNull(alarmService.removeElement(removed).toCompletableFuture().get(1, TimeUnit.SECONDS), "Pending element has to be removed");
+            assertEquals(List.of(fired), new ArrayList<>(firedFuture.get(1, TimeUnit.SECONDS)), "Removed element hasn't got to be fired");
+            assertEquals(removed, alarmService.removeElement(removed).toCompletableFuture().get(1, TimeUnit.SECONDS), "Not found element has to be returned");
+        } finally {
+            thread.interrupt();
+        }
+    }
+
+    @Test
+    void rescheduleTest() throws InterruptedException, ExecutionException, TimeoutException {
+        ITimeRange<Instant, Instant> timeRange = timeRange();
+        IAlarmService<Instant, Instant> alarmService = alarmService(timeRange, Duration.ZERO);
+        Instant element = timeRange.getLastInstant().minusMillis(1);
+        Instant rescheduled = Instant.now().plusMillis(100);
+        alarmService.addElement(element);
+        CompletableFuture<Collection<Instant>> firedFuture = new CompletableFuture<>();
+        Thread thread = new Thread(() -> alarmService.process(firedFuture::complete));
+        thread.start();
+        try {
+            assertTrue(alarmService.reschedule(element, rescheduled).toCompletableFuture().get(1, TimeUnit.SECONDS), "Pending element has to be rescheduled");
+            assertEquals(List.of(rescheduled), new ArrayList<>(firedFuture.get(1, TimeUnit.SECONDS)), "Rescheduled element has to be fired at the new time");
+            assertFalse(alarmService.reschedule(element, rescheduled).toCompletableFuture().get(1, TimeUnit.SECONDS), "Not found element hasn't got to be rescheduled");
+        } finally {
+            thread.interrupt();
+        }
+    }
+
+    @Test
+    void directRegistrationTest() throws InterruptedException {
+        ITimeRange<Instant, Instant> timeRange = ITimeRangeFactory.<Instant>concurrent(
+                Duration.ofSeconds(5), Duration.ofMillis(100), Duration.ofMillis(250), instant -> instant, null
+        ).timeRange(Instant.now());
+        IAlarmService<Instant, Instant> alarmService = alarmService(timeRange, Duration.ZERO);
+        Instant later = timeRange.getLastInstant().minusMillis(1);
+        assertTrue(alarmService.addElement(later).toCompletableFuture().isDone(), "Registration in thread-safe TimeRange has to be done on the caller thread");
+        CountDownLatch cdl = new CountDownLatch(1);
+        Thread thread = new Thread(() -> alarmService.process(elements -> cdl.countDown()));
+        thread.start();
+        try {
+            Thread.sleep(100);
+            Instant instant = Instant.now().plusMillis(100);
+            assertNull(alarmService.addElement(instant).toCompletableFuture().getNow(later), "Element in TimeRange period has to be approved");
+            assertTrue(cdl.await(1, TimeUnit.SECONDS), "Process thread has to be woken up by the nearer element");
+        } finally {
+            thread.interrupt();
+        }
+    }
+
+    @Test
+    void burstRegistrationTest() throws InterruptedException {
+        ITimeRange<Instant, Instant> timeRange = timeRange();
+        IAlarmService<Instant, Instant> alarmService = alarmService(timeRange, Duration.ZERO);
+        Instant later = timeRange.getLastInstant().minusMillis(1);
+        int degree = Math.min(4, Runtime.getRuntime().availableProcessors());
+        int requests = 1000;
+        Thread thread = new Thread(() -> alarmService.process(ignore -> {}));
+        thread.start();
+        CountDownLatch registeredCdl = new CountDownLatch(degree * requests);
+        Collection<Thread> producers = IntStream.range(0, degree).mapToObj(p -> new Thread(() -> IntStream.range(0, requests)
+                .forEach(i -> alarmService.addElement(later.minusNanos(p * (long) requests + i))
+                        .thenAccept(ignore -> registeredCdl.countDown())))).collect(Collectors.toList());
+        try {
+            producers.forEach(Thread::start);
+            assertTrue(registeredCdl.await(2, TimeUnit.SECONDS), "All the registration requests of the burst has to be completed");
+        } finally {
+            producers.forEach(Thread::interrupt);
+            thread.interrupt();
+        }
+    }
+
+    @Test
+    void coalesceRegistrationTest() throws InterruptedException, ExecutionException, TimeoutException {
+        ITimeRange<Instant, Instant> timeRange = timeRange();
+        AtomicInteger registrations = new AtomicInteger();
+        IAlarmService<Instant, Instant> alarmService = new AlarmTimeRangeService<>(timeRange, Duration.ZERO) {
+            @Override
+            protected Collection<Instant> registerElements(@NonNull Collection<Instant> elements) {
+                registrations.incrementAndGet();
+                return super.registerElements(elements);
+            }
+        };
+        Instant later = timeRange.getLastInstant().minusMillis(1);
+        Instant outdated = timeRange.getStartInstant().minusNanos(1);
+        List<CompletableFuture<Collection<Instant>>> futures = List.of(
+                alarmService.addElements(List.of(later, outdated)).toCompletableFuture(),
+                alarmService.addElements(List.of(later.minusNanos(1))).toCompletableFuture(),
+                alarmService.addElements(List.of(outdated, timeRange.getLastInstant())).toCompletableFuture());
+        Thread thread = new Thread(() -> alarmService.process(ignore -> {}));
+        thread.start();
+        try {
+            assertEquals(List.of(outdated), new ArrayList<>(futures.get(0).get(1, TimeUnit.SECONDS)), "Rejected element has to be returned to the own request");
+            assertTrue(futures.get(1).get(1, TimeUnit.SECONDS).isEmpty(), "Request without rejected elements has to be completed with empty collection");
+            assertEquals(List.of(outdated, timeRange.getLastInstant()), new ArrayList<>(futures.get(2).get(1, TimeUnit.SECONDS)), "Rejected elements has to be returned to the own request");
+            assertEquals(1, registrations.get(), "Queued registrations has to be merged into one bulk registration");
+        } finally {
+            thread.interrupt();
+        }
+    }
+
+    @Test
+    void publisherTest() throws InterruptedException {
+        ITimeRange<Instant, Instant> timeRange = timeRange();
+        AlarmService<Instant, Instant> alarmService = new AlarmTimeRangeService<>(timeRange, Duration.ZERO);
+        Instant instant = timeRange.getStartInstant();
+        alarmService.addElements(List.of(instant, instant.plusNanos(1), instant.plusNanos(2)));
+        BlockingQueue<Instant> fired = new LinkedBlockingQueue<>();
+        AtomicReference<Flow.Subscription> subscription = new AtomicReference<>();
+        CountDownLatch completeCdl = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            alarmService.publisher(executor, null).subscribe(new Flow.Subscriber<>() {
+                @Override public void onSubscribe(Flow.Subscription value) {
+                    subscription.set(value);
+                    value.request(1);
+                }
+                @Override public void onNext(Instant item) { fired.add(item); }
+                @Override public void onError(Throwable throwable) { completeCdl.countDown(); }
+                @Override public void onComplete() { completeCdl.countDown(); }
+            });
+            assertEquals(instant, fired.poll(1, TimeUnit.SECONDS), "Requested alarm has to be published");
+            assertNull(fired.poll(200, TimeUnit.MILLISECONDS), "Not requested alarms hasn't got to be published");
+            subscription.get().request(2);
+            assertEquals(instant.plusNanos(1), fired.poll(1, TimeUnit.SECONDS), "Alarms has to be published on the demand");
+            assertEquals(instant.plusNanos(2), fired.poll(1, TimeUnit.SECONDS), "Alarms has to be published on the demand");
+            subscription.get().cancel();
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS), "Process has to be stopped on cancel");
+            assertEquals(1, completeCdl.getCount(), "Cancelled subscriber hasn't got to be signalled");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void processAsyncTest() throws InterruptedException {
+        ITimeRange<Instant, Instant> timeRange = timeRange();
+        IAlarmService<Instant, Instant> alarmService = alarmService(timeRange, Duration.ZERO);
+        CountDownLatch cdl = new CountDownLatch(1);
+        CompletableFuture<Void> process = alarmService.processAsync(elements -> cdl.countDown(), null);
+        alarmService.addElement(Instant.now());
+        assertTrue(cdl.await(1, TimeUnit.SECONDS), "Alarm has to be fired by the asynchronous process");
+        assertFalse(process.isDone(), "Asynchronous process has to be active until the end of the range");
+        process.cancel(true);
+        Thread.sleep(100);
+        CompletableFuture<Void> next = alarmService.processAsync(ignore -> {}, null);
+        try {
+            Thread.sleep(100);
+            assertFalse(next.isDone(), "Asynchronous process has to be stopped on cancel");
+        } finally {
+            next.cancel(true);
+        }
+    }
+
+    @Test
+    void metricsTest() throws InterruptedException, ExecutionException, TimeoutException {
+        ITimeRange<Instant, Instant> timeRange = timeRange();
+        AlarmMetrics metrics = new AlarmMetrics();
+        IAlarmService<Instant, Instant> alarmService = new AlarmTimeRangeService<>(timeRange, Duration.ZERO, metrics);
+        Instant instant = timeRange.getStartInstant();
+        Instant outdated = instant.minusNanos(1);
+        CompletableFuture<Collection<Instant>> registered = alarmService.addElements(List.of(instant, outdated, timeRange.getLastInstant().minusMillis(1))).toCompletableFuture();
+        assertEquals(1, metrics.getQueueDepth(), "Queued request has to be counted");
+        CountDownLatch cdl = new CountDownLatch(1);
+        Thread thread = new Thread(() -> alarmService.process(elements -> cdl.countDown()));
+        thread.start();
+        try {
+            assertEquals(List.of(outdated), new ArrayList<>(registered.get(1, TimeUnit.SECONDS)), "Outdated element has to be rejected");
+            assertTrue(cdl.await(1, TimeUnit.SECONDS), "Alarm has to be fired");
+            assertEquals(0, metrics.getQueueDepth(), "Applied request has to leave the queue");
+            assertEquals(1, metrics.getRejected(), "Rejected element has to be counted");
+            assertEquals(1, metrics.getRegistrationLatency().getCount(), "Registration latency has to be recorded");
+            assertEquals(1, metrics.getLateness().getCount(), "Lateness of the fired alarm has to be recorded");
+            assertEquals(1, metrics.getPendingElements(), "Pending element has to be counted");
+            assertTrue(metrics.getWakeUps() > 0, "Wakeups of the process thread have to be counted");
+        } finally {
+            thread.interrupt();
+        }
+    }
+
+    @Test
+    void recordingTest() throws InterruptedException, IOException {
+        ITimeRange<Instant, Instant> timeRange = timeRange();
+        IAlarmService<Instant, Instant> alarmService = alarmService(timeRange, Duration.ZERO);
+        CountDownLatch cdl = new CountDownLatch(1);
+        Path file = Files.createTempFile("alarm-service", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("com.github.sftwnd.crayfish.alarms.AlarmServiceWait");
+            recording.enable("com.github.sftwnd.crayfish.alarms.AlarmServiceConsume");
+            recording.start();
+            Thread thread = new Thread(() -> alarmService.process(elements -> cdl.countDown()));
+            thread.start();
+            try {
+                alarmService.addElement(Instant.now().plusMillis(100));
+                assertTrue(cdl.await(1, TimeUnit.SECONDS), "Alarm has to be fired");
+            } finally {
+                thread.interrupt();
+                thread.join();
+            }
+            recording.stop();
+            recording.dump(file);
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            assertTrue(events.stream().anyMatch(event -> event.getEventType().getName().endsWith("AlarmServiceConsume") && event.getInt("alarms") == 1),
+                    "Call of the consumer has to be recorded");
+            assertTrue(events.stream().anyMatch(event -> event.getEventType().getName().endsWith("AlarmServiceWait") && event.getDuration("planned").toNanos() > 0),
+                    "Wait of the process thread has to be recorded");
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void timeSourceTest() throws InterruptedException {
+        // The clock of the service is an hour ahead of the wall clock
+        long shift = Duration.ofHours(1).toNanos();
+        ITimeSource timeSource = () -> ITimeSource.system().nanos() + shift;
+        ITimeRange<Instant, Instant> timeRange = ITimeRangeFactory.timed(timeRangeFactory, timeSource).timeRange(timeSource.instant());
+        IAlarmService<Instant, Instant> alarmService = alarmService(timeRange, Duration.ZERO);
+        CountDownLatch cdl = new CountDownLatch(1);
+        Thread thread = new Thread(() -> alarmService.process(elements -> cdl.countDown()));
+        thread.start();
+        try {
+            alarmService.addElement(timeSource.instant().plusMillis(100));
+            assertTrue(cdl.await(1, TimeUnit.SECONDS), "Alarm has to be fired by the clock of the time source");
+        } finally {
+            thread.interrupt();
+        }
+    }
+
+    @Test
+    void simulationTest() {
+        // Day of the traffic: the alarm every 8 seconds is registered a minute before its moment
+        Instant start = Instant.parse("2023-01-01T00:00:00Z");
+        VirtualTimeSource timeSource = new VirtualTimeSource(start);
+        ITimeRange<Instant, Instant> timeRange = ITimeRangeFactory.timed(
+                ITimeRangeFactory.<Instant>temporal(Duration.ofDays(1), Duration.ofSeconds(1), Duration.ZERO, null),
+                timeSource
+        ).timeRange(start);
+        List<Instant> traffic = IntStream.range(0, 10_000).mapToObj(i -> start.plusSeconds(60L + 8L * i)).collect(Collectors.toList());
+        List<Instant> fired = new ArrayList<>();
+        AlarmSimulation.Report report = new AlarmSimulation<>(new AlarmTimeRangeService<>(timeRange, Duration.ZERO), instant -> instant, Duration.ofMinutes(1))
+                .replay(traffic.iterator(), instant -> instant.minusSeconds(60), fired::addAll);
+        assertEquals(traffic, fired, "All the alarms have to be fired in the order of the traffic");
+        assertEquals(traffic.size(), report.getRegistered(), "All the alarms have to be registered");
+        assertEquals(traffic.size(), report.getFired(), "All the alarms have to be fired");
+        assertEquals(8, report.getPeakPending(), "Peak pending has to be calculated by the traffic");
+        assertEquals(8, report.getDensity().getMax(), "Density of the minute bucket has to be calculated by the traffic");
+        assertEquals(Duration.ofSeconds(60L + 8L * 9_999), report.getSimulated(), "Virtual time has to jump to the last alarm");
+        assertThrows(IllegalArgumentException.class, () -> new AlarmSimulation<>(new AlarmTimeRangeService<Instant, Instant>(timeRange(), Duration.ZERO), instant -> instant, Duration.ofSeconds(1)),
+                "Simulation has to require the virtual time source");
+    }
+
+    @Test
+    void simulationDuplicatesTest() {
+        Instant start = Instant.parse("2023-01-01T00:00:00Z");
+        VirtualTimeSource timeSource = new VirtualTimeSource(start);
+        ITimeRange<Instant, Instant> timeRange = ITimeRangeFactory.timed(
+                ITimeRangeFactory.<Instant>temporal(Duration.ofHours(1), Duration.ofSeconds(1), Duration.ZERO, null),
+                timeSource
+        ).timeRange(start);
+        // Every alarm is registered twice, the TimeRange keeps just one of them
+        List<Instant> alarms = IntStream.range(0, 100).mapToObj(i -> start.plusSeconds(60L + i)).collect(Collectors.toList());
+        List<Instant> traffic = alarms.stream().flatMap(alarm -> Stream.of(alarm, alarm)).collect(Collectors.toList());
+        List<Instant> fired = new ArrayList<>();
+        AlarmSimulation.Report report = assertTimeoutPreemptively(Duration.ofSeconds(10),
+                () -> new AlarmSimulation<>(new AlarmTimeRangeService<>(timeRange, Duration.ZERO), instant -> instant, Duration.ofMinutes(1))
+                        .replay(traffic.iterator(), instant -> instant.minusSeconds(60), fired::addAll),
+                "Simulation with the duplicates has to be finished");
+        assertEquals(alarms, fired, "Duplicates have to be fired once");
+        assertEquals(alarms.size(), report.getFired(), "Merged duplicates hasn't got to be counted as fired");
+        assertEquals(Duration.ofSeconds(60L + 99L), report.getSimulated(), "Virtual time has to stop at the last alarm");
+    }
+
     private IAlarmService<Instant, Instant> alarmService(ITimeRange<Instant, Instant> timeRange, Duration minimalWait) {
         return new AlarmTimeRangeService<>(timeRange, minimalWait);
     }
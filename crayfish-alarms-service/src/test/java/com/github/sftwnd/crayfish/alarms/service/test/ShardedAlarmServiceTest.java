@@ -0,0 +1,103 @@
+package com.github.sftwnd.crayfish.alarms.service.test;
+
+import com.github.sftwnd.crayfish.alarms.service.AlarmTimeRangeService;
+import com.github.sftwnd.crayfish.alarms.service.IAlarmService;
+import com.github.sftwnd.crayfish.alarms.service.ShardedAlarmService;
+import com.github.sftwnd.crayfish.alarms.timerange.ITimeRangeFactory;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShardedAlarmServiceTest {
+
+    private static final int SHARDS = 4;
+
+    @Test
+    void fireByShardsTest() throws InterruptedException, ExecutionException, TimeoutException {
+        Instant now = Instant.now();
+        IAlarmService<Instant, Instant> alarmService = alarmService(now);
+        List<Instant> elements = IntStream.range(0, 100).mapToObj(i -> now.plusMillis(100).plusNanos(i)).collect(Collectors.toList());
+        Set<Instant> fired = ConcurrentHashMap.newKeySet();
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        CountDownLatch cdl = new CountDownLatch(elements.size());
+        Thread thread = new Thread(() -> alarmService.process(collection -> {
+            threads.add(Thread.currentThread().getName());
+            fired.addAll(collection);
+            collection.forEach(ignore -> cdl.countDown());
+        }));
+        thread.start();
+        try {
+            List<Instant> registered = new ArrayList<>(elements);
+            registered.add(now.minusSeconds(1));
+            assertEquals(List.of(now.minusSeconds(1)), new ArrayList<>(alarmService.addElements(registered).toCompletableFuture().get(1, TimeUnit.SECONDS)),
+                    "Rejected elements of the shards has to be combined");
+            assertTrue(cdl.await(1, TimeUnit.SECONDS), "Elements of all the shards has to be fired");
+            assertEquals(new HashSet<>(elements), fired, "All the registered elements has to be fired");
+            assertEquals(SHARDS, threads.size(), "Fired elements has to be delivered by the shard threads");
+        } finally {
+            thread.interrupt();
+        }
+        thread.join(1000);
+        assertFalse(thread.isAlive(), "Process has to be stopped with the shards on interrupt");
+    }
+
+    @Test
+    void rescheduleBetweenShardsTest() throws InterruptedException, ExecutionException, TimeoutException {
+        Instant now = Instant.now();
+        IAlarmService<Instant, Instant> alarmService = alarmService(now);
+        Instant element = now.plusSeconds(3);
+        Instant rescheduled = IntStream.range(1, 100).mapToObj(i -> now.plusMillis(100).plusNanos(i))
+                .filter(instant -> Math.floorMod(instant.hashCode(), SHARDS) != Math.floorMod(element.hashCode(), SHARDS))
+                .findFirst().orElseThrow();
+        Collection<Instant> fired = ConcurrentHashMap.newKeySet();
+        CountDownLatch cdl = new CountDownLatch(1);
+        Thread thread = new Thread(() -> alarmService.singleProcess(instant -> {
+            fired.add(instant);
+            cdl.countDown();
+        }));
+        thread.start();
+        try {
+            alarmService.addElement(element);
+            assertTrue(alarmService.reschedule(element, rescheduled).toCompletableFuture().get(1, TimeUnit.SECONDS), "Element has to be rescheduled to the other shard");
+            assertFalse(alarmService.reschedule(element, rescheduled).toCompletableFuture().get(1, TimeUnit.SECONDS), "Not found element hasn't got to be rescheduled");
+            assertTrue(cdl.await(1, TimeUnit.SECONDS), "Rescheduled element has to be fired");
+            assertEquals(Set.of(rescheduled), fired, "Element hasn't got to be fired at the old time");
+        } finally {
+            thread.interrupt();
+        }
+    }
+
+    private IAlarmService<Instant, Instant> alarmService(Instant time) {
+        ITimeRangeFactory<Instant, Instant> timeRangeFactory = ITimeRangeFactory.temporal(Duration.ofSeconds(5), Duration.ofMillis(100), Duration.ofMillis(250), null);
+        return new ShardedAlarmService<>(SHARDS, shard -> new AlarmTimeRangeService<>(timeRangeFactory.timeRange(time), Duration.ZERO), null);
+    }
+
+    @BeforeAll
+    public static void startUp() {
+        Logger.getLogger("com.github.sftwnd.crayfish.alarms.service.AlarmService")
+                .setLevel(Level.OFF);
+        Logger.getLogger("com.github.sftwnd.crayfish.alarms.service.ShardedAlarmService")
+                .setLevel(Level.OFF);
+    }
+
+}
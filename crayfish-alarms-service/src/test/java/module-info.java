@@ -3,4 +3,5 @@ open module com.github.sftwnd.crayfish_alarms_service.test {
     requires static lombok;
     requires java.logging;
     requires org.junit.jupiter.api;
+    requires jdk.jfr;
 }
\ No newline at end of file
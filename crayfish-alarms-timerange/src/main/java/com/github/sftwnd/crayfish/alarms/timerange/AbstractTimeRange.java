@@ -0,0 +1,301 @@
+/*
+ * Copyright © 2017-2023 Andrey D. Shindarev. All rights reserved.
+ * This program is made available under the terms of the BSD 3-Clause License.
+ * Contacts: ashindarev@gmail.com
+ */
+package com.github.sftwnd.crayfish.alarms.timerange;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.TemporalAccessor;
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+import static java.util.Optional.ofNullable;
+
+/**
+ * The borders of the time range and the calculation of the timeouts to the nearest event, which are common to all
+ * the time range implementations. The range is divided into intervals, numbered from the interval that contains
+ * startInstant. The time marker of the element inside the range is described by the offset in nanoseconds
+ * from the beginning of the first interval.
+ */
+abstract class AbstractTimeRange implements ITimeRegion {
+
+    /** The offset in the case of absence of the element */
+    static final long NONE = Long.MAX_VALUE;
+    /** The limit of the size of the array */
+    static final long MAX_ARRAY = Integer.MAX_VALUE - 8L;
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final long NANOS_PER_MILLI = 1_000_000L;
+
+    // Beginning of the region validity period
+    private final Instant startInstant;
+    // Upper limit of the interval (exclude...)
+    private final Instant lastInstant;
+    // Last instant plus completion delay
+    private final Instant completeInstant;
+    // The size of the interval in nanos
+    private final long intervalNanos;
+    // The beginning of the first interval (startInstant rounded to the beginning of the interval)
+    private final long originMillis;
+    private final long originSecond;
+    private final int originNano;
+    // Number of intervals in the range
+    private final long intervals;
+    // Source of the current moment
+    private ITimeSource timeSource = ITimeSource.system();
+
+    /**
+     * The borders of the time range
+     *
+     * @param time The moment limiting the region processing period (if duration is positive, then on the left, otherwise - on the right)
+     * @param duration Duration of the period of the region (if negative, then to the left of instant, otherwise - to the right).
+     * @param interval The intervals at which duration beats (if &gt; duration or &lt;= ZERO, then it is taken equal to duration.abs())
+     * @param completeTimeout At a specified interval after the end of the described range, if there are no processed objects, the actor stops
+     */
+    AbstractTimeRange(
+            @NonNull  TemporalAccessor time,
+            @NonNull  Duration duration,
+            @NonNull  Duration interval,
+            @Nullable Duration completeTimeout
+    ) {
+        Objects.requireNonNull(time, "TimeRange::new - time is null");
+        Objects.requireNonNull(duration, "TimeRange::new - duration is null");
+        Objects.requireNonNull(interval, "TimeRange::new - interval is null");
+        this.startInstant = Optional.of(duration).filter(Duration::isNegative).map(Instant.from(time)::plus).orElseGet(() -> Instant.from(time));
+        this.lastInstant = Optional.of(duration).filter(Predicate.not(Duration::isNegative)).map(Instant.from(time)::plus).orElseGet(() -> Instant.from(time));
+        this.completeInstant = this.lastInstant.plus(Optional.ofNullable(completeTimeout).filter(Predicate.not(Duration::isNegative)).orElse(Duration.ZERO));
+        long intervalMillis = Math.max(1L, Optional.of(interval)
+                .filter(Predicate.not(Duration::isNegative))
+                .filter(Predicate.not(Duration::isZero))
+                .filter(value -> value.compareTo(duration.abs()) <= 0)
+                .orElseGet(duration::abs)
+                .toMillis());
+        this.intervalNanos = intervalMillis * NANOS_PER_MILLI;
+        this.originMillis = this.startInstant.toEpochMilli() - Math.floorMod(this.startInstant.toEpochMilli(), intervalMillis);
+        this.originSecond = Math.floorDiv(this.originMillis, 1000L);
+        this.originNano = (int) (Math.floorMod(this.originMillis, 1000L) * NANOS_PER_MILLI);
+        this.intervals = tick(offset(this.lastInstant)) + 1L;
+    }
+
+    @NonNull public Instant getStartInstant() {
+        return this.startInstant;
+    }
+
+    @NonNull public Instant getLastInstant() {
+        return this.lastInstant;
+    }
+
+    /**
+     * The time interval, taking into account completeTimeout, has been exhausted by the transmitted moment
+     * @param instant point in time at which the check is made
+     * @return true if exhausted or false otherwise
+     */
+    public boolean isExpired(@Nullable Instant instant) {
+        return !ofNullable(instant).orElseGet(this.timeSource::instant)
+                .isBefore(this.completeInstant);
+    }
+
+    @Override
+    public @NonNull ITimeSource getTimeSource() {
+        return this.timeSource;
+    }
+
+    @Override
+    public void setTimeSource(@Nullable ITimeSource timeSource) {
+        this.timeSource = ofNullable(timeSource).orElseGet(ITimeSource::system);
+    }
+
+    /**
+     * It is checked that the structure does not contain elements and the interval, taking into account completeTimeout,
+     * has been exhausted for the passed time point
+     * @param instant point in time at which the check is made
+     * @return true if completed or false otherwise
+     */
+    public boolean isComplete(@Nullable Instant instant) {
+        return isEmpty() && isExpired(instant);
+    }
+
+    /**
+     * Timeout until the nearest available Expected, but not less than delay, and if not, until the next time limit -
+     * either startInstant or lastInstant + completeDuration
+     * @param now point in time for which we calculate the value
+     * @return timeout to the nearest event, taking into account delay
+     */
+    public @NonNull Duration duration(@NonNull Instant now) {
+        // If the time is before the start of the range
+        if (now.isBefore(this.startInstant)) {
+            return durationToStart(now);
+        // If the start time of the range has passed and there are no elements
+        } else if (isEmpty()) {
+            return durationToStop(now);
+        // If there are elements and the time falls within the range
+        } else if (now.isBefore(this.lastInstant)) {
+            return durationToExpect(now);
+        } else {
+            return Duration.ZERO;
+        }
+    }
+
+    /**
+     * Check that the range does not contain elements
+     * @return true if there are no elements in the range
+     */
+    protected abstract boolean isEmpty();
+
+    /**
+     * The moment of the nearest element
+     * @return moment of the nearest element or null in case of absence
+     */
+    protected abstract @Nullable Instant getNearestInstant();
+
+    /**
+     * Number of intervals in the range
+     * @return number of intervals
+     */
+    final long intervals() {
+        return this.intervals;
+    }
+
+    /**
+     * Check that the instant falls within the range: startInstant &lt;= instant &lt; lastInstant
+     * @param instant point in time to check
+     * @return true if the instant is in the range
+     */
+    final boolean inRange(@NonNull Instant instant) {
+        return !this.startInstant.isAfter(instant) && this.lastInstant.isAfter(instant);
+    }
+
+    /**
+     * Offset of the instant from the beginning of the first interval in nanos
+     * @param instant point in time inside the range
+     * @return offset in nanos
+     */
+    final long offset(@NonNull Instant instant) {
+        return (instant.getEpochSecond() - this.originSecond) * NANOS_PER_SECOND + (instant.getNano() - this.originNano);
+    }
+
+    /**
+     * Offset of the moment described in millis from the epoch from the beginning of the first interval in nanos
+     * @param epochMillis point in time inside the range in millis from the epoch
+     * @return offset in nanos
+     */
+    final long millisOffset(long epochMillis) {
+        return (epochMillis - this.originMillis) * NANOS_PER_MILLI;
+    }
+
+    /**
+     * Point in time described by the offset from the beginning of the first interval
+     * @param offset offset in nanos
+     * @return point in time
+     */
+    final @NonNull Instant instant(long offset) {
+        return Instant.ofEpochSecond(this.originSecond, this.originNano + offset);
+    }
+
+    /**
+     * Offset of the moment that is not before startInstant, limited by lastInstant
+     * @param instant point in time not before startInstant
+     * @return offset in nanos
+     */
+    final long limitedOffset(@NonNull Instant instant) {
+        return offset(instant.isBefore(this.lastInstant) ? instant : this.lastInstant);
+    }
+
+    /**
+     * Check that the offset of the element read from the snapshot of the range is inside the range
+     * @param offset offset in nanos
+     * @return the same offset
+     * @throws IllegalStateException if the offset is out of range
+     */
+    final long restoredOffset(long offset) {
+        if (offset < offset(this.startInstant) || offset >= offset(this.lastInstant)) {
+            throw new IllegalStateException(getClass().getSimpleName() + "::restore - time marker of the element is out of range: " + instant(offset));
+        }
+        return offset;
+    }
+
+    /**
+     * Number of the interval for the offset
+     * @param offset offset in nanos
+     * @return number of the interval
+     */
+    final long tick(long offset) {
+        return offset / this.intervalNanos;
+    }
+
+    /**
+     * The order of the internal elements of the range. If their time markers do not match, then the result of the
+     * comparison is the same as the result of comparing the time markers. Otherwise, the order is taken according to
+     * the result of comparing both elements by the comparator, or by their hashCode if the comparator is not set
+     * @param comparator comparison of the internal elements with the same time marker
+     * @param <S> type of the internal element
+     * @return the order of the entries
+     */
+    static <S> @NonNull Comparator<Entry<S>> order(@Nullable Comparator<? super S> comparator) {
+        Comparator<? super S> elementOrder = ofNullable(comparator).orElse(AbstractTimeRange::compareObjects);
+        return (first, second) -> {
+            if (first.element == second.element) {
+                return 0;
+            }
+            int result = Long.compare(first.offset, second.offset);
+            return result != 0 ? result : elementOrder.compare(first.element, second.element);
+        };
+    }
+
+    private static int compareObjects(@NonNull Object first, @NonNull Object second) {
+        return Integer.compare(first.hashCode(), second.hashCode());
+    }
+
+    // Time until the moment after lastInstant by completeTimeout duration. If after this point we are in COMPLETE,
+    // then the actor ends.
+    // This time is given by AKKA System to deliver the message with the processing order to us. The fact is that it is not
+    // supposed to receive tasks for processing after the moment of their occurrence. This actor only accepts messages for the future
+    private @NonNull Duration durationToStop(Instant now) {
+        return durationTo(this.completeInstant, now);
+    }
+
+    // The time from the specified moment until the first element fires, and in case of absence - until the end of the range of the current key
+    private @NonNull Duration durationToExpect(@NonNull Instant now) {
+        // If the nearest element is defined, then we wait until its moment, otherwise - until the end of the range time
+        // P.S. - maybe you have to wait until the next key... It seems that there are no grounds yet, but there was a single hang-up precedent -
+        //        previously associated with the use of BalancingPool, which is not supported by this Actor !!!.
+        //        If it repeats, you need to look in the direction of optimizing durationToExpect
+        return durationTo( // We take Delay to the nearest element, and if it is not there, then to the end of the range
+                ofNullable(getNearestInstant()).orElse(this.lastInstant), now);
+    }
+
+    // The time from the specified moment until the first element is triggered, and in case of absence - until the start of the range activation
+    private @NonNull Duration durationToStart(@NonNull Instant now) {
+        return durationTo(
+                ofNullable(getNearestInstant()).orElse(this.startInstant),
+                now);
+    }
+
+    // Time until the specified moment from the moment of the now parameter
+    private static @NonNull Duration durationTo(@NonNull Instant instant, @NonNull Instant now) {
+        return instant.isAfter(now)
+                ? Duration.between(now, instant)
+                : Duration.ZERO;
+    }
+
+    /**
+     * The internal element of the range with the time marker cached as the offset
+     * @param <S> type of the internal element
+     */
+    static class Entry<S> {
+        final S element;
+        final long offset;
+        Entry(S element, long offset) {
+            this.element = element;
+            this.offset = offset;
+        }
+    }
+
+}
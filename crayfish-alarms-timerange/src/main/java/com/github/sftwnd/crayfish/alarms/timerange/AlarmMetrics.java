@@ -0,0 +1,215 @@
+/*
+ * Copyright © 2017-2023 Andrey D. Shindarev. All rights reserved.
+ * This program is made available under the terms of the BSD 3-Clause License.
+ * Contacts: ashindarev@gmail.com
+ */
+package com.github.sftwnd.crayfish.alarms.timerange;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * In-memory implementation of IAlarmMetrics without dependencies. The durations are collected into the histograms
+ * with the power of two buckets, the values are available for the export to any monitoring system
+ */
+public class AlarmMetrics implements IAlarmMetrics {
+
+    private final Histogram lateness = new Histogram();
+    private final Histogram registrationLatency = new Histogram();
+    private final AtomicInteger pendingElements = new AtomicInteger();
+    private final AtomicInteger pendingBuckets = new AtomicInteger();
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong wakeUps = new AtomicLong();
+    // Counter and moment of the previous calculation of the rate of the wakeups
+    private long rateWakeUps = 0;
+    private long rateNanos = System.nanoTime();
+
+    /**
+     * Construct the empty metrics
+     */
+    public AlarmMetrics() {
+        // All the metrics start from zero
+    }
+
+    @Override
+    public void fired(long latenessNanos) {
+        this.lateness.record(latenessNanos);
+    }
+
+    @Override
+    public void pending(int elements, int buckets) {
+        this.pendingElements.set(elements);
+        this.pendingBuckets.set(buckets);
+    }
+
+    @Override
+    public void queued(int depth) {
+        this.queueDepth.set(depth);
+    }
+
+    @Override
+    public void registered(long latencyNanos) {
+        this.registrationLatency.record(latencyNanos);
+    }
+
+    @Override
+    public void rejected(int elements) {
+        this.rejected.addAndGet(elements);
+    }
+
+    @Override
+    public void wakeUp() {
+        this.wakeUps.incrementAndGet();
+    }
+
+    /**
+     * Histogram of the firing lateness: extraction time minus the time marker of the element
+     * @return lateness histogram in nanos
+     */
+    public @NonNull Histogram getLateness() {
+        return this.lateness;
+    }
+
+    /**
+     * Histogram of the time from addElements until the completion of its future
+     * @return registration latency histogram in nanos
+     */
+    public @NonNull Histogram getRegistrationLatency() {
+        return this.registrationLatency;
+    }
+
+    /**
+     * Number of the pending elements of the last reported range
+     * @return number of the pending elements
+     */
+    public int getPendingElements() {
+        return this.pendingElements.get();
+    }
+
+    /**
+     * Number of the non-empty buckets of the last reported range
+     * @return number of the non-empty buckets
+     */
+    public int getPendingBuckets() {
+        return this.pendingBuckets.get();
+    }
+
+    /**
+     * Depth of the registration queue
+     * @return number of the queued registration requests
+     */
+    public int getQueueDepth() {
+        return this.queueDepth.get();
+    }
+
+    /**
+     * Total number of the rejected elements
+     * @return number of the rejected elements
+     */
+    public long getRejected() {
+        return this.rejected.get();
+    }
+
+    /**
+     * Total number of the wakeups of the process thread
+     * @return number of the wakeups
+     */
+    public long getWakeUps() {
+        return this.wakeUps.get();
+    }
+
+    /**
+     * Rate of the wakeups since the previous call of the method (or since the creation)
+     * @return number of the wakeups per second
+     */
+    public synchronized double getWakeUpsPerSecond() {
+        long now = System.nanoTime();
+        long count = this.wakeUps.get();
+        double rate = (count - this.rateWakeUps) * 1e9 / Math.max(1L, now - this.rateNanos);
+        this.rateWakeUps = count;
+        this.rateNanos = now;
+        return rate;
+    }
+
+    /**
+     * Lock-free histogram of the non-negative values with the power of two buckets: the bucket i contains the values
+     * of [2^(i-1), 2^i). The negative values are counted in the first bucket
+     */
+    public static class Histogram {
+
+        private final AtomicLongArray buckets = new AtomicLongArray(Long.SIZE);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+        /**
+         * Construct the empty histogram
+         */
+        public Histogram() {
+            // All the buckets start from zero
+        }
+
+        /**
+         * Add the value to the histogram
+         * @param value recorded value
+         */
+        public void record(long value) {
+            this.buckets.incrementAndGet(value <= 0 ? 0 : Long.SIZE - Long.numberOfLeadingZeros(value));
+            this.count.incrementAndGet();
+            this.sum.addAndGet(value);
+            this.max.accumulateAndGet(value, Math::max);
+        }
+
+        /**
+         * Number of the recorded values
+         * @return number of the values
+         */
+        public long getCount() {
+            return this.count.get();
+        }
+
+        /**
+         * Mean of the recorded values
+         * @return mean value or 0 if there are no values
+         */
+        public double getMean() {
+            long total = this.count.get();
+            return total == 0 ? 0 : (double) this.sum.get() / total;
+        }
+
+        /**
+         * Maximal recorded value
+         * @return maximal value or 0 if there are no values
+         */
+        public long getMax() {
+            return this.count.get() == 0 ? 0 : this.max.get();
+        }
+
+        /**
+         * Upper bound of the bucket containing the percentile
+         * @param percentile percentile in [0, 100]
+         * @return upper bound of the percentile value or 0 if there are no values
+         */
+        public long getPercentile(double percentile) {
+            long total = this.count.get();
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(Math.max(0.0, Math.min(100.0, percentile)) / 100.0 * total);
+            long seen = 0;
+            for (int i = 0; i < this.buckets.length(); i++) {
+                seen += this.buckets.get(i);
+                if (seen >= rank && seen > 0) {
+                    return i == 0 ? 0 : Math.min(getMax(), (1L << i) - 1);
+                }
+            }
+            return getMax();
+        }
+
+    }
+
+}
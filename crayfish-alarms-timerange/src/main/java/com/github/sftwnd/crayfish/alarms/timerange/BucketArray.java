@@ -0,0 +1,173 @@
+/*
+ * Copyright © 2017-2023 Andrey D. Shindarev. All rights reserved.
+ * This program is made available under the terms of the BSD 3-Clause License.
+ * Contacts: ashindarev@gmail.com
+ */
+package com.github.sftwnd.crayfish.alarms.timerange;
+
+import edu.umd.cs.findbugs.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The buckets of the range indexed by the number of the interval. The buckets are kept in the chunks of the fixed
+ * size that are allocated on the first insert into the chunk and are dropped when the last bucket of the chunk is
+ * removed, so the memory is paid only for the active part of the range. The chunks are indexed by the array, and if
+ * there are too many of them, by the sorted map. Not thread-safe.
+ * @param <B> type of the bucket
+ */
+final class BucketArray<B> {
+
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    // Over this number of the chunks, they are kept in the sorted map
+    private static final long MAX_ARRAY_CHUNKS = 1L << 17;
+
+    // Number of the buckets
+    private final long length;
+    // Chunks indexed by the number (null if the chunks are in the map)
+    private final Chunk[] chunkArray;
+    // Chunks by the number (null if the chunks are in the array)
+    private final TreeMap<Long, Chunk> chunkMap;
+    // Number of not null buckets
+    private int size = 0;
+
+    /**
+     * Construct the empty buckets
+     * @param length number of the buckets
+     */
+    BucketArray(long length) {
+        this.length = Math.max(0L, length);
+        long chunks = (this.length + CHUNK_SIZE - 1) >>> CHUNK_BITS;
+        this.chunkArray = chunks <= MAX_ARRAY_CHUNKS ? new Chunk[(int) chunks] : null;
+        this.chunkMap = this.chunkArray == null ? new TreeMap<>() : null;
+    }
+
+    /**
+     * Number of the buckets
+     * @return the number of the buckets
+     */
+    long length() {
+        return this.length;
+    }
+
+    /**
+     * Number of not null buckets
+     * @return the number of the buckets that are set
+     */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * Bucket by the index
+     * @param index index of the bucket
+     * @return bucket or null if it is not set
+     */
+    @SuppressWarnings("unchecked")
+    @Nullable B get(long index) {
+        Chunk chunk = chunk(index >>> CHUNK_BITS);
+        return chunk == null ? null : (B) chunk.buckets[(int) (index & CHUNK_MASK)];
+    }
+
+    /**
+     * Set the bucket by the index. The chunk is dropped when its last bucket is removed
+     * @param index index of the bucket
+     * @param bucket the bucket or null to remove it
+     */
+    void set(long index, @Nullable B bucket) {
+        long number = index >>> CHUNK_BITS;
+        int position = (int) (index & CHUNK_MASK);
+        Chunk chunk = chunk(number);
+        if (chunk == null) {
+            if (bucket == null) {
+                return;
+            }
+            chunk = new Chunk();
+            if (this.chunkArray != null) {
+                this.chunkArray[(int) number] = chunk;
+            } else {
+                this.chunkMap.put(number, chunk);
+            }
+        }
+        Object previous = chunk.buckets[position];
+        chunk.buckets[position] = bucket;
+        if (previous == null && bucket != null) {
+            chunk.size++;
+            this.size++;
+        } else if (previous != null && bucket == null) {
+            this.size--;
+            if (--chunk.size == 0) {
+                if (this.chunkArray != null) {
+                    this.chunkArray[(int) number] = null;
+                } else {
+                    this.chunkMap.remove(number);
+                }
+            }
+        }
+    }
+
+    /**
+     * Index of the first bucket that is set starting from the index. The empty chunks are skipped as a whole
+     * @param from index to start from
+     * @return index of the bucket or length() if there are no buckets from the index
+     */
+    long next(long from) {
+        long index = Math.max(0L, from);
+        while (this.size > 0 && index < this.length) {
+            long number = index >>> CHUNK_BITS;
+            Chunk chunk;
+            if (this.chunkArray != null) {
+                chunk = this.chunkArray[(int) number];
+            } else {
+                Map.Entry<Long, Chunk> entry = this.chunkMap.ceilingEntry(number);
+                if (entry == null) {
+                    break;
+                }
+                chunk = entry.getValue();
+                if (entry.getKey() != number) {
+                    number = entry.getKey();
+                    index = number << CHUNK_BITS;
+                }
+            }
+            if (chunk != null) {
+                for (int position = (int) (index & CHUNK_MASK); position < CHUNK_SIZE; position++) {
+                    if (chunk.buckets[position] != null) {
+                        return (number << CHUNK_BITS) | position;
+                    }
+                }
+            }
+            index = (number + 1) << CHUNK_BITS;
+        }
+        return this.length;
+    }
+
+    /**
+     * Remove all the buckets
+     */
+    void clear() {
+        if (this.chunkArray != null) {
+            Arrays.fill(this.chunkArray, null);
+        } else {
+            this.chunkMap.clear();
+        }
+        this.size = 0;
+    }
+
+    private @Nullable Chunk chunk(long number) {
+        if (this.chunkArray != null) {
+            return number < this.chunkArray.length ? this.chunkArray[(int) number] : null;
+        }
+        return this.chunkMap.get(number);
+    }
+
+    // The part of the buckets with the number of the buckets that are set
+    private static final class Chunk {
+        private final Object[] buckets = new Object[CHUNK_SIZE];
+        private int size = 0;
+    }
+
+}
@@ -0,0 +1,491 @@
+/*
+ * Copyright © 2017-2023 Andrey D. Shindarev. All rights reserved.
+ * This program is made available under the terms of the BSD 3-Clause License.
+ * Contacts: ashindarev@gmail.com
+ */
+package com.github.sftwnd.crayfish.alarms.timerange;
+
+import com.github.sftwnd.crayfish.common.expectation.TemporalExtractor;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.TemporalAccessor;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static java.util.Optional.ofNullable;
+
+/**
+ * A thread-safe time range with the same ordering and uniqueness of the elements as TimeRange.
+ * Elements can be added by any number of threads concurrently with the extraction. Every interval is kept in its own
+ * lock-free ordered set, so producers never block each other and the extracting thread.
+ * Only one thread is supposed to extract the elements at a time. The drained buckets and the chunks without buckets are
+ * freed by the extracting thread, the element inserted into the freed one at the same time is moved to the new bucket.
+ * @param <M> Element type when added
+ * @param <S> Element type in the internal storage
+ * @param <R> Element type when retrieving
+ */
+class ConcurrentTimeRange<M,S,R> extends AbstractTimeRange implements ITimeRange<M,R> {
+
+    /*
+        Used sonar warnings:
+            java:S107 Methods should not have too many params
+     */
+
+    // The buckets are grouped into the chunks of CHUNK_SIZE intervals
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    /**
+     * Constructor for the internal storage object from the incoming element
+     */
+    private final Transformer<M,S> preserver;
+
+    /**
+     * Getting the date from the preserved element
+     */
+    private final TemporalExtractor<S,? extends TemporalAccessor> expectation;
+
+    /**
+     * Getting result element from internal storage
+     */
+    private final Transformer<S,R> reducer;
+    /**
+     * The order of the internal elements in the bucket
+     */
+    private final Comparator<Entry<S>> order;
+
+    // The lower bound of the offsets of the elements. In case of absence - NONE
+    // Producers lower it after the element is stored, the extracting thread raises it after the extraction
+    private final AtomicLong nearest = new AtomicLong(NONE);
+    // Number of elements in the range
+    private final AtomicInteger size = new AtomicInteger(0);
+    // Number of the buckets in the range
+    private final AtomicInteger buckets = new AtomicInteger(0);
+    // The index of the bucket is the number of the interval from the beginning of the range. Chunks of the buckets and
+    // the buckets are created on the first insert and are set back to null when they are drained
+    private final AtomicReferenceArray<Chunk<S>> chunks;
+    // Listener of the metrics of the range
+    private volatile IAlarmMetrics metrics = IAlarmMetrics.NONE;
+
+    /**
+     * Thread-safe time range with the same parameters as TimeRange
+     */
+    @SuppressWarnings("java:S107")
+    ConcurrentTimeRange(
+            @NonNull  TemporalAccessor time,
+            @NonNull  Duration duration,
+            @NonNull  Duration interval,
+            @Nullable Duration completeTimeout,
+            @NonNull  Transformer<M,S> preserver,
+            @NonNull  TemporalExtractor<S,? extends TemporalAccessor> expectation,
+            @NonNull  Transformer<S,R> reducer,
+            @Nullable Comparator<? super S> comparator
+    ) {
+        super(time, duration, interval, completeTimeout);
+        this.preserver = Objects.requireNonNull(preserver, "ConcurrentTimeRange::new - preserver is null");
+        this.expectation = Objects.requireNonNull(expectation, "ConcurrentTimeRange::new - expectation is null");
+        this.reducer = Objects.requireNonNull(reducer, "ConcurrentTimeRange::new - reducer is null");
+        this.order = order(comparator);
+        long chunks = (intervals() + CHUNK_SIZE - 1) >>> CHUNK_BITS;
+        if (chunks > MAX_ARRAY) {
+            throw new IllegalArgumentException("ConcurrentTimeRange::new - too many intervals in the range: " + intervals());
+        }
+        this.chunks = new AtomicReferenceArray<>((int) chunks);
+    }
+
+    /**
+     * Add the specified set of elements to the range map
+     * The method can be called by several threads at the same time
+     * Out-of-range data is ignored
+     * @param elements collection of added elements
+     * @return list of ignored elements
+     */
+    @Override
+    public @NonNull Collection<M> addElements(@NonNull Collection<M> elements) {
+        Objects.requireNonNull(elements, "ConcurrentTimeRange::addElements - elements is null");
+        TimeRangeEvents.Add event = new TimeRangeEvents.Add();
+        event.begin();
+        List<M> excludes = new LinkedList<>();
+        for (M element : elements) {
+            if (element != null) {
+                S storeElement = this.preserver.apply(element);
+                Instant instant = Instant.from(this.expectation.apply(storeElement));
+                if (inRange(instant)) {
+                    store(new Entry<>(storeElement, offset(instant)));
+                } else {
+                    excludes.add(element);
+                }
+            }
+        }
+        report();
+        event.end();
+        if (event.shouldCommit()) {
+            event.elements = elements.size();
+            event.rejected = excludes.size();
+            event.commit();
+        }
+        return excludes;
+    }
+
+    // The size counts the elements in the buckets, including the freed ones until the elements are moved from them
+    private void store(@NonNull Entry<S> entry) {
+        long index = tick(entry.offset);
+        int number = (int) (index >>> CHUNK_BITS);
+        int position = (int) (index & CHUNK_MASK);
+        while (true) {
+            Chunk<S> chunk = chunk(number);
+            ConcurrentSkipListSet<Entry<S>> bucket = chunk.bucket(position, this);
+            if (bucket.add(entry)) {
+                this.size.incrementAndGet();
+            }
+            if (this.chunks.get(number) == chunk && chunk.buckets.get(position) == bucket) {
+                break;
+            }
+            // The bucket or the chunk is freed by the extracting thread: the element is moved unless it has been moved
+            // already. The bucket of the freed chunk is freed by the thread that sets it to null first
+            if (free(chunk, position, bucket)) {
+                move(bucket);
+            }
+            if (!bucket.remove(entry)) {
+                break;
+            }
+            this.size.decrementAndGet();
+        }
+        // The element is already visible in the bucket, so the extracting thread either finds it or sees the new bound
+        this.nearest.accumulateAndGet(entry.offset, Math::min);
+    }
+
+    // The chunk of the buckets, it is created if absent
+    private @NonNull Chunk<S> chunk(int number) {
+        Chunk<S> chunk = this.chunks.get(number);
+        if (chunk == null) {
+            Chunk<S> created = new Chunk<>();
+            chunk = this.chunks.compareAndExchange(number, null, created);
+            if (chunk == null) {
+                chunk = created;
+            }
+        }
+        return chunk;
+    }
+
+    // The bucket of the interval or null if it has not been created
+    private @Nullable ConcurrentSkipListSet<Entry<S>> find(long index) {
+        Chunk<S> chunk = this.chunks.get((int) (index >>> CHUNK_BITS));
+        return chunk == null ? null : chunk.buckets.get((int) (index & CHUNK_MASK));
+    }
+
+    // Set the drained bucket back to null and the chunk without buckets as well. The elements inserted into them
+    // at the same time are moved to the new buckets
+    private void unlink(int number, @NonNull Chunk<S> chunk, int position, @NonNull ConcurrentSkipListSet<Entry<S>> bucket) {
+        if (free(chunk, position, bucket)) {
+            move(bucket);
+            if (chunk.linked.get() == 0 && this.chunks.compareAndSet(number, chunk, null)) {
+                for (int index = 0; index < CHUNK_SIZE; index++) {
+                    ConcurrentSkipListSet<Entry<S>> created = chunk.buckets.get(index);
+                    if (created != null && free(chunk, index, created)) {
+                        move(created);
+                    }
+                }
+            }
+        }
+    }
+
+    // Set the bucket back to null, only one of the threads frees the bucket
+    private boolean free(@NonNull Chunk<S> chunk, int position, @NonNull ConcurrentSkipListSet<Entry<S>> bucket) {
+        if (chunk.buckets.compareAndSet(position, bucket, null)) {
+            chunk.linked.decrementAndGet();
+            this.buckets.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    // Move the elements from the freed bucket, every element is moved by the thread that removes it
+    private void move(@NonNull ConcurrentSkipListSet<Entry<S>> bucket) {
+        for (Entry<S> entry : bucket) {
+            if (bucket.remove(entry)) {
+                this.size.decrementAndGet();
+                store(entry);
+            }
+        }
+    }
+
+    /**
+     * Remove the specified set of pending elements from the range map
+     * The method can be called by several threads at the same time
+     * @param elements collection of removed elements
+     * @return list of elements that were not found
+     */
+    @Override
+    public @NonNull Collection<M> removeElements(@NonNull Collection<M> elements) {
+        Objects.requireNonNull(elements, "ConcurrentTimeRange::removeElements - elements is null");
+        List<M> missed = new LinkedList<>();
+        for (M element : elements) {
+            if (element != null) {
+                S storeElement = this.preserver.apply(element);
+                Instant instant = Instant.from(this.expectation.apply(storeElement));
+                if (!inRange(instant) || !remove(new Entry<>(storeElement, offset(instant)))) {
+                    missed.add(element);
+                }
+            }
+        }
+        report();
+        return missed;
+    }
+
+    // The nearest bound is not raised here: a stale bound just leads to the extra extraction call
+    private boolean remove(@NonNull Entry<S> entry) {
+        ConcurrentSkipListSet<Entry<S>> bucket = find(tick(entry.offset));
+        if (bucket != null && bucket.remove(entry)) {
+            this.size.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Replace the pending element with the rescheduled one in one step
+     * Nothing is changed if the pending element is not found or the rescheduled one is out of range
+     * @param element pending element
+     * @param rescheduled element with the new time marker
+     * @return true if the element is rescheduled or false otherwise
+     */
+    @Override
+    public boolean reschedule(@NonNull M element, @NonNull M rescheduled) {
+        Objects.requireNonNull(element, "ConcurrentTimeRange::reschedule - element is null");
+        Objects.requireNonNull(rescheduled, "ConcurrentTimeRange::reschedule - rescheduled is null");
+        S storeElement = this.preserver.apply(element);
+        Instant instant = Instant.from(this.expectation.apply(storeElement));
+        S storeRescheduled = this.preserver.apply(rescheduled);
+        Instant rescheduledInstant = Instant.from(this.expectation.apply(storeRescheduled));
+        if (inRange(instant) && inRange(rescheduledInstant) && remove(new Entry<>(storeElement, offset(instant)))) {
+            store(new Entry<>(storeRescheduled, offset(rescheduledInstant)));
+            report();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Extracting from the saved elements those that, according to the time marker, are considered
+     * to have worked at the time passed by the parameter
+     * Producers are not blocked during the extraction
+     * @param instant point in time at which the check is made
+     * @param limit maximal number of the extracted elements
+     * @param consumer handler of the triggered element
+     * @return number of triggered elements
+     */
+    @Override
+    public int extractFiredElements(@Nullable Instant instant, int limit, @NonNull Consumer<? super R> consumer) {
+        Objects.requireNonNull(consumer, "ConcurrentTimeRange::extractFiredElements - consumer is null");
+        Instant now = ofNullable(instant).orElseGet(getTimeSource()::instant);
+        TimeRangeEvents.Extract event = new TimeRangeEvents.Extract();
+        event.begin();
+        int fired = 0;
+        int touched = 0;
+        long earliest = NONE;
+        long firedOffset = 0;
+        if (this.size.get() > 0 && !now.isBefore(getStartInstant())) {
+            long nowOffset = limitedOffset(now);
+            // The lateness is measured from the real moment, not limited by the range
+            firedOffset = this.metrics == IAlarmMetrics.NONE && !event.isEnabled() ? nowOffset : offset(now);
+            boolean complete = !now.isBefore(getLastInstant());
+            // All the elements added before this point are not before the bound. The elements added after it
+            // lower the bound by themselves
+            long bound = this.nearest.getAndSet(NONE);
+            long remaining = NONE;
+            try {
+                for (long index = bound == NONE ? intervals() : tick(bound);
+                     index < intervals() && remaining == NONE && this.size.get() > 0 && fired < limit;
+                     index++) {
+                    int number = (int) (index >>> CHUNK_BITS);
+                    Chunk<S> chunk = this.chunks.get(number);
+                    if (chunk == null) {
+                        // The chunk without buckets is skipped as a whole
+                        index |= CHUNK_MASK;
+                        continue;
+                    }
+                    int position = (int) (index & CHUNK_MASK);
+                    ConcurrentSkipListSet<Entry<S>> bucket = chunk.buckets.get(position);
+                    if (bucket != null) {
+                        touched++;
+                        // The iterator is weakly consistent: the element added behind it has lowered the bound by itself
+                        for (Iterator<Entry<S>> iterator = bucket.iterator(); iterator.hasNext(); ) {
+                            Entry<S> entry = iterator.next();
+                            if (fired >= limit) {
+                                // The limit is reached: the rest of the elements are found by the next call
+                                remaining = entry.offset;
+                                break;
+                            } else if (complete || entry.offset <= nowOffset) {
+                                if (bucket.remove(entry)) {
+                                    this.size.decrementAndGet();
+                                    fired++;
+                                    earliest = Math.min(earliest, entry.offset);
+                                    if (this.metrics != IAlarmMetrics.NONE) {
+                                        this.metrics.fired(firedOffset - entry.offset);
+                                    }
+                                    consumer.accept(this.reducer.apply(entry.element));
+                                }
+                            } else {
+                                remaining = entry.offset;
+                                break;
+                            }
+                        }
+                        if (bucket.isEmpty()) {
+                            unlink(number, chunk, position, bucket);
+                        }
+                    }
+                }
+            } finally {
+                // In case of the consumer failure the rest of the elements are found by the next call
+                this.nearest.accumulateAndGet(this.size.get() > 0 && remaining == NONE ? bound : remaining, Math::min);
+                report();
+            }
+        }
+        event.end();
+        if (fired > 0 && event.shouldCommit()) {
+            event.fired = fired;
+            event.buckets = touched;
+            event.lateness = firedOffset - earliest;
+            event.commit();
+        }
+        return fired;
+    }
+
+    /**
+     * Write the snapshot of the pending elements in the order of the buckets
+     * The elements added or extracted by the other threads during the snapshot may be missed or included
+     * @param channel target of the snapshot
+     * @param serializer conversion of the resulting element to the binary form
+     */
+    @Override
+    public void snapshot(@NonNull WritableByteChannel channel, @NonNull Function<? super R, byte[]> serializer) {
+        Objects.requireNonNull(serializer, "ConcurrentTimeRange::snapshot - serializer is null");
+        TimeRangeSnapshot.Writer writer = new TimeRangeSnapshot.Writer(channel, this);
+        for (int number = 0; number < this.chunks.length(); number++) {
+            Chunk<S> chunk = this.chunks.get(number);
+            for (int position = 0; chunk != null && position < CHUNK_SIZE; position++) {
+                ConcurrentSkipListSet<Entry<S>> bucket = chunk.buckets.get(position);
+                if (bucket != null) {
+                    for (Entry<S> entry : bucket) {
+                        writer.write(entry.offset, serializer.apply(this.reducer.apply(entry.element)));
+                    }
+                }
+            }
+        }
+        writer.finish();
+    }
+
+    /**
+     * Load the elements from the snapshot of the same range with the time marker stored in the snapshot
+     * The method can be called by several threads at the same time with the addition of the elements
+     * @param channel source of the snapshot
+     * @param deserializer restoring of the incoming element from the binary form written by snapshot
+     */
+    @Override
+    public void restore(@NonNull ReadableByteChannel channel, @NonNull Function<byte[], ? extends M> deserializer) {
+        Objects.requireNonNull(deserializer, "ConcurrentTimeRange::restore - deserializer is null");
+        TimeRangeSnapshot.Reader reader = new TimeRangeSnapshot.Reader(channel, this);
+        while (reader.next()) {
+            store(new Entry<>(this.preserver.apply(deserializer.apply(reader.element())), restoredOffset(reader.offset())));
+        }
+        report();
+    }
+
+    /**
+     * Remove all alarms from the TimeRange
+     */
+    @Override
+    public void clean() {
+        // The bound is dropped before the drain: the element added behind the drain lowers it by itself
+        this.nearest.set(NONE);
+        for (int number = 0; number < this.chunks.length(); number++) {
+            Chunk<S> chunk = this.chunks.get(number);
+            for (int position = 0; chunk != null && position < CHUNK_SIZE; position++) {
+                ConcurrentSkipListSet<Entry<S>> bucket = chunk.buckets.get(position);
+                if (bucket != null) {
+                    while (bucket.pollFirst() != null) {
+                        this.size.decrementAndGet();
+                    }
+                    unlink(number, chunk, position, bucket);
+                }
+            }
+        }
+        report();
+    }
+
+    /**
+     * Set the listener of the metrics of the range: the lateness of the fired elements and the number of the pending
+     * elements and buckets
+     * @param metrics listener of the metrics (NONE in the case of null)
+     */
+    @Override
+    public void setMetrics(@Nullable IAlarmMetrics metrics) {
+        this.metrics = ofNullable(metrics).orElse(IAlarmMetrics.NONE);
+        report();
+    }
+
+    private void report() {
+        IAlarmMetrics listener = this.metrics;
+        if (listener != IAlarmMetrics.NONE) {
+            listener.pending(this.size.get(), this.buckets.get());
+        }
+    }
+
+    /**
+     * The range can be filled by several threads at the same time
+     * @return true
+     */
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
+    @Override
+    protected boolean isEmpty() {
+        return this.size.get() == 0;
+    }
+
+    @Override
+    protected @Nullable Instant getNearestInstant() {
+        long offset = this.nearest.get();
+        return offset == NONE ? null : instant(offset);
+    }
+
+    // The buckets of CHUNK_SIZE intervals with the number of the buckets
+    private static final class Chunk<S> {
+        private final AtomicReferenceArray<ConcurrentSkipListSet<Entry<S>>> buckets = new AtomicReferenceArray<>(CHUNK_SIZE);
+        private final AtomicInteger linked = new AtomicInteger(0);
+        // The bucket of the position, it is created if absent
+        private @NonNull ConcurrentSkipListSet<Entry<S>> bucket(int position, @NonNull ConcurrentTimeRange<?,S,?> timeRange) {
+            ConcurrentSkipListSet<Entry<S>> bucket = this.buckets.get(position);
+            if (bucket == null) {
+                ConcurrentSkipListSet<Entry<S>> created = new ConcurrentSkipListSet<>(timeRange.order);
+                bucket = this.buckets.compareAndExchange(position, null, created);
+                if (bucket == null) {
+                    bucket = created;
+                    this.linked.incrementAndGet();
+                    timeRange.buckets.incrementAndGet();
+                }
+            }
+            return bucket;
+        }
+    }
+
+}
@@ -0,0 +1,371 @@
+/*
+ * Copyright © 2017-2023 Andrey D. Shindarev. All rights reserved.
+ * This program is made available under the terms of the BSD 3-Clause License.
+ * Contacts: ashindarev@gmail.com
+ */
+package com.github.sftwnd.crayfish.alarms.timerange;
+
+import com.github.sftwnd.crayfish.common.expectation.TemporalExtractor;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.TemporalAccessor;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static java.util.Optional.ofNullable;
+
+/**
+ * A time range with the uniqueness of the elements provided by the hash index of the interval instead of the order.
+ * Two elements are duplicates if they have the same time marker and equal keys (the element itself by default),
+ * so the elements with the colliding hashCode are not lost. Duplicate detection takes O(1). The elements of the
+ * interval are ordered by the time marker only, the order of the elements with the same time marker is not defined.
+ * @param <M> Element type when added
+ * @param <S> Element type in the internal storage
+ * @param <R> Element type when retrieving
+ */
+class HashedTimeRange<M,S,R> extends AbstractTimeRange implements ITimeRange<M,R> {
+
+    /*
+        Used sonar warnings:
+            java:S107 Methods should not have too many params
+     */
+
+    /**
+     * Constructor for the internal storage object from the incoming element
+     */
+    private final Transformer<M,S> preserver;
+
+    /**
+     * Getting the date from the preserved element
+     */
+    private final TemporalExtractor<S,? extends TemporalAccessor> expectation;
+
+    /**
+     * Getting result element from internal storage
+     */
+    private final Transformer<S,R> reducer;
+
+    /**
+     * Getting the key of the uniqueness from internal element
+     */
+    private final Function<? super S, ?> key;
+
+    // The offset of the nearest element. In case of absence - NONE
+    private long nearest = NONE;
+    // The index of the bucket is the number of the interval from the beginning of the range
+    private final BucketArray<Bucket<S>> buckets;
+    // Index of the first bucket that may contain elements (buckets.length() if there are no elements)
+    private long firstBucket;
+
+    /**
+     * Time range with the same parameters as TimeRange, but with the key of the uniqueness instead of the comparator
+     * @param key Getting the key of the uniqueness from the internal element (if null, then the element itself is the key)
+     */
+    @SuppressWarnings("java:S107")
+    HashedTimeRange(
+            @NonNull  TemporalAccessor time,
+            @NonNull  Duration duration,
+            @NonNull  Duration interval,
+            @Nullable Duration completeTimeout,
+            @NonNull  Transformer<M,S> preserver,
+            @NonNull  TemporalExtractor<S,? extends TemporalAccessor> expectation,
+            @NonNull  Transformer<S,R> reducer,
+            @Nullable Function<? super S, ?> key
+    ) {
+        super(time, duration, interval, completeTimeout);
+        this.preserver = Objects.requireNonNull(preserver, "HashedTimeRange::new - preserver is null");
+        this.expectation = Objects.requireNonNull(expectation, "HashedTimeRange::new - expectation is null");
+        this.reducer = Objects.requireNonNull(reducer, "HashedTimeRange::new - reducer is null");
+        this.key = key == null ? element -> element : key;
+        this.buckets = new BucketArray<>(intervals());
+        this.firstBucket = this.buckets.length();
+    }
+
+    /**
+     * Add the specified set of elements to the range map
+     * The duplicate of the pending element is ignored
+     * Out-of-range data is ignored
+     * @param elements collection of added elements
+     * @return list of ignored out-of-range elements
+     */
+    @Override
+    public @NonNull Collection<M> addElements(@NonNull Collection<M> elements) {
+        Objects.requireNonNull(elements, "HashedTimeRange::addElements - elements is null");
+        List<M> excludes = new LinkedList<>();
+        for (M element : elements) {
+            if (element != null) {
+                KeyedEntry<S> entry = entry(element);
+                if (entry != null) {
+                    store(entry);
+                } else {
+                    excludes.add(element);
+                }
+            }
+        }
+        return excludes;
+    }
+
+    /**
+     * Remove the specified set of pending elements from the range map
+     * The element is looked for in the hash index of its interval
+     * @param elements collection of removed elements
+     * @return list of elements that were not found
+     */
+    @Override
+    public @NonNull Collection<M> removeElements(@NonNull Collection<M> elements) {
+        Objects.requireNonNull(elements, "HashedTimeRange::removeElements - elements is null");
+        List<M> missed = new LinkedList<>();
+        for (M element : elements) {
+            if (element != null) {
+                KeyedEntry<S> entry = entry(element);
+                if (entry == null || !remove(entry)) {
+                    missed.add(element);
+                }
+            }
+        }
+        return missed;
+    }
+
+    /**
+     * Replace the pending element with the rescheduled one in one step
+     * Nothing is changed if the pending element is not found or the rescheduled one is out of range
+     * @param element pending element
+     * @param rescheduled element with the new time marker
+     * @return true if the element is rescheduled or false otherwise
+     */
+    @Override
+    public boolean reschedule(@NonNull M element, @NonNull M rescheduled) {
+        Objects.requireNonNull(element, "HashedTimeRange::reschedule - element is null");
+        Objects.requireNonNull(rescheduled, "HashedTimeRange::reschedule - rescheduled is null");
+        KeyedEntry<S> entry = entry(element);
+        KeyedEntry<S> rescheduledEntry = entry(rescheduled);
+        if (entry != null && rescheduledEntry != null && remove(entry)) {
+            store(rescheduledEntry);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Extracting from the saved elements those that, according to the time marker, are considered
+     * to have worked at the time passed by the parameter
+     * @param instant point in time at which the check is made
+     * @param limit maximal number of the extracted elements
+     * @param consumer handler of the triggered element
+     * @return number of triggered elements
+     */
+    @Override
+    public int extractFiredElements(@Nullable Instant instant, int limit, @NonNull Consumer<? super R> consumer) {
+        Objects.requireNonNull(consumer, "HashedTimeRange::extractFiredElements - consumer is null");
+        Instant now = ofNullable(instant).orElseGet(getTimeSource()::instant);
+        int fired = 0;
+        if (this.buckets.size() > 0 && !now.isBefore(getStartInstant())) {
+            try {
+                long nowOffset = limitedOffset(now);
+                // The bucket corresponding to the current moment. All buckets before it are fired completely
+                long nowBucket = now.isBefore(getLastInstant()) ? tick(nowOffset) : this.buckets.length();
+                long lastBucket = Math.min(nowBucket, this.buckets.length() - 1);
+                for (long index = this.buckets.next(this.firstBucket); index <= lastBucket && fired < limit; index = this.buckets.next(index + 1)) {
+                    Bucket<S> bucket = this.buckets.get(index);
+                    fired += fire(bucket, index < nowBucket ? NONE : nowOffset, limit - fired, consumer);
+                    if (bucket.isEmpty()) {
+                        this.buckets.set(index, null);
+                    }
+                }
+            } finally {
+                this.nearest = findNearest();
+            }
+        }
+        return fired;
+    }
+
+    // Fire the elements of the bucket with the offset not after the limit in the order of the offset
+    private int fire(@NonNull Bucket<S> bucket, long nowOffset, int limit, @NonNull Consumer<? super R> consumer) {
+        int fired = 0;
+        for (KeyedEntry<S> entry = bucket.first(); entry != null && entry.offset <= nowOffset && fired < limit; entry = bucket.first()) {
+            bucket.poll();
+            fired++;
+            consumer.accept(this.reducer.apply(entry.element));
+        }
+        return fired;
+    }
+
+    private long findNearest() {
+        this.firstBucket = this.buckets.next(this.firstBucket);
+        // The bucket may stay empty if the consumer has failed
+        while (this.firstBucket < this.buckets.length() && this.buckets.get(this.firstBucket).isEmpty()) {
+            this.buckets.set(this.firstBucket, null);
+            this.firstBucket = this.buckets.next(this.firstBucket + 1);
+        }
+        return this.firstBucket < this.buckets.length() ? this.buckets.get(this.firstBucket).first().offset : NONE;
+    }
+
+    /**
+     * Write the point-in-time snapshot of the pending elements in the order of the buckets
+     * @param channel target of the snapshot
+     * @param serializer conversion of the resulting element to the binary form
+     */
+    @Override
+    public void snapshot(@NonNull WritableByteChannel channel, @NonNull Function<? super R, byte[]> serializer) {
+        Objects.requireNonNull(serializer, "HashedTimeRange::snapshot - serializer is null");
+        TimeRangeSnapshot.Writer writer = new TimeRangeSnapshot.Writer(channel, this);
+        for (long index = this.buckets.next(this.firstBucket); index < this.buckets.length(); index = this.buckets.next(index + 1)) {
+            for (KeyedEntry<S> entry : this.buckets.get(index).index.keySet()) {
+                writer.write(entry.offset, serializer.apply(this.reducer.apply(entry.element)));
+            }
+        }
+        writer.finish();
+    }
+
+    /**
+     * Load the elements from the snapshot of the same range with the time marker stored in the snapshot
+     * The duplicates of the pending elements are ignored
+     * @param channel source of the snapshot
+     * @param deserializer restoring of the incoming element from the binary form written by snapshot
+     */
+    @Override
+    public void restore(@NonNull ReadableByteChannel channel, @NonNull Function<byte[], ? extends M> deserializer) {
+        Objects.requireNonNull(deserializer, "HashedTimeRange::restore - deserializer is null");
+        TimeRangeSnapshot.Reader reader = new TimeRangeSnapshot.Reader(channel, this);
+        while (reader.next()) {
+            S storeElement = this.preserver.apply(deserializer.apply(reader.element()));
+            store(new KeyedEntry<>(storeElement, this.key.apply(storeElement), restoredOffset(reader.offset())));
+        }
+    }
+
+    /**
+     * Remove all alarms from the TimeRange
+     */
+    @Override
+    public void clean() {
+        this.buckets.clear();
+        this.firstBucket = this.buckets.length();
+        this.nearest = NONE;
+    }
+
+    @Override
+    protected boolean isEmpty() {
+        return this.buckets.size() == 0;
+    }
+
+    @Override
+    protected @Nullable Instant getNearestInstant() {
+        return this.nearest == NONE ? null : instant(this.nearest);
+    }
+
+    // The entry of the element or null if it is out of range
+    private @Nullable KeyedEntry<S> entry(@NonNull M element) {
+        S storeElement = this.preserver.apply(element);
+        Instant instant = Instant.from(this.expectation.apply(storeElement));
+        return inRange(instant)
+                ? new KeyedEntry<>(storeElement, this.key.apply(storeElement), offset(instant))
+                : null;
+    }
+
+    private void store(@NonNull KeyedEntry<S> entry) {
+        long index = tick(entry.offset);
+        Bucket<S> bucket = this.buckets.get(index);
+        if (bucket == null) {
+            bucket = new Bucket<>();
+            this.buckets.set(index, bucket);
+            this.firstBucket = Math.min(this.firstBucket, index);
+        }
+        if (bucket.add(entry)) {
+            this.nearest = Math.min(this.nearest, entry.offset);
+        }
+    }
+
+    private boolean remove(@NonNull KeyedEntry<S> entry) {
+        long index = tick(entry.offset);
+        Bucket<S> bucket = this.buckets.get(index);
+        if (bucket == null || !bucket.remove(entry)) {
+            return false;
+        }
+        if (bucket.isEmpty()) {
+            this.buckets.set(index, null);
+        }
+        if (entry.offset == this.nearest) {
+            this.nearest = findNearest();
+        }
+        return true;
+    }
+
+    // The elements of the interval: the hash index of the pending entries and the heap of them by the offset.
+    // The removed entry is not looked for in the heap, it is dropped when it reaches the top of the heap
+    private static final class Bucket<S> {
+        private final Map<KeyedEntry<S>, KeyedEntry<S>> index = new HashMap<>();
+        private PriorityQueue<KeyedEntry<S>> heap = new PriorityQueue<>(Comparator.comparingLong((KeyedEntry<S> entry) -> entry.offset));
+        private boolean add(@NonNull KeyedEntry<S> entry) {
+            if (this.index.putIfAbsent(entry, entry) != null) {
+                return false;
+            }
+            this.heap.add(entry);
+            return true;
+        }
+        private boolean remove(@NonNull KeyedEntry<S> entry) {
+            if (this.index.remove(entry) == null) {
+                return false;
+            }
+            // The heap is rebuilt if the removed entries take the most of it
+            if (this.heap.size() > 2 * this.index.size() + 16) {
+                PriorityQueue<KeyedEntry<S>> pending = new PriorityQueue<>(Math.max(1, this.index.size()), this.heap.comparator());
+                pending.addAll(this.index.values());
+                this.heap = pending;
+            }
+            return true;
+        }
+        // The pending entry with the minimal offset or null if the bucket is empty
+        private @Nullable KeyedEntry<S> first() {
+            // The entry is pending if the index refers to the same instance, the equal one may be added after the removal
+            while (!this.heap.isEmpty() && this.index.get(this.heap.peek()) != this.heap.peek()) {
+                this.heap.poll();
+            }
+            return this.heap.peek();
+        }
+        // Remove the first pending entry found by first()
+        private void poll() {
+            this.index.remove(this.heap.poll());
+        }
+        private boolean isEmpty() {
+            return this.index.isEmpty();
+        }
+    }
+
+    // The entry with the key of the uniqueness. Entries are equal if they have the same offset and equal keys
+    private static final class KeyedEntry<S> extends Entry<S> {
+        private final Object key;
+        private KeyedEntry(S element, Object key, long offset) {
+            super(element, offset);
+            this.key = key;
+        }
+        @Override
+        public boolean equals(Object object) {
+            if (this == object) {
+                return true;
+            }
+            if (!(object instanceof KeyedEntry)) {
+                return false;
+            }
+            KeyedEntry<?> entry = (KeyedEntry<?>) object;
+            return this.offset == entry.offset && Objects.equals(this.key, entry.key);
+        }
+        @Override
+        public int hashCode() {
+            return 31 * Objects.hashCode(this.key) + Long.hashCode(this.offset);
+        }
+    }
+
+}
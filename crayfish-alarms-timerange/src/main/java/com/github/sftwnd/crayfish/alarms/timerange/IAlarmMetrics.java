@@ -0,0 +1,61 @@
+/*
+ * Copyright © 2017-2023 Andrey D. Shindarev. All rights reserved.
+ * This program is made available under the terms of the BSD 3-Clause License.
+ * Contacts: ashindarev@gmail.com
+ */
+package com.github.sftwnd.crayfish.alarms.timerange;
+
+/**
+ * Listener of the metrics of the TimeRange and the alarm service. All the methods do nothing by default, and the
+ * sources of the metrics skip the calls when NONE is used
+ */
+public interface IAlarmMetrics {
+
+    /**
+     * Metrics are disabled
+     */
+    IAlarmMetrics NONE = new IAlarmMetrics() {};
+
+    /**
+     * The element is extracted from the range
+     * @param latenessNanos time from the time marker of the element until the moment of the extraction in nanos
+     */
+    default void fired(long latenessNanos) {
+    }
+
+    /**
+     * The content of the range is changed
+     * @param elements number of the pending elements
+     * @param buckets number of the non-empty buckets
+     */
+    default void pending(int elements, int buckets) {
+    }
+
+    /**
+     * The depth of the registration queue of the service is changed
+     * @param depth number of the queued registration requests
+     */
+    default void queued(int depth) {
+    }
+
+    /**
+     * The registration request is completed
+     * @param latencyNanos time from the request until the completion of its future in nanos
+     */
+    default void registered(long latencyNanos) {
+    }
+
+    /**
+     * The elements are rejected on the registration
+     * @param elements number of the rejected elements
+     */
+    default void rejected(int elements) {
+    }
+
+    /**
+     * The process thread of the service is woken up
+     */
+    default void wakeUp() {
+    }
+
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright © 2017-2023 Andrey D. Shindarev. All rights reserved.
+ * This program is made available under the terms of the BSD 3-Clause License.
+ * Contacts: ashindarev@gmail.com
+ */
+package com.github.sftwnd.crayfish.alarms.timerange;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+/**
+ * Conversion of the element to the binary form and back for the storage of the TimeRange outside the memory
+ * @param <T> element type
+ */
+public interface IElementSerializer<T> {
+
+    /**
+     * Convert the element to the binary form
+     * @param element the element
+     * @return binary form of the element
+     */
+    @NonNull byte[] serialize(@NonNull T element);
+
+    /**
+     * Restore the element from the binary form
+     * @param bytes binary form of the element
+     * @return the element
+     */
+    @NonNull T deserialize(@NonNull byte[] bytes);
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright © 2017-2023 Andrey D. Shindarev. All rights reserved.
+ * This program is made available under the terms of the BSD 3-Clause License.
+ * Contacts: ashindarev@gmail.com
+ */
+package com.github.sftwnd.crayfish.alarms.timerange;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.time.Instant;
+import java.util.function.LongConsumer;
+
+/**
+ * TimeRange holder of the alarms described by the long identifier and the epoch millis of the alarm moment,
+ * stored without boxing
+ */
+public interface ILongTimeRange extends ITimeRegion {
+
+    /**
+     * Add the alarm to the range
+     * Out-of-range alarm is ignored
+     * @param id identifier of the alarm
+     * @param epochMillis moment of the alarm in millis from the epoch
+     * @return true if the alarm is added or false if it is out of range
+     */
+    boolean addElement(long id, long epochMillis);
+
+    /**
+     * Remove one pending alarm with the same identifier and moment from the range
+     * @param id identifier of the alarm
+     * @param epochMillis moment of the alarm in millis from the epoch
+     * @return true if the alarm is removed or false if it is not found
+     */
+    boolean removeElement(long id, long epochMillis);
+
+    /**
+     * Move the pending alarm to the new moment in one step
+     * Nothing is changed if the pending alarm is not found or the new moment is out of range
+     * @param id identifier of the alarm
+     * @param epochMillis moment of the pending alarm in millis from the epoch
+     * @param rescheduledMillis new moment of the alarm in millis from the epoch
+     * @return true if the alarm is rescheduled or false otherwise
+     */
+    boolean reschedule(long id, long epochMillis, long rescheduledMillis);
+
+    /**
+     * Extracting the identifiers of the alarms that, according to the time marker, are considered to have worked
+     * at the current moment
+     * @param consumer handler of the identifier of the triggered alarm
+     * @return number of triggered alarms
+     */
+    default int extractFiredElements(@NonNull LongConsumer consumer) {
+        return extractFiredElements(getTimeSource().instant(), consumer);
+    }
+
+    /**
+     * Extracting the identifiers of the alarms that, according to the time marker, are considered to have worked
+     * at the time passed by the parameter
+     * The alarm is removed from the range before it is passed to the consumer
+     * @param instant point in time at which the check is made
+     * @param consumer handler of the identifier of the triggered alarm
+     * @return number of triggered alarms
+     */
+    int extractFiredElements(@Nullable Instant instant, @NonNull LongConsumer consumer);
+
+    /**
+     * Write the point-in-time snapshot of the pending alarms in the order of the buckets, for example to FileChannel
+     * The identifier of the alarm is written as the 8-byte element of the snapshot
+     * @param channel target of the snapshot
+     */
+    void snapshot(@NonNull WritableByteChannel channel);
+
+    /**
+     * Load the alarms from the snapshot of the same range directly to the buckets
+     * @param channel source of the snapshot
+     */
+    void restore(@NonNull ReadableByteChannel channel);
+
+}
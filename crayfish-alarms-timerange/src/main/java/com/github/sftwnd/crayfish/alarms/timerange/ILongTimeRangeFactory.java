@@ -0,0 +1,43 @@
+/*
+ * Copyright © 2017-2023 Andrey D. Shindarev. All rights reserved.
+ * This program is made available under the terms of the BSD 3-Clause License.
+ * Contacts: ashindarev@gmail.com
+ */
+package com.github.sftwnd.crayfish.alarms.timerange;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+
+import java.time.Duration;
+import java.time.temporal.TemporalAccessor;
+
+/**
+ * Factory for ILongTimeRange instance creation
+ */
+@FunctionalInterface
+public interface ILongTimeRangeFactory {
+
+    /**
+     * Create ILongTimeRange based on current configuration
+     * @param time actual border for plotting the final TimeRange
+     * @return object ILongTimeRange
+     */
+    @NonNull ILongTimeRange timeRange(@NonNull TemporalAccessor time);
+
+    /**
+     * Creating a ILongTimeRangeFactory
+     *
+     * @param duration Duration of the region period (if negative, then to the left of instant, otherwise - to the right)
+     * @param interval The intervals at which duration beats (if &gt; duration or &lt;= ZERO, then it is taken equal to duration.abs())
+     * @param completeTimeout At a specified interval after the end of the described range, if there are no processed objects, the actor stops
+     * @return ILongTimeRangeFactory instance
+     */
+    static @NonNull ILongTimeRangeFactory create(
+            @NonNull  Duration duration,
+            @NonNull  Duration interval,
+            @Nullable Duration completeTimeout
+    ) {
+        return time -> new LongTimeRange(time, duration, interval, completeTimeout);
+    }
+
+}
@@ -8,11 +8,14 @@ package com.github.sftwnd.crayfish.alarms.timerange;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.Nullable;
 
-import java.time.Duration;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 /**
@@ -20,51 +23,7 @@ import java.util.function.Function;
  * @param <M> incoming alarm description type
  * @param <R> resulting alarm event type
  */
-public interface ITimeRange<M,R> extends ITimeRangeConsumer<M,Collection<M>> {
-
-    /**
-     * Point in time that is the start of the time range
-     * @return start of time range
-     */
-    @NonNull Instant getStartInstant();
-
-    /**
-     * Point in time that is the end of a time range
-     * @return after of time range
-     */
-    @NonNull Instant getLastInstant();
-
-    /**
-     * The time interval taking into account completeTimeout has been exhausted by the current moment
-     * @return true if exhausted or false otherwise
-     */
-    default boolean isExpired() {
-        return isExpired(Instant.now());
-    }
-
-    /**
-     * The time interval, taking into account completeTimeout, has been exhausted by the transmitted moment
-     * @param instant point in time at which the check is made
-     * @return true if exhausted or false otherwise
-     */
-    boolean isExpired(@Nullable Instant instant);
-
-    /**
-     * It is checked that the structure does not contain elements and the interval, taking into account completeTimeout,
-     * has been exhausted at the current time
-     * @return true if completed or false otherwise
-     */
-    default boolean isComplete() {
-        return isComplete(Instant.now());
-    }
-
-    /**
-     * It is checked that the structure does not contain elements and the interval, taking into account completeTimeout,
-     * has been exhausted for the passed time point
-     * @param instant point in time at which the check is made
-     * @return true if completed or false otherwise
-     */
-    boolean isComplete(@Nullable Instant instant);
+public interface ITimeRange<M,R> extends ITimeRegion, ITimeRangeConsumer<M,Collection<M>> {
 
     /**
      * Add the specified set of elements to the range map
@@ -85,54 +44,129 @@ public interface ITimeRange<M,R> extends ITimeRangeConsumer<M,Collection<M>> {
         return addElements(List.of(element));
     }
 
+    /**
+     * Remove the specified set of pending elements from the range map
+     * The bucket of the element is found by its time marker, so the removal does not scan the range
+     * The removal depends on the storage of the range, so the method has no default implementation
+     * @param elements collection of removed elements
+     * @return list of elements that were not found
+     */
+    @NonNull Collection<M> removeElements(@NonNull Collection<M> elements);
+
+    /**
+     * Remove just one pending element from the range map
+     * @param element element to remove
+     * @return list of elements that were not found (just zero or one element)
+     */
+    default @NonNull Collection<M> removeElement(@NonNull M element) {
+        return removeElements(List.of(element));
+    }
+
+    /**
+     * Replace the pending element with the rescheduled one in one step: the element is moved to the bucket of the
+     * new time marker and the nearest element is recalculated
+     * Nothing is changed if the pending element is not found or the rescheduled one is out of range
+     * By default the element is removed and the rescheduled one is added, the removed element is added back if the
+     * rescheduled one is rejected. The implementations override it to make the reschedule in one step
+     * @param element pending element
+     * @param rescheduled element with the new time marker
+     * @return true if the element is rescheduled or false otherwise
+     */
+    default boolean reschedule(@NonNull M element, @NonNull M rescheduled) {
+        Objects.requireNonNull(element, "ITimeRange::reschedule - element is null");
+        Objects.requireNonNull(rescheduled, "ITimeRange::reschedule - rescheduled is null");
+        if (!removeElement(element).isEmpty()) {
+            return false;
+        } else if (addElement(rescheduled).isEmpty()) {
+            return true;
+        }
+        addElement(element);
+        return false;
+    }
+
     /**
      * Extracting from the saved elements those that, according to the temporary marker, are considered to have
      * worked at the current moment
      * @return List of triggered elements
      */
     default @NonNull Collection<R> extractFiredElements() {
-        return extractFiredElements( Instant.now() );
+        return extractFiredElements( getTimeSource().instant() );
     }
 
     /**
      * Extracting from the saved elements those that, according to the time marker, are considered to have worked
      * at the time passed by the parameter
+     * The implementation has to override this method or the limited extraction: each of them is defined by the other one
      * @param instant point in time at which the check is made
      * @return List of triggered elements
      */
-    @NonNull Collection<R> extractFiredElements(@Nullable Instant instant);
+    default @NonNull Collection<R> extractFiredElements(@Nullable Instant instant) {
+        List<R> result = new ArrayList<>();
+        extractFiredElements(instant, result::add);
+        return result;
+    }
 
     /**
-     * Timeout until the nearest available Expected, but not less than delay, and if not, until the next time limit -
-     * either startInstant or lastInstant + completeDuration
-     * @return timeout to the nearest event, taking into account the delay from the current moment
+     * Extracting from the saved elements those that, according to the time marker, are considered to have worked
+     * at the time passed by the parameter, with passing of each triggered element directly to the consumer
+     * The element is removed from the range before it is passed to the consumer
+     * @param instant point in time at which the check is made
+     * @param consumer handler of the triggered element
+     * @return number of triggered elements
      */
-    default @NonNull Duration duration() {
-        return duration( Duration.ZERO );
+    default int extractFiredElements(@Nullable Instant instant, @NonNull Consumer<? super R> consumer) {
+        return extractFiredElements(instant, Integer.MAX_VALUE, consumer);
     }
 
     /**
-     * Timeout until the nearest available Expected, but not less than delay from now, and if not, until the next
-     * time limit - either startInstant or lastInstant + completeDuration
-     * @param delay point in time with delay from now for which we calculate the value
-     * @return timeout to the nearest event, taking into account the delay from the current moment
+     * Extracting not more than limit of the triggered elements, starting from the earliest intervals, with passing of each
+     * element directly to the consumer. The rest of the triggered elements stay in the range until the next call
+     * By default all the triggered elements are extracted to the buffer and are passed to the consumer, so the limit
+     * is not kept by the implementations without their own limited extraction
+     * @param instant point in time at which the check is made
+     * @param limit maximal number of the extracted elements
+     * @param consumer handler of the triggered element
+     * @return number of triggered elements
      */
-    default @NonNull Duration duration(Duration delay) {
-        return duration( Instant.now().plus(delay) );
+    default int extractFiredElements(@Nullable Instant instant, int limit, @NonNull Consumer<? super R> consumer) {
+        Objects.requireNonNull(consumer, "ITimeRange::extractFiredElements - consumer is null");
+        Collection<R> fired = extractFiredElements(instant);
+        fired.forEach(consumer);
+        return fired.size();
     }
 
     /**
-     * Timeout until the nearest available Expected, but not less than delay, and if not, until the next time limit -
-     * either startInstant or lastInstant + completeDuration
-     * @param now point in time for which we calculate the value
-     * @return timeout to the nearest event, taking into account delay
+     * Write the point-in-time snapshot of the pending elements in the order of the buckets, for example to FileChannel
+     * The pending elements can't be read through the other methods of the range, so the method has no default implementation
+     * @param channel target of the snapshot
+     * @param serializer conversion of the resulting element to the binary form
+     */
+    void snapshot(@NonNull WritableByteChannel channel, @NonNull Function<? super R, byte[]> serializer);
+
+    /**
+     * Load the elements from the snapshot of the same range directly to the buckets, without the extraction of the
+     * time marker and the sorting of the elements
+     * The method has no default implementation, as well as the snapshot
+     * @param channel source of the snapshot
+     * @param deserializer restoring of the incoming element from the binary form written by snapshot
      */
-    @NonNull Duration duration(@NonNull Instant now);
+    void restore(@NonNull ReadableByteChannel channel, @NonNull Function<byte[], ? extends M> deserializer);
 
     /**
-     * Remove all alarms from the TimeRange
+     * Set the listener of the metrics of the range. The metrics are ignored by the implementations without their support
+     * @param metrics listener of the metrics (NONE in the case of null)
      */
-    void clean();
+    default void setMetrics(@Nullable IAlarmMetrics metrics) {
+    }
+
+    /**
+     * Check that elements can be added to the range by several threads at the same time, including the time of the
+     * extraction of the fired elements
+     * @return true if the range is thread-safe or false otherwise
+     */
+    default boolean isThreadSafe() {
+        return false;
+    }
 
     /**
      * Transformation of nonnull element to nonnull value
@@ -12,9 +12,12 @@ import com.github.sftwnd.crayfish.common.expectation.TemporalExtractor;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.Nullable;
 
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.temporal.TemporalAccessor;
 import java.util.Comparator;
+import java.util.Objects;
+import java.util.function.Function;
 
 /**
  * Factory for ITimeRange instance creation
@@ -156,4 +159,283 @@ public interface ITimeRangeFactory<M,R> {
         return create(duration, interval, completeTimeout, temporal -> temporal, comparator);
     }
 
+    /**
+     * Creating a ITimeRangeFactory of the TimeRange built as a hierarchical timing wheel. Insertion of the element and
+     * the expiry of the interval take O(1), so it suits for the long ranges with a large number of elements.
+     * Elements are not ordered inside the interval and duplicates are not filtered out.
+     *
+     * @param duration Duration of the region period (if negative, then to the left of instant, otherwise - to the right)
+     * @param interval The size of the slot of the wheel (if &gt; duration or &lt;= ZERO, then it is taken equal to duration.abs())
+     * @param completeTimeout At a specified interval after the end of the described range, if there are no processed objects, the actor stops
+     * @param preserver Constructor for the internal storage object from the incoming element
+     * @param expectation Getting timestamp from internal element
+     * @param reducer Method for converting an internal element into a result element
+     * @param <M> input element type
+     * @param <S> internal element type
+     * @param <R> the type of the returned element
+     * @return ITimeRangeFactory instance
+     */
+    static <M,S,R> @NonNull ITimeRangeFactory<M,R> wheel(
+            @NonNull  Duration duration,
+            @NonNull  Duration interval,
+            @Nullable Duration completeTimeout,
+            @NonNull  Transformer<M,S> preserver,
+            @NonNull  TemporalExtractor<S,? extends TemporalAccessor> expectation,
+            @NonNull  Transformer<S,R> reducer
+    ) {
+        return time -> new TimeRangeWheel<>(
+                time,
+                duration,
+                interval,
+                completeTimeout,
+                preserver,
+                expectation,
+                reducer
+        );
+    }
+
+    /**
+     * Creating a ITimeRangeFactory of the TimeRange built as a hierarchical timing wheel with the same type of
+     * registered and returned items
+     *
+     * @param duration Duration of the region period (if negative, then to the left of instant, otherwise - to the right)
+     * @param interval The size of the slot of the wheel (if &gt; duration or &lt;= ZERO, then it is taken equal to duration.abs())
+     * @param completeTimeout At a specified interval after the end of the described range, if there are no processed objects, the actor stops
+     * @param expectation Getting timestamp from internal element
+     * @param <M> input element type
+     * @return ITimeRangeFactory instance
+     */
+    static <M> @NonNull ITimeRangeFactory<M,M> wheel(
+            @NonNull  Duration duration,
+            @NonNull  Duration interval,
+            @Nullable Duration completeTimeout,
+            @NonNull  TemporalExtractor<M,? extends TemporalAccessor> expectation
+    ) {
+        return wheel(duration, interval, completeTimeout, Transformer.identity(), expectation, Transformer.identity());
+    }
+
+    /**
+     * Creating a ITimeRangeFactory of the thread-safe TimeRange. Elements can be added by several threads at the same
+     * time, including the time of the extraction of the fired elements, with the same order and uniqueness of the
+     * elements as the TimeRange created by the create method
+     *
+     * @param duration Duration of the region period (if negative, then to the left of instant, otherwise - to the right)
+     * @param interval The intervals at which duration beats (if &gt; duration or &lt;= ZERO, then it is taken equal to duration.abs())
+     * @param completeTimeout At a specified interval after the end of the described range, if there are no processed objects, the actor stops
+     * @param preserver Constructor for the internal storage object from the incoming element
+     * @param expectation Getting timestamp from internal element
+     * @param reducer Method for converting an internal element into a result element
+     * @param comparator Redefining a comparator to order Expected objects not only in temporal ascending order, but also in internal content
+     * @param <M> input element type
+     * @param <S> internal element type
+     * @param <R> the type of the returned element
+     * @return ITimeRangeFactory instance
+     */
+    @SuppressWarnings("java:S107")
+    static <M,S,R> @NonNull ITimeRangeFactory<M,R> concurrent(
+            @NonNull  Duration duration,
+            @NonNull  Duration interval,
+            @Nullable Duration completeTimeout,
+            @NonNull  Transformer<M,S> preserver,
+            @NonNull  TemporalExtractor<S,? extends TemporalAccessor> expectation,
+            @NonNull  Transformer<S,R> reducer,
+            @Nullable Comparator<? super S> comparator
+    ) {
+        return time -> new ConcurrentTimeRange<>(
+                time,
+                duration,
+                interval,
+                completeTimeout,
+                preserver,
+                expectation,
+                reducer,
+                comparator
+        );
+    }
+
+    /**
+     * Creating a ITimeRangeFactory of the thread-safe TimeRange with the same type of registered and returned items
+     *
+     * @param duration Duration of the region period (if negative, then to the left of instant, otherwise - to the right)
+     * @param interval The intervals at which duration beats (if &gt; duration or &lt;= ZERO, then it is taken equal to duration.abs())
+     * @param completeTimeout At a specified interval after the end of the described range, if there are no processed objects, the actor stops
+     * @param expectation Getting timestamp from internal element
+     * @param comparator Redefining a comparator to order Expected objects not only in temporal ascending order, but also in internal content
+     * @param <M> input element type
+     * @return ITimeRangeFactory instance
+     */
+    static <M> @NonNull ITimeRangeFactory<M,M> concurrent(
+            @NonNull  Duration duration,
+            @NonNull  Duration interval,
+            @Nullable Duration completeTimeout,
+            @NonNull  TemporalExtractor<M,? extends TemporalAccessor> expectation,
+            @Nullable Comparator<? super M> comparator
+    ) {
+        return concurrent(duration, interval, completeTimeout, Transformer.identity(), expectation, Transformer.identity(), comparator);
+    }
+
+    /**
+     * Creating a ITimeRangeFactory of the TimeRange with the uniqueness of the elements provided by the hash index
+     * of the interval. Elements are duplicates if they have the same time marker and equal keys, duplicate detection
+     * takes O(1) and elements with the colliding hashCode are not lost. Elements are not ordered inside the interval.
+     *
+     * @param duration Duration of the region period (if negative, then to the left of instant, otherwise - to the right)
+     * @param interval The intervals at which duration beats (if &gt; duration or &lt;= ZERO, then it is taken equal to duration.abs())
+     * @param completeTimeout At a specified interval after the end of the described range, if there are no processed objects, the actor stops
+     * @param preserver Constructor for the internal storage object from the incoming element
+     * @param expectation Getting timestamp from internal element
+     * @param reducer Method for converting an internal element into a result element
+     * @param key Getting the key of the uniqueness from internal element with equals/hashCode (if null, then the internal element itself)
+     * @param <M> input element type
+     * @param <S> internal element type
+     * @param <R> the type of the returned element
+     * @return ITimeRangeFactory instance
+     */
+    @SuppressWarnings("java:S107")
+    static <M,S,R> @NonNull ITimeRangeFactory<M,R> hashed(
+            @NonNull  Duration duration,
+            @NonNull  Duration interval,
+            @Nullable Duration completeTimeout,
+            @NonNull  Transformer<M,S> preserver,
+            @NonNull  TemporalExtractor<S,? extends TemporalAccessor> expectation,
+            @NonNull  Transformer<S,R> reducer,
+            @Nullable Function<? super S, ?> key
+    ) {
+        return time -> new HashedTimeRange<>(
+                time,
+                duration,
+                interval,
+                completeTimeout,
+                preserver,
+                expectation,
+                reducer,
+                key
+        );
+    }
+
+    /**
+     * Creating a ITimeRangeFactory of the TimeRange with the uniqueness of the elements provided by the hash index
+     * with the same type of registered and returned items
+     *
+     * @param duration Duration of the region period (if negative, then to the left of instant, otherwise - to the right)
+     * @param interval The intervals at which duration beats (if &gt; duration or &lt;= ZERO, then it is taken equal to duration.abs())
+     * @param completeTimeout At a specified interval after the end of the described range, if there are no processed objects, the actor stops
+     * @param expectation Getting timestamp from internal element
+     * @param key Getting the key of the uniqueness from element with equals/hashCode (if null, then the element itself)
+     * @param <M> input element type
+     * @return ITimeRangeFactory instance
+     */
+    static <M> @NonNull ITimeRangeFactory<M,M> hashed(
+            @NonNull  Duration duration,
+            @NonNull  Duration interval,
+            @Nullable Duration completeTimeout,
+            @NonNull  TemporalExtractor<M,? extends TemporalAccessor> expectation,
+            @Nullable Function<? super M, ?> key
+    ) {
+        return hashed(duration, interval, completeTimeout, Transformer.identity(), expectation, Transformer.identity(), key);
+    }
+
+    /**
+     * Creating a ITimeRangeFactory of the TimeRange with the write-ahead journal. Additions, removals, extractions and
+     * cleanings of the elements are recorded to the memory-mapped journal file of the range in the directory, and the
+     * pending elements are restored from it when the TimeRange for the same range is created again. The journal is
+     * forced after each operation, compacted to the pending elements when its segment is full or has grown by the half
+     * of the segment since the last compaction, and deleted when the range is complete.
+     *
+     * @param factory the factory of the journaled TimeRange
+     * @param directory the directory of the journal files
+     * @param segmentSize the minimal size of the journal segment in bytes
+     * @param serializer conversion of the element to the binary form and back
+     * @param expectation Getting timestamp from incoming element
+     * @param <M> input element type
+     * @param <R> the type of the returned element
+     * @return ITimeRangeFactory instance
+     */
+    static <M,R> @NonNull ITimeRangeFactory<M,R> journaled(
+            @NonNull  ITimeRangeFactory<M,R> factory,
+            @NonNull  Path directory,
+                      int segmentSize,
+            @NonNull  IElementSerializer<M> serializer,
+            @NonNull  TemporalExtractor<M,? extends TemporalAccessor> expectation
+    ) {
+        Objects.requireNonNull(factory, "ITimeRangeFactory::journaled - factory is null");
+        Objects.requireNonNull(directory, "ITimeRangeFactory::journaled - directory is null");
+        return time -> {
+            ITimeRange<M,R> timeRange = factory.timeRange(time);
+            return new JournaledTimeRange<>(
+                    timeRange,
+                    directory.resolve(JournaledTimeRange.fileName(timeRange)),
+                    segmentSize,
+                    serializer,
+                    expectation
+            );
+        };
+    }
+
+    /**
+     * Creating a ITimeRangeFactory of the TimeRange with the write-ahead journal with the segment of 16 MiB
+     *
+     * @param factory the factory of the journaled TimeRange
+     * @param directory the directory of the journal files
+     * @param serializer conversion of the element to the binary form and back
+     * @param expectation Getting timestamp from incoming element
+     * @param <M> input element type
+     * @param <R> the type of the returned element
+     * @return ITimeRangeFactory instance
+     */
+    static <M,R> @NonNull ITimeRangeFactory<M,R> journaled(
+            @NonNull  ITimeRangeFactory<M,R> factory,
+            @NonNull  Path directory,
+            @NonNull  IElementSerializer<M> serializer,
+            @NonNull  TemporalExtractor<M,? extends TemporalAccessor> expectation
+    ) {
+        return journaled(factory, directory, JournaledTimeRange.DEFAULT_SEGMENT_SIZE, serializer, expectation);
+    }
+
+    /**
+     * Creating a ITimeRangeFactory of the ranges reporting to the listener of the metrics. The metrics are ignored by the
+     * ranges without their support
+     *
+     * @param factory the factory of the metered TimeRange
+     * @param metrics listener of the metrics
+     * @param <M> input element type
+     * @param <R> the type of the returned element
+     * @return ITimeRangeFactory instance
+     */
+    static <M,R> @NonNull ITimeRangeFactory<M,R> metered(
+            @NonNull  ITimeRangeFactory<M,R> factory,
+            @NonNull  IAlarmMetrics metrics
+    ) {
+        Objects.requireNonNull(factory, "ITimeRangeFactory::metered - factory is null");
+        Objects.requireNonNull(metrics, "ITimeRangeFactory::metered - metrics is null");
+        return time -> {
+            ITimeRange<M,R> timeRange = factory.timeRange(time);
+            timeRange.setMetrics(metrics);
+            return timeRange;
+        };
+    }
+
+    /**
+     * Creating a ITimeRangeFactory of the ranges with the source of the current moment. The time source is ignored by
+     * the ranges without its support
+     *
+     * @param factory the factory of the TimeRange
+     * @param timeSource source of the current moment
+     * @param <M> input element type
+     * @param <R> the type of the returned element
+     * @return ITimeRangeFactory instance
+     */
+    static <M,R> @NonNull ITimeRangeFactory<M,R> timed(
+            @NonNull  ITimeRangeFactory<M,R> factory,
+            @NonNull  ITimeSource timeSource
+    ) {
+        Objects.requireNonNull(factory, "ITimeRangeFactory::timed - factory is null");
+        Objects.requireNonNull(timeSource, "ITimeRangeFactory::timed - timeSource is null");
+        return time -> {
+            ITimeRange<M,R> timeRange = factory.timeRange(time);
+            timeRange.setTimeSource(timeSource);
+            return timeRange;
+        };
+    }
+
 }
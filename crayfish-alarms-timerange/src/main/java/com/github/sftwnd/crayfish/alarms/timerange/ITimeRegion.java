@@ -0,0 +1,111 @@
+/*
+ * Copyright © 2017-2023 Andrey D. Shindarev. All rights reserved.
+ * This program is made available under the terms of the BSD 3-Clause License.
+ * Contacts: ashindarev@gmail.com
+ */
+package com.github.sftwnd.crayfish.alarms.timerange;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * The borders of the time region and the timeouts to the nearest event in it
+ */
+public interface ITimeRegion {
+
+    /**
+     * Point in time that is the start of the time range
+     * @return start of time range
+     */
+    @NonNull Instant getStartInstant();
+
+    /**
+     * Point in time that is the end of a time range
+     * @return after of time range
+     */
+    @NonNull Instant getLastInstant();
+
+    /**
+     * The time interval taking into account completeTimeout has been exhausted by the current moment
+     * @return true if exhausted or false otherwise
+     */
+    default boolean isExpired() {
+        return isExpired(getTimeSource().instant());
+    }
+
+    /**
+     * The time interval, taking into account completeTimeout, has been exhausted by the transmitted moment
+     * @param instant point in time at which the check is made
+     * @return true if exhausted or false otherwise
+     */
+    boolean isExpired(@Nullable Instant instant);
+
+    /**
+     * It is checked that the structure does not contain elements and the interval, taking into account completeTimeout,
+     * has been exhausted at the current time
+     * @return true if completed or false otherwise
+     */
+    default boolean isComplete() {
+        return isComplete(getTimeSource().instant());
+    }
+
+    /**
+     * It is checked that the structure does not contain elements and the interval, taking into account completeTimeout,
+     * has been exhausted for the passed time point
+     * @param instant point in time at which the check is made
+     * @return true if completed or false otherwise
+     */
+    boolean isComplete(@Nullable Instant instant);
+
+    /**
+     * Timeout until the nearest available Expected, but not less than delay, and if not, until the next time limit -
+     * either startInstant or lastInstant + completeDuration
+     * @return timeout to the nearest event, taking into account the delay from the current moment
+     */
+    default @NonNull Duration duration() {
+        return duration( Duration.ZERO );
+    }
+
+    /**
+     * Timeout until the nearest available Expected, but not less than delay from now, and if not, until the next
+     * time limit - either startInstant or lastInstant + completeDuration
+     * @param delay point in time with delay from now for which we calculate the value
+     * @return timeout to the nearest event, taking into account the delay from the current moment
+     */
+    default @NonNull Duration duration(Duration delay) {
+        return duration( getTimeSource().instant().plus(delay) );
+    }
+
+    /**
+     * Timeout until the nearest available Expected, but not less than delay, and if not, until the next time limit -
+     * either startInstant or lastInstant + completeDuration
+     * @param now point in time for which we calculate the value
+     * @return timeout to the nearest event, taking into account delay
+     */
+    @NonNull Duration duration(@NonNull Instant now);
+
+    /**
+     * Remove all alarms from the TimeRange
+     */
+    void clean();
+
+    /**
+     * Source of the current moment used when the moment is not passed
+     * @return time source
+     */
+    default @NonNull ITimeSource getTimeSource() {
+        return ITimeSource.system();
+    }
+
+    /**
+     * Set the source of the current moment used when the moment is not passed. The time source is ignored by the
+     * implementations without its support
+     * @param timeSource time source (ITimeSource.system() in the case of null)
+     */
+    default void setTimeSource(@Nullable ITimeSource timeSource) {
+    }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright © 2017-2023 Andrey D. Shindarev. All rights reserved.
+ * This program is made available under the terms of the BSD 3-Clause License.
+ * Contacts: ashindarev@gmail.com
+ */
+package com.github.sftwnd.crayfish.alarms.timerange;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import java.time.Instant;
+
+/**
+ * Source of the current moment for the ranges and the alarm services. The moment is described by the nanos from the
+ * epoch, so the hot path does not allocate Instant
+ */
+@FunctionalInterface
+public interface ITimeSource {
+
+    /**
+     * Current moment
+     * @return nanos from the epoch
+     */
+    long nanos();
+
+    /**
+     * Current moment
+     * @return current instant
+     */
+    default @NonNull Instant instant() {
+        return instant(nanos());
+    }
+
+    /**
+     * Default time source: System.nanoTime() anchored to the epoch once, on the start. The moments are monotonic, so
+     * the timeouts are not affected by the steps of the wall clock
+     * @return default time source
+     */
+    static @NonNull ITimeSource system() {
+        return MonotonicTimeSource.SYSTEM;
+    }
+
+    /**
+     * Instant of the moment described by the nanos from the epoch
+     * @param epochNanos nanos from the epoch
+     * @return instant
+     */
+    static @NonNull Instant instant(long epochNanos) {
+        return Instant.ofEpochSecond(Math.floorDiv(epochNanos, MonotonicTimeSource.NANOS_PER_SECOND), Math.floorMod(epochNanos, MonotonicTimeSource.NANOS_PER_SECOND));
+    }
+
+    /**
+     * Nanos from the epoch of the instant, limited by the range of long (from 1677 to 2262 year)
+     * @param instant the instant
+     * @return nanos from the epoch
+     */
+    static long nanos(@NonNull Instant instant) {
+        if (instant.getEpochSecond() >= Long.MAX_VALUE / MonotonicTimeSource.NANOS_PER_SECOND) {
+            return Long.MAX_VALUE;
+        } else if (instant.getEpochSecond() < Long.MIN_VALUE / MonotonicTimeSource.NANOS_PER_SECOND) {
+            return Long.MIN_VALUE;
+        }
+        return instant.getEpochSecond() * MonotonicTimeSource.NANOS_PER_SECOND + instant.getNano();
+    }
+
+}
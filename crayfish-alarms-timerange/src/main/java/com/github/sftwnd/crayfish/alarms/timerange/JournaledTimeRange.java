@@ -0,0 +1,271 @@
+/*
+ * Copyright © 2017-2023 Andrey D. Shindarev. All rights reserved.
+ * This program is made available under the terms of the BSD 3-Clause License.
+ * Contacts: ashindarev@gmail.com
+ */
+package com.github.sftwnd.crayfish.alarms.timerange;
+
+import com.github.sftwnd.crayfish.common.expectation.TemporalExtractor;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.TemporalAccessor;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static java.util.Optional.ofNullable;
+
+/**
+ * The TimeRange with the write-ahead journal in the memory-mapped segment file. The additions, removals, extractions
+ * and cleanings of the elements are recorded to the journal, and the pending elements of the range are restored
+ * from it on the creation of the TimeRange for the same range.
+ * The elements are delivered at least once: the extraction is recorded after the consumer has processed all fired elements.
+ * @param <M> Element type when added
+ * @param <R> Element type when retrieving
+ */
+class JournaledTimeRange<M,R> implements ITimeRange<M,R> {
+
+    // The default size of the journal segment: 16 MiB
+    static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+    private static final byte[] NO_ELEMENT = new byte[0];
+
+    private final ITimeRange<M,R> timeRange;
+    private final TimeRangeJournal journal;
+    private final IElementSerializer<M> serializer;
+    private final TemporalExtractor<M,? extends TemporalAccessor> expectation;
+    // The extraction stopped by the limit is not recorded yet
+    private boolean limited;
+
+    /**
+     * The TimeRange with the journal in the file
+     * @param timeRange the TimeRange to be journaled
+     * @param path journal file
+     * @param segmentSize the minimal size of the journal segment in bytes
+     * @param serializer conversion of the element to the binary form and back
+     * @param expectation Getting timestamp from incoming element
+     */
+    JournaledTimeRange(
+            @NonNull ITimeRange<M,R> timeRange,
+            @NonNull Path path,
+            int segmentSize,
+            @NonNull IElementSerializer<M> serializer,
+            @NonNull TemporalExtractor<M,? extends TemporalAccessor> expectation
+    ) {
+        this.timeRange = Objects.requireNonNull(timeRange, "JournaledTimeRange::new - timeRange is null");
+        this.serializer = Objects.requireNonNull(serializer, "JournaledTimeRange::new - serializer is null");
+        this.expectation = Objects.requireNonNull(expectation, "JournaledTimeRange::new - expectation is null");
+        this.journal = new TimeRangeJournal(path, timeRange.getStartInstant(), timeRange.getLastInstant(), segmentSize);
+        this.journal.replay(this::replay);
+    }
+
+    /**
+     * The name of the journal file of the range
+     * @param timeRange the TimeRange
+     * @return name of the journal file
+     */
+    static @NonNull String fileName(@NonNull ITimeRegion timeRange) {
+        return "timerange-" + timeRange.getStartInstant().toEpochMilli() + "-" + timeRange.getLastInstant().toEpochMilli() + ".journal";
+    }
+
+    private void replay(byte type, @NonNull Instant instant, @NonNull byte[] element) {
+        switch (type) {
+            case TimeRangeJournal.ADD:
+                this.timeRange.addElement(this.serializer.deserialize(element));
+                break;
+            case TimeRangeJournal.REMOVE:
+                this.timeRange.removeElement(this.serializer.deserialize(element));
+                break;
+            case TimeRangeJournal.EXTRACT:
+                this.timeRange.extractFiredElements(instant, ignore -> {});
+                break;
+            default:
+                this.timeRange.clean();
+        }
+    }
+
+    /**
+     * Add the specified set of elements to the range map
+     * The elements within the range are recorded to the journal before they are added
+     * @param elements collection of added elements
+     * @return list of ignored elements
+     */
+    @Override
+    public @NonNull Collection<M> addElements(@NonNull Collection<M> elements) {
+        Objects.requireNonNull(elements, "JournaledTimeRange::addElements - elements is null");
+        for (M element : elements) {
+            if (element != null) {
+                Instant instant = instant(element);
+                if (inRange(instant)) {
+                    this.journal.append(TimeRangeJournal.ADD, instant, this.serializer.serialize(element));
+                }
+            }
+        }
+        this.journal.force();
+        return this.timeRange.addElements(elements);
+    }
+
+    /**
+     * Remove the specified set of pending elements from the range map
+     * The elements are recorded to the journal before they are removed
+     * @param elements collection of removed elements
+     * @return list of elements that were not found
+     */
+    @Override
+    public @NonNull Collection<M> removeElements(@NonNull Collection<M> elements) {
+        Objects.requireNonNull(elements, "JournaledTimeRange::removeElements - elements is null");
+        for (M element : elements) {
+            if (element != null) {
+                this.journal.append(TimeRangeJournal.REMOVE, instant(element), this.serializer.serialize(element));
+            }
+        }
+        this.journal.force();
+        return this.timeRange.removeElements(elements);
+    }
+
+    /**
+     * Replace the pending element with the rescheduled one in one step
+     * The reschedule is recorded to the journal as the removal and the addition before it is made. The refused
+     * reschedule is compensated with the record that revokes the addition: the removal is harmless, because the
+     * reschedule inside the range is refused only if the element is not pending
+     * @param element pending element
+     * @param rescheduled element with the new time marker
+     * @return true if the element is rescheduled or false otherwise
+     */
+    @Override
+    public boolean reschedule(@NonNull M element, @NonNull M rescheduled) {
+        Objects.requireNonNull(element, "JournaledTimeRange::reschedule - element is null");
+        Objects.requireNonNull(rescheduled, "JournaledTimeRange::reschedule - rescheduled is null");
+        Instant instant = instant(element);
+        Instant rescheduledInstant = instant(rescheduled);
+        if (!inRange(instant) || !inRange(rescheduledInstant)) {
+            return this.timeRange.reschedule(element, rescheduled);
+        }
+        this.journal.append(TimeRangeJournal.REMOVE, instant, this.serializer.serialize(element));
+        this.journal.append(TimeRangeJournal.ADD, rescheduledInstant, this.serializer.serialize(rescheduled));
+        this.journal.force();
+        if (this.timeRange.reschedule(element, rescheduled)) {
+            return true;
+        }
+        this.journal.append(TimeRangeJournal.REVOKE, rescheduledInstant, NO_ELEMENT);
+        this.journal.force();
+        return false;
+    }
+
+    /**
+     * Extracting from the saved elements those that, according to the time marker, are considered
+     * to have worked at the time passed by the parameter
+     * The extraction is recorded to the journal after all fired elements are processed by the consumer. The extraction
+     * stopped by the limit is not recorded: the extracted elements are covered by the record of the next extraction
+     * below the limit, even the empty one, and are delivered again if the range is restored before it.
+     * The journal of the complete range is deleted
+     * @param instant point in time at which the check is made
+     * @param limit maximal number of the extracted elements
+     * @param consumer handler of the triggered element
+     * @return number of triggered elements
+     */
+    @Override
+    public int extractFiredElements(@Nullable Instant instant, int limit, @NonNull Consumer<? super R> consumer) {
+        Instant now = ofNullable(instant).orElseGet(getTimeSource()::instant);
+        int fired = this.timeRange.extractFiredElements(now, limit, consumer);
+        if (this.timeRange.isComplete(now)) {
+            this.journal.delete();
+            this.limited = false;
+        } else if (fired >= limit) {
+            this.limited = true;
+        } else if (fired > 0 || this.limited) {
+            this.journal.append(TimeRangeJournal.EXTRACT, now, NO_ELEMENT);
+            this.journal.force();
+            this.journal.compactIfGrown();
+            this.limited = false;
+        }
+        return fired;
+    }
+
+    /**
+     * Remove all alarms from the TimeRange
+     */
+    @Override
+    public void clean() {
+        this.journal.append(TimeRangeJournal.CLEAN, getStartInstant(), NO_ELEMENT);
+        this.journal.force();
+        this.timeRange.clean();
+    }
+
+    @Override
+    public void snapshot(@NonNull WritableByteChannel channel, @NonNull Function<? super R, byte[]> serializer) {
+        this.timeRange.snapshot(channel, serializer);
+    }
+
+    /**
+     * Load the elements from the snapshot of the same range to the wrapped range
+     * The restored elements are recorded to the journal as the additions
+     * @param channel source of the snapshot
+     * @param deserializer restoring of the incoming element from the binary form written by snapshot
+     */
+    @Override
+    public void restore(@NonNull ReadableByteChannel channel, @NonNull Function<byte[], ? extends M> deserializer) {
+        Objects.requireNonNull(deserializer, "JournaledTimeRange::restore - deserializer is null");
+        this.timeRange.restore(channel, bytes -> {
+            M element = deserializer.apply(bytes);
+            this.journal.append(TimeRangeJournal.ADD, instant(element), this.serializer.serialize(element));
+            return element;
+        });
+        this.journal.force();
+    }
+
+    @Override
+    public @NonNull ITimeSource getTimeSource() {
+        return this.timeRange.getTimeSource();
+    }
+
+    @Override
+    public void setTimeSource(@Nullable ITimeSource timeSource) {
+        this.timeRange.setTimeSource(timeSource);
+    }
+
+    @Override
+    public void setMetrics(@Nullable IAlarmMetrics metrics) {
+        this.timeRange.setMetrics(metrics);
+    }
+
+    @Override
+    public @NonNull Instant getStartInstant() {
+        return this.timeRange.getStartInstant();
+    }
+
+    @Override
+    public @NonNull Instant getLastInstant() {
+        return this.timeRange.getLastInstant();
+    }
+
+    @Override
+    public boolean isExpired(@Nullable Instant instant) {
+        return this.timeRange.isExpired(instant);
+    }
+
+    @Override
+    public boolean isComplete(@Nullable Instant instant) {
+        return this.timeRange.isComplete(instant);
+    }
+
+    @Override
+    public @NonNull Duration duration(@NonNull Instant now) {
+        return this.timeRange.duration(now);
+    }
+
+    private boolean inRange(@NonNull Instant instant) {
+        return !instant.isBefore(getStartInstant()) && instant.isBefore(getLastInstant());
+    }
+
+    private @NonNull Instant instant(@NonNull M element) {
+        return Instant.from(this.expectation.apply(element));
+    }
+
+}
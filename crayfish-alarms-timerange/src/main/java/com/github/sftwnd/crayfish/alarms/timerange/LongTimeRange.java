@@ -0,0 +1,301 @@
+/*
+ * Copyright © 2017-2023 Andrey D. Shindarev. All rights reserved.
+ * This program is made available under the terms of the BSD 3-Clause License.
+ * Contacts: ashindarev@gmail.com
+ */
+package com.github.sftwnd.crayfish.alarms.timerange;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.TemporalAccessor;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.LongConsumer;
+
+import static java.util.Optional.ofNullable;
+
+/**
+ * A time range with a set of alarms described by the long identifier and the epoch millis of the alarm moment.
+ * Alarms are kept in primitive arrays per interval as pairs of the identifier and the offset of the alarm moment,
+ * so the pending alarm takes 16 bytes. Alarms are not ordered inside the interval and duplicates are not filtered out.
+ */
+class LongTimeRange extends AbstractTimeRange implements ILongTimeRange {
+
+    // The bucket starts with the header: number of alarms and the minimal offset of the alarm in the bucket
+    private static final int SIZE = 0;
+    private static final int MINIMUM = 1;
+    private static final int HEADER = 2;
+    private static final int INITIAL_CAPACITY = 8;
+
+    // The first and the next after the last millis of the range
+    private final long startMillis;
+    private final long lastMillis;
+    // Buckets of the intervals: header and pairs of identifier and offset of the alarm
+    private final BucketArray<long[]> buckets;
+    // Index of the first bucket that may contain alarms (buckets.length() if there are no alarms)
+    private long firstBucket;
+    // The offset of the nearest alarm. In case of absence - NONE
+    private long nearest = NONE;
+
+    /**
+     * An object containing alarms for the range to search for triggered
+     *
+     * @param time The moment limiting the region processing period (if duration is positive, then on the left, otherwise - on the right)
+     * @param duration Duration of the period of the region (if negative, then to the left of instant, otherwise - to the right).
+     * @param interval The intervals at which duration beats (if &gt; duration or &lt;= ZERO, then it is taken equal to duration.abs())
+     * @param completeTimeout At a specified interval after the end of the described range, if there are no processed objects, the actor stops
+     */
+    LongTimeRange(
+            @NonNull  TemporalAccessor time,
+            @NonNull  Duration duration,
+            @NonNull  Duration interval,
+            @Nullable Duration completeTimeout
+    ) {
+        super(time, duration, interval, completeTimeout);
+        this.buckets = new BucketArray<>(intervals());
+        this.firstBucket = this.buckets.length();
+        this.startMillis = ceilMillis(getStartInstant());
+        this.lastMillis = ceilMillis(getLastInstant());
+    }
+
+    /**
+     * Add the alarm to the range
+     * Out-of-range alarm is ignored
+     * @param id identifier of the alarm
+     * @param epochMillis moment of the alarm in millis from the epoch
+     * @return true if the alarm is added or false if it is out of range
+     */
+    @Override
+    public boolean addElement(long id, long epochMillis) {
+        if (epochMillis < this.startMillis || epochMillis >= this.lastMillis) {
+            return false;
+        }
+        store(id, millisOffset(epochMillis));
+        return true;
+    }
+
+    private void store(long id, long offset) {
+        long index = tick(offset);
+        long[] bucket = this.buckets.get(index);
+        if (bucket == null) {
+            bucket = new long[HEADER + 2 * INITIAL_CAPACITY];
+            bucket[MINIMUM] = NONE;
+            this.buckets.set(index, bucket);
+            this.firstBucket = Math.min(this.firstBucket, index);
+        }
+        int size = (int) bucket[SIZE];
+        int position = HEADER + 2 * size;
+        if (position == bucket.length) {
+            bucket = Arrays.copyOf(bucket, HEADER + 4 * size);
+            this.buckets.set(index, bucket);
+        }
+        bucket[position] = id;
+        bucket[position + 1] = offset;
+        bucket[SIZE] = size + 1L;
+        bucket[MINIMUM] = Math.min(bucket[MINIMUM], offset);
+        this.nearest = Math.min(this.nearest, offset);
+    }
+
+    /**
+     * Remove one pending alarm with the same identifier and moment from the range
+     * The alarm is looked for in the bucket of its interval only
+     * @param id identifier of the alarm
+     * @param epochMillis moment of the alarm in millis from the epoch
+     * @return true if the alarm is removed or false if it is not found
+     */
+    @Override
+    public boolean removeElement(long id, long epochMillis) {
+        if (epochMillis < this.startMillis || epochMillis >= this.lastMillis) {
+            return false;
+        }
+        long offset = millisOffset(epochMillis);
+        long index = tick(offset);
+        long[] bucket = this.buckets.get(index);
+        if (bucket != null) {
+            int size = (int) bucket[SIZE];
+            for (int position = HEADER; position < HEADER + 2 * size; position += 2) {
+                if (bucket[position] == id && bucket[position + 1] == offset) {
+                    // The last alarm of the bucket takes the place of the removed one
+                    int last = HEADER + 2 * (size - 1);
+                    bucket[position] = bucket[last];
+                    bucket[position + 1] = bucket[last + 1];
+                    bucket[SIZE] = size - 1L;
+                    if (size == 1) {
+                        this.buckets.set(index, null);
+                    } else if (bucket[MINIMUM] == offset) {
+                        bucket[MINIMUM] = minimum(bucket);
+                    }
+                    if (this.nearest == offset) {
+                        this.nearest = findNearest();
+                    }
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Move the pending alarm to the new moment in one step
+     * Nothing is changed if the pending alarm is not found or the new moment is out of range
+     * @param id identifier of the alarm
+     * @param epochMillis moment of the pending alarm in millis from the epoch
+     * @param rescheduledMillis new moment of the alarm in millis from the epoch
+     * @return true if the alarm is rescheduled or false otherwise
+     */
+    @Override
+    public boolean reschedule(long id, long epochMillis, long rescheduledMillis) {
+        return rescheduledMillis >= this.startMillis && rescheduledMillis < this.lastMillis
+            && removeElement(id, epochMillis) && addElement(id, rescheduledMillis);
+    }
+
+    private static long minimum(@NonNull long[] bucket) {
+        long minimum = NONE;
+        for (int position = HEADER; position < HEADER + 2 * bucket[SIZE]; position += 2) {
+            minimum = Math.min(minimum, bucket[position + 1]);
+        }
+        return minimum;
+    }
+
+    /**
+     * Extracting the identifiers of the alarms that, according to the time marker, are considered to have worked
+     * at the time passed by the parameter
+     * @param instant point in time at which the check is made
+     * @param consumer handler of the identifier of the triggered alarm
+     * @return number of triggered alarms
+     */
+    @Override
+    public int extractFiredElements(@Nullable Instant instant, @NonNull LongConsumer consumer) {
+        Objects.requireNonNull(consumer, "LongTimeRange::extractFiredElements - consumer is null");
+        Instant now = ofNullable(instant).orElseGet(getTimeSource()::instant);
+        int fired = 0;
+        if (this.buckets.size() > 0 && !now.isBefore(getStartInstant())) {
+            try {
+                long nowOffset = limitedOffset(now);
+                // The bucket corresponding to the current moment. All buckets before it are fired completely
+                long nowBucket = now.isBefore(getLastInstant()) ? tick(nowOffset) : this.buckets.length();
+                long lastBucket = Math.min(nowBucket, this.buckets.length() - 1);
+                for (long index = this.buckets.next(this.firstBucket); index <= lastBucket; index = this.buckets.next(index + 1)) {
+                    long[] bucket = this.buckets.get(index);
+                    fired += fire(bucket, index < nowBucket ? NONE : nowOffset, consumer);
+                    if (bucket[SIZE] == 0) {
+                        this.buckets.set(index, null);
+                    }
+                }
+            } finally {
+                this.nearest = findNearest();
+            }
+        }
+        return fired;
+    }
+
+    // Fire the alarms of the bucket with the offset not after the limit and compact the rest of them
+    private static int fire(@NonNull long[] bucket, long limit, @NonNull LongConsumer consumer) {
+        int size = (int) bucket[SIZE];
+        int fired = 0;
+        int kept = 0;
+        int next = 0;
+        long minimum = NONE;
+        try {
+            while (next < size) {
+                int position = HEADER + 2 * next++;
+                long offset = bucket[position + 1];
+                if (offset <= limit) {
+                    fired++;
+                    consumer.accept(bucket[position]);
+                } else {
+                    int target = HEADER + 2 * kept++;
+                    bucket[target] = bucket[position];
+                    bucket[target + 1] = offset;
+                    minimum = Math.min(minimum, offset);
+                }
+            }
+        } finally {
+            // If the consumer fails, the alarms that have not been processed stay in the bucket
+            for (; next < size; next++, kept++) {
+                int position = HEADER + 2 * next;
+                int target = HEADER + 2 * kept;
+                bucket[target] = bucket[position];
+                bucket[target + 1] = bucket[position + 1];
+                minimum = Math.min(minimum, bucket[target + 1]);
+            }
+            bucket[SIZE] = kept;
+            bucket[MINIMUM] = minimum;
+        }
+        return fired;
+    }
+
+    private long findNearest() {
+        this.firstBucket = this.buckets.next(this.firstBucket);
+        // The bucket may stay empty if the consumer has failed
+        while (this.firstBucket < this.buckets.length() && this.buckets.get(this.firstBucket)[SIZE] == 0) {
+            this.buckets.set(this.firstBucket, null);
+            this.firstBucket = this.buckets.next(this.firstBucket + 1);
+        }
+        return this.firstBucket < this.buckets.length() ? this.buckets.get(this.firstBucket)[MINIMUM] : NONE;
+    }
+
+    /**
+     * Write the point-in-time snapshot of the pending alarms in the order of the buckets
+     * @param channel target of the snapshot
+     */
+    @Override
+    public void snapshot(@NonNull WritableByteChannel channel) {
+        TimeRangeSnapshot.Writer writer = new TimeRangeSnapshot.Writer(channel, this);
+        ByteBuffer element = ByteBuffer.allocate(Long.BYTES);
+        for (long index = this.buckets.next(this.firstBucket); index < this.buckets.length(); index = this.buckets.next(index + 1)) {
+            long[] bucket = this.buckets.get(index);
+            for (int position = HEADER; position < HEADER + 2 * bucket[SIZE]; position += 2) {
+                writer.write(bucket[position + 1], element.putLong(0, bucket[position]).array());
+            }
+        }
+        writer.finish();
+    }
+
+    /**
+     * Load the alarms from the snapshot of the same range with the time marker stored in the snapshot
+     * @param channel source of the snapshot
+     */
+    @Override
+    public void restore(@NonNull ReadableByteChannel channel) {
+        TimeRangeSnapshot.Reader reader = new TimeRangeSnapshot.Reader(channel, this);
+        while (reader.next()) {
+            if (reader.element().length != Long.BYTES) {
+                throw new IllegalStateException("LongTimeRange::restore - wrong length of the element: " + reader.element().length);
+            }
+            store(ByteBuffer.wrap(reader.element()).getLong(), restoredOffset(reader.offset()));
+        }
+    }
+
+    /**
+     * Remove all alarms from the TimeRange
+     */
+    @Override
+    public void clean() {
+        this.buckets.clear();
+        this.firstBucket = this.buckets.length();
+        this.nearest = NONE;
+    }
+
+    @Override
+    protected boolean isEmpty() {
+        return this.buckets.size() == 0;
+    }
+
+    @Override
+    protected @Nullable Instant getNearestInstant() {
+        return this.nearest == NONE ? null : instant(this.nearest);
+    }
+
+    // The first millis that is not before the instant
+    private static long ceilMillis(@NonNull Instant instant) {
+        return instant.toEpochMilli() + (instant.getNano() % 1_000_000 == 0 ? 0 : 1);
+    }
+
+}
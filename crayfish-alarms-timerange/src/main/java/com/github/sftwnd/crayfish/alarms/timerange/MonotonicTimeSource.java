@@ -0,0 +1,32 @@
+/*
+ * Copyright © 2017-2023 Andrey D. Shindarev. All rights reserved.
+ * This program is made available under the terms of the BSD 3-Clause License.
+ * Contacts: ashindarev@gmail.com
+ */
+package com.github.sftwnd.crayfish.alarms.timerange;
+
+import java.time.Instant;
+
+/**
+ * The time source based on System.nanoTime() that is anchored to the wall clock once, on the creation
+ */
+final class MonotonicTimeSource implements ITimeSource {
+
+    static final long NANOS_PER_SECOND = 1_000_000_000L;
+    static final MonotonicTimeSource SYSTEM = new MonotonicTimeSource();
+
+    // The moment of the creation in nanos from the epoch and by System.nanoTime()
+    private final long anchorNanos;
+    private final long originNanos;
+
+    private MonotonicTimeSource() {
+        this.originNanos = System.nanoTime();
+        this.anchorNanos = ITimeSource.nanos(Instant.now());
+    }
+
+    @Override
+    public long nanos() {
+        return this.anchorNanos + (System.nanoTime() - this.originNanos);
+    }
+
+}
@@ -8,9 +8,9 @@ package com.github.sftwnd.crayfish.alarms.timerange;
 import com.github.sftwnd.crayfish.common.expectation.TemporalExtractor;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.Nullable;
-import lombok.AccessLevel;
-import lombok.Setter;
 
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.TemporalAccessor;
@@ -19,15 +19,10 @@ import java.util.Collection;
 import java.util.Comparator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
-import java.util.Optional;
-import java.util.Set;
-import java.util.TreeMap;
 import java.util.TreeSet;
-import java.util.function.Predicate;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 import static java.util.Optional.ofNullable;
 
@@ -38,20 +33,13 @@ import static java.util.Optional.ofNullable;
  * @param <M> Element type when added
  * @param <R> Element type when retrieving
  */
-class TimeRange<M,S,R> implements ITimeRange<M,R> {
+class TimeRange<M,S,R> extends AbstractTimeRange implements ITimeRange<M,R> {
 
     /*
         Used sonar warnings:
             java:S107 Methods should not have too many params
             java:S3358 Ternary operators should not be nested
-            java:S3864 "Stream.peek" should be used with caution
      */
-    Duration duration;
-
-    /**
-     * The size of the internal chunk-a division of the interval
-     */
-    private final Duration interval;
 
     /**
      * Constructor for the internal storage object from the incoming element
@@ -67,26 +55,22 @@ class TimeRange<M,S,R> implements ITimeRange<M,R> {
      * Getting result element from internal storage
      */
     private final Transformer<S,R> reducer;
-    /**
-     * Comparison of two internal elements objects
-     */
-    private final Comparator<? super S> comparator;
-
-    // Beginning of the region validity period
-    private final Instant startInstant;
-    // Upper limit of the interval (exclude...)
-    private final Instant lastInstant;
-    // Last instant plus completion delay
-    private final Instant completeInstant;
-
-    // The moment of the nearest element. In case of absence - null
-    @Setter(value = AccessLevel.PRIVATE)
-    private Instant nearestInstant = null;
+    // The offset of the nearest element. In case of absence - NONE
+    private long nearest = NONE;
     // A set of elements distributed over ranges of size interval
-    // TreeMap storage structure that guarantees ascending traversal order
-    // The internal elements are contained in a TreeSet, which also guarantees order.
-    // Here we specify not the interface, but the implementation deliberately!!!
-    private final TreeMap<Instant, TreeSet<S>> expectedMap = new TreeMap<>();
+    // The index of the bucket is the number of the interval from the beginning of the range, so the bucket array
+    // guarantees ascending traversal order and allocates the memory only for the intervals with elements. The internal elements of the bucket are sorted into a TreeSet, which also guarantees
+    // order, only when the bucket is reached by the extraction or the removal.
+    // The time marker is extracted from the element once, on insert, and is kept next to it as the offset in nanos.
+    private final BucketArray<Bucket<S>> buckets;
+    // The order of the internal elements in the bucket
+    private final Comparator<Entry<S>> order;
+    // Index of the first bucket that may contain elements (buckets.length() if there are no elements)
+    private long firstBucket;
+    // Number of pending elements
+    private int size = 0;
+    // Listener of the metrics of the range
+    private IAlarmMetrics metrics = IAlarmMetrics.NONE;
 
     /**
      * An object containing objects marked with a time-marker for the range to search for triggered
@@ -111,44 +95,13 @@ class TimeRange<M,S,R> implements ITimeRange<M,R> {
             @NonNull  Transformer<S,R> reducer,
             @Nullable Comparator<? super S> comparator
     ) {
-        Objects.requireNonNull(time, "TimeRange::new - time is null");
-        this.duration = Objects.requireNonNull(duration, "TimeRange::new - duration is null");
-        this.interval = Objects.requireNonNull(interval, "TimeRange::new - interval is null");
+        super(time, duration, interval, completeTimeout);
         this.preserver = Objects.requireNonNull(preserver, "TimeRange::new - preserver is null");
         this.expectation = Objects.requireNonNull(expectation, "TimeRange::new - expectation is null");
         this.reducer = Objects.requireNonNull(reducer, "TimeRange::new - reducer is null");
-        this.startInstant = Optional.of(this.duration).filter(Duration::isNegative).map(Instant.from(time)::plus).orElseGet(() -> Instant.from(time));
-        this.lastInstant = Optional.of(this.duration).filter(Predicate.not(Duration::isNegative)).map(Instant.from(time)::plus).orElseGet(() -> Instant.from(time));
-        this.comparator = ofNullable(comparator).orElse(this::compareObjects);
-        this.completeInstant = this.lastInstant.plus(Optional.ofNullable(completeTimeout).filter(Predicate.not(Duration::isNegative)).orElse(Duration.ZERO));
-    }
-
-    @NonNull public Instant getStartInstant() {
-        return this.startInstant;
-    }
-
-    @NonNull public Instant getLastInstant() {
-        return this.lastInstant;
-    }
-
-    /**
-     * The time interval, taking into account completeTimeout, has been exhausted by the transmitted moment
-     * @param instant point in time at which the check is made
-     * @return true if exhausted or false otherwise
-     */
-    public boolean isExpired(@Nullable Instant instant) {
-        return !ofNullable(instant).orElseGet(Instant::now)
-                .isBefore(this.completeInstant);
-    }
-
-    /**
-     * It is checked that the structure does not contain elements and the interval, taking into account completeTimeout,
-     * has been exhausted for the passed time point
-     * @param instant point in time at which the check is made
-     * @return true if completed or false otherwise
-     */
-    public boolean isComplete(@Nullable Instant instant) {
-        return this.expectedMap.isEmpty() && isExpired(instant);
+        this.order = order(comparator);
+        this.buckets = new BucketArray<>(intervals());
+        this.firstBucket = this.buckets.length();
     }
 
     /**
@@ -160,221 +113,307 @@ class TimeRange<M,S,R> implements ITimeRange<M,R> {
      */
     public @NonNull Collection<M> addElements(@NonNull Collection<M> elements) {
         Objects.requireNonNull(elements, "TimeRange::addElement - elements is null");
+        TimeRangeEvents.Add event = new TimeRangeEvents.Add();
+        event.begin();
         List<M> excludes = new LinkedList<>();
-        //noinspection ConstantConditions
-        addElements(
-                elements.stream()
+        for (M element : elements) {
+            if (element != null) { // If element is not null
+                S storeElement = this.preserver.apply(element); // Transform element to internal store format
+                Instant instant = instant(storeElement);
                 // Checking for range
-                .map(element -> {
-                    if (element != null) { // If element is not null
-                        S storeElement = this.preserver.apply(element); // Transform element to internal store format
-                        if (checkRange(storeElement)) {
-                            return storeElement;
-                        } else {
-                            excludes.add(element);
-                        }
-                    }
-                    return null;
-                })
-                .filter(Objects::nonNull)
-        );
+                if (inRange(instant)) {
+                    store(new Entry<>(storeElement, offset(instant)));
+                } else {
+                    excludes.add(element);
+                }
+            }
+        }
+        report();
+        event.end();
+        if (event.shouldCommit()) {
+            event.elements = elements.size();
+            event.rejected = excludes.size();
+            event.commit();
+        }
         return excludes;
     }
 
-    // Add or return back elements in the internal format to the time range storage
-    private void addElements(@NonNull Stream<S> stream) {
-        // If the element is the earliest, then mark it with Instant
-        // P.S. Due to the presence of the terminal operator, peek will work for every element that has passed through it.
-        stream.peek(elm -> Optional.of(instant(elm)) //NOSONAR java:S3864 "Stream.peek" should be used with caution
-                        .filter(inst -> inst.isBefore(ofNullable(this.nearestInstant).orElse(Instant.MAX)))
-                        .ifPresent(this::setNearestInstant))
-                // Grouping by instantKey ranges
-                .collect(
-                        Collectors.groupingBy(
-                                elm -> getTemporalKey(instant(elm)),
-                                Collectors.toCollection(() -> new TreeSet<>(this::compare))
-                        )
-                ).forEach((key,value) -> ofNullable(this.expectedMap.get(key))
-                        .ifPresentOrElse(
-                                // If present, expand
-                                set -> set.addAll(value)
-                                // If missing, add
-                                , () -> this.expectedMap.put(key, value))
-                );
+    // Put the element to the bucket of its interval
+    private void store(@NonNull Entry<S> entry) {
+        // If the element is the earliest, then mark it as nearest
+        this.nearest = Math.min(this.nearest, entry.offset);
+        long index = tick(entry.offset);
+        Bucket<S> bucket = this.buckets.get(index);
+        if (bucket == null) {
+            bucket = new Bucket<>();
+            this.buckets.set(index, bucket);
+            this.firstBucket = Math.min(this.firstBucket, index);
+        }
+        // The duplicate of the sorted bucket is not counted, the duplicates of the unsorted one are merged by the sorting
+        if (bucket.add(entry)) {
+            this.size++;
+        }
     }
 
     /**
-     * Extracting from the saved elements those that, according to the time marker, are considered
-     * to have worked at the time passed by the parameter
-     * @param instant point in time at which the check is made
-     * @return List of triggered elements
+     * Remove the specified set of pending elements from the range map
+     * The element is looked for in the bucket of its interval only
+     * @param elements collection of removed elements
+     * @return list of elements that were not found
      */
-    public @NonNull Collection<R> extractFiredElements(@Nullable Instant instant) {
-        Instant now = ofNullable(instant).orElseGet(Instant::now);
-        // The key corresponding to the current moment
-        Instant nowKey = getInstantKey(now);
-        List<R> result = new ArrayList<>();
-        addCollectionOnProcess(
-                this.expectedMap
-                        .entrySet()
-                        .stream()
-                        // Since TreeMap, the order goes in ascending order of the instantKey key, and we process all records that have
-                        // instantKey < nextKey
-                        .takeWhile(entry -> !entry.getKey().isAfter(nowKey))
-                        // We collect all the keys in a set (so that you can modify the primary TreeMap
-                        .map(Map.Entry::getKey).collect(Collectors.toSet())
-                        // For all keys that may contain triggered elements
-                        .stream()
-                        // We call the processing of a set removed from the primary Map
-                        .flatMap(key -> processKey(this.expectedMap.remove(key), now, key.isBefore(nowKey), result))
-                        // We collect everything that the handlers returned in set and send it back to Map
-                        .collect(Collectors.toCollection(() -> new TreeSet<>(this.comparator))));
-        return result;
-    }
-
-    private void addCollectionOnProcess(@NonNull Collection<S> elements) {
-        // At the time of the call, rows were deleted, and it is required to recalculate the time of the nearest element (if any)
-        setNearestInstant(findNearestInstant());
-        addElements(elements.stream());
-    }
-
-    private Instant findNearestInstant() {
-        return ofNullable(this.expectedMap.firstEntry())
-                .map(Map.Entry::getValue)
-                .map(TreeSet::first)
-                .map(this::instant)
-                .orElse(null);
-    }
-
-    private Stream<S> processKey(Set<S> elements, Instant now, boolean complete, List<R> result) {
-        return complete ? processComplete(elements, result) : processIncomplete(elements, now, result);
-    }
-
-    private Stream<S> processComplete(Set<S> elements, List<R> result) {
-        elements.stream().map(this.reducer).forEach(result::add);
-        return Stream.empty();
+    @Override
+    public @NonNull Collection<M> removeElements(@NonNull Collection<M> elements) {
+        Objects.requireNonNull(elements, "TimeRange::removeElements - elements is null");
+        List<M> missed = new LinkedList<>();
+        for (M element : elements) {
+            if (element != null) {
+                S storeElement = this.preserver.apply(element);
+                Instant instant = instant(storeElement);
+                if (!inRange(instant) || !remove(new Entry<>(storeElement, offset(instant)))) {
+                    missed.add(element);
+                }
+            }
+        }
+        report();
+        return missed;
     }
 
-    private Stream<S> processIncomplete(Set<S> elements, Instant now, List<R> result) {
-        return elements
-                .stream()
-                .collect(Collectors.partitioningBy(element -> happened(element,now), Collectors.toSet()))
-                .entrySet()
-                .stream()
-                .flatMap(entry -> Optional.of(entry)
-                        .filter(Map.Entry::getKey)
-                        .map(b -> processComplete(entry.getValue(), result))
-                        .orElseGet(entry.getValue()::stream)
-                );
+    // Remove the element from the bucket of its interval
+    private boolean remove(@NonNull Entry<S> entry) {
+        long index = tick(entry.offset);
+        Bucket<S> bucket = this.buckets.get(index);
+        if (bucket == null || !sorted(bucket).remove(entry)) {
+            return false;
+        }
+        this.size--;
+        if (bucket.sorted.isEmpty()) {
+            this.buckets.set(index, null);
+        }
+        // If the nearest element is removed, then the next one becomes the nearest
+        if (entry.offset == this.nearest) {
+            this.nearest = findNearest();
+        }
+        return true;
     }
 
     /**
-     * Timeout until the nearest available Expected, but not less than delay, and if not, until the next time limit -
-     * either startInstant or lastInstant + completeDuration
-     * @param now point in time for which we calculate the value
-     * @return timeout to the nearest event, taking into account delay
+     * Replace the pending element with the rescheduled one in one step
+     * Nothing is changed if the pending element is not found or the rescheduled one is out of range
+     * @param element pending element
+     * @param rescheduled element with the new time marker
+     * @return true if the element is rescheduled or false otherwise
      */
-    public @NonNull Duration duration(@NonNull Instant now) {
-        // If the time is before the start of the range
-        if (now.isBefore(this.startInstant)) {
-            return durationToStart(now);
-        // If the start time of the range has passed and there are no elements
-        } else if (this.expectedMap.isEmpty()) {
-            return durationToStop(now);
-        // If there are elements and the time falls within the range
-        } else if (now.isBefore(this.lastInstant)) {
-            return durationToExpect(now);
-        } else {
-            return Duration.ZERO;
+    @Override
+    public boolean reschedule(@NonNull M element, @NonNull M rescheduled) {
+        Objects.requireNonNull(element, "TimeRange::reschedule - element is null");
+        Objects.requireNonNull(rescheduled, "TimeRange::reschedule - rescheduled is null");
+        S storeElement = this.preserver.apply(element);
+        Instant instant = instant(storeElement);
+        S storeRescheduled = this.preserver.apply(rescheduled);
+        Instant rescheduledInstant = instant(storeRescheduled);
+        if (inRange(instant) && inRange(rescheduledInstant) && remove(new Entry<>(storeElement, offset(instant)))) {
+            store(new Entry<>(storeRescheduled, offset(rescheduledInstant)));
+            report();
+            return true;
         }
+        return false;
     }
 
     /**
-     * Remove all alarms from the TimeRange
+     * Extracting from the saved elements those that, according to the time marker, are considered
+     * to have worked at the time passed by the parameter
+     * Fully fired buckets are removed in place, without intermediate collections
+     * @param instant point in time at which the check is made
+     * @param limit maximal number of the extracted elements
+     * @param consumer handler of the triggered element
+     * @return number of triggered elements
      */
     @Override
-    public void clean() {
-        this.expectedMap.clear();
-    }
-
-    // Time until the moment after lastInstant by completeTimeout duration. If after this point we are in COMPLETE,
-    // then the actor ends.
-    // This time is given by AKKA System to deliver the message with the processing order to us. The fact is that it is not
-    // supposed to receive tasks for processing after the moment of their occurrence. This actor only accepts messages for the future
-    private @NonNull Duration durationToStop(Instant now) {
-        return durationTo(this.completeInstant, now);
+    public int extractFiredElements(@Nullable Instant instant, int limit, @NonNull Consumer<? super R> consumer) {
+        Objects.requireNonNull(consumer, "TimeRange::extractFiredElements - consumer is null");
+        Instant now = ofNullable(instant).orElseGet(getTimeSource()::instant);
+        TimeRangeEvents.Extract event = new TimeRangeEvents.Extract();
+        event.begin();
+        int fired = 0;
+        int touched = 0;
+        long earliest = NONE;
+        long firedOffset = 0;
+        if (this.buckets.size() > 0 && !now.isBefore(getStartInstant())) {
+            try {
+                long nowOffset = limitedOffset(now);
+                // The lateness is measured from the real moment, not limited by the range
+                firedOffset = this.metrics == IAlarmMetrics.NONE && !event.isEnabled() ? nowOffset : offset(now);
+                // The bucket corresponding to the current moment. All buckets before it are fired completely
+                long nowBucket = now.isBefore(getLastInstant()) ? tick(nowOffset) : this.buckets.length();
+                long lastBucket = Math.min(nowBucket, this.buckets.length() - 1);
+                // The empty intervals between the buckets are skipped by the bucket array
+                for (long index = this.buckets.next(this.firstBucket); index <= lastBucket && fired < limit; index = this.buckets.next(index + 1)) {
+                    Bucket<S> bucket = this.buckets.get(index);
+                    if (bucket != null) {
+                        touched++;
+                        boolean complete = index < nowBucket;
+                        // Since TreeSet, the order goes in ascending order of the instant
+                        TreeSet<Entry<S>> entries = sorted(bucket);
+                        while (fired < limit && !entries.isEmpty() && (complete || entries.first().offset <= nowOffset)) {
+                            Entry<S> entry = entries.pollFirst();
+                            this.size--;
+                            earliest = Math.min(earliest, entry.offset);
+                            if (this.metrics != IAlarmMetrics.NONE) {
+                                this.metrics.fired(firedOffset - entry.offset);
+                            }
+                            consumer.accept(this.reducer.apply(entry.element));
+                            fired++;
+                        }
+                        if (entries.isEmpty()) {
+                            this.buckets.set(index, null);
+                        }
+                    }
+                }
+            } finally {
+                // At the time of the call, rows were deleted, and it is required to recalculate the time of the nearest element (if any)
+                this.nearest = findNearest();
+                report();
+            }
+        }
+        event.end();
+        if (fired > 0 && event.shouldCommit()) {
+            event.fired = fired;
+            event.buckets = touched;
+            event.lateness = firedOffset - earliest;
+            event.commit();
+        }
+        return fired;
     }
 
-    // The time from the specified moment until the first element fires, and in case of absence - until the end of the range of the current key
-    private @NonNull Duration durationToExpect(@NonNull Instant now) {
-        // If the nearest element is defined, then we wait until its moment, otherwise - until the end of the range time
-        // P.S. - maybe you have to wait until the next key... It seems that there are no grounds yet, but there was a single hang-up precedent -
-        //        previously associated with the use of BalancingPool, which is not supported by this Actor !!!.
-        //        If it repeats, you need to look in the direction of optimizing durationToExpect
-        return durationTo( // We take Delay to the nearest element, and if it is not there, then to the end of the range
-                ofNullable(this.nearestInstant).orElse(this.lastInstant), now);
+    // Sort the elements of the bucket, the equal elements are merged by the sorting
+    private @NonNull TreeSet<Entry<S>> sorted(@NonNull Bucket<S> bucket) {
+        if (bucket.sorted == null) {
+            int unsorted = bucket.unsorted.size();
+            this.size -= unsorted - bucket.sorted(this.order).size();
+        }
+        return bucket.sorted;
     }
 
-    // The time from the specified moment until the first element is triggered, and in case of absence - until the start of the range activation
-    private @NonNull Duration durationToStart(@NonNull Instant now) {
-        return durationTo(
-                ofNullable(this.nearestInstant).orElse(this.startInstant),
-                now);
+    /**
+     * Set the listener of the metrics of the range: the lateness of the fired elements and the number of the pending
+     * elements and buckets
+     * @param metrics listener of the metrics (NONE in the case of null)
+     */
+    @Override
+    public void setMetrics(@Nullable IAlarmMetrics metrics) {
+        this.metrics = ofNullable(metrics).orElse(IAlarmMetrics.NONE);
+        report();
     }
 
-    // Time until the specified moment from the moment of the now parameter
-    private static @NonNull Duration durationTo(@NonNull Instant instant, @NonNull Instant now) {
-        return instant.isAfter(now)
-                ? Duration.between(now, instant)
-                : Duration.ZERO;
+    private void report() {
+        if (this.metrics != IAlarmMetrics.NONE) {
+            this.metrics.pending(this.size, this.buckets.size());
+        }
     }
 
-    private boolean checkRange(@NonNull S element) {
-        return Optional.of(element)
-                .map(this::instant)
-                .filter(Predicate.not(this.startInstant::isAfter))
-                .filter(this.lastInstant::isAfter)
-                .isPresent();
+    private long findNearest() {
+        this.firstBucket = this.buckets.next(this.firstBucket);
+        // The bucket may stay empty if the consumer has failed
+        while (this.firstBucket < this.buckets.length() && this.buckets.get(this.firstBucket).isEmpty()) {
+            this.buckets.set(this.firstBucket, null);
+            this.firstBucket = this.buckets.next(this.firstBucket + 1);
+        }
+        return this.firstBucket < this.buckets.length() ? this.buckets.get(this.firstBucket).first() : NONE;
     }
 
     /**
-     * Rounds the given instant to the beginning of the interval
-     * @param instant The moment at which it is necessary to determine the key of the polling period
-     * @return moment describing the range of the polling period
+     * Write the point-in-time snapshot of the pending elements in the order of the buckets
+     * @param channel target of the snapshot
+     * @param serializer conversion of the resulting element to the binary form
      */
-    private Instant getInstantKey(@NonNull Instant instant) {
-        return Instant.ofEpochMilli(instant.toEpochMilli() - instant.toEpochMilli() % this.interval.toMillis());
+    @Override
+    public void snapshot(@NonNull WritableByteChannel channel, @NonNull Function<? super R, byte[]> serializer) {
+        Objects.requireNonNull(serializer, "TimeRange::snapshot - serializer is null");
+        TimeRangeSnapshot.Writer writer = new TimeRangeSnapshot.Writer(channel, this);
+        for (long index = this.buckets.next(this.firstBucket); index < this.buckets.length(); index = this.buckets.next(index + 1)) {
+            Bucket<S> bucket = this.buckets.get(index);
+            for (Entry<S> entry : bucket.sorted == null ? bucket.unsorted : bucket.sorted) {
+                writer.write(entry.offset, serializer.apply(this.reducer.apply(entry.element)));
+            }
+        }
+        writer.finish();
     }
 
-    private Instant getTemporalKey(@Nullable TemporalAccessor temporalAccessor) {
-        return getInstantKey(Instant.from(ofNullable(temporalAccessor).orElse(Instant.MIN)));
+    /**
+     * Load the elements from the snapshot of the same range. The elements are appended to the buckets with the time
+     * marker stored in the snapshot and are sorted only when the bucket is reached by the extraction or the removal
+     * @param channel source of the snapshot
+     * @param deserializer restoring of the incoming element from the binary form written by snapshot
+     */
+    @Override
+    public void restore(@NonNull ReadableByteChannel channel, @NonNull Function<byte[], ? extends M> deserializer) {
+        Objects.requireNonNull(deserializer, "TimeRange::restore - deserializer is null");
+        TimeRangeSnapshot.Reader reader = new TimeRangeSnapshot.Reader(channel, this);
+        while (reader.next()) {
+            store(new Entry<>(this.preserver.apply(deserializer.apply(reader.element())), restoredOffset(reader.offset())));
+        }
+        report();
     }
 
     /**
-     * This function compares two existing internal objects. If their trigger times do not match, then the result of the comparison
-     * is the same as the result of comparing the trigger times of the objects.
-     * Otherwise, the order is taken according to the result of comparing both objects by the registered comparator
+     * Remove all alarms from the TimeRange
      */
-    private int compare(@NonNull S first, @NonNull S second) {
-        return first == second ? 0
-             : Optional.of(instant(first).compareTo(instant(second)))
-                .filter(result -> result != 0)
-                .orElseGet(() -> comparator.compare(first, second));
-
+    @Override
+    public void clean() {
+        this.buckets.clear();
+        this.firstBucket = this.buckets.length();
+        this.nearest = NONE;
+        this.size = 0;
+        report();
     }
 
-    private int compareObjects(@NonNull Object first, @NonNull Object second) {
-        return Integer.compare(first.hashCode(), second.hashCode());
+    @Override
+    protected boolean isEmpty() {
+        return this.buckets.size() == 0;
     }
 
-    // Check that element event occurs for now
-    private boolean happened(@NonNull S element, @NonNull Instant now) {
-        return !instant(element).isAfter(now);
+    @Override
+    protected @Nullable Instant getNearestInstant() {
+        return this.nearest == NONE ? null : instant(this.nearest);
     }
 
     // Extract instant from internal element
     private @NonNull Instant instant(@NonNull S element) {
         return Instant.from(this.expectation.apply(element));
     }
-    
+
+    // The elements of the interval. Until the bucket is reached by the extraction or the removal, the elements are just
+    // appended to the list and only the minimal offset is tracked, so the order is not paid for the far-future intervals
+    private static final class Bucket<S> {
+        private List<Entry<S>> unsorted = new ArrayList<>();
+        // Here we specify not the interface, but the implementation deliberately!!!
+        private TreeSet<Entry<S>> sorted = null;
+        private long minimum = NONE;
+        // Returns false if the sorted bucket already contains the equal element
+        private boolean add(@NonNull Entry<S> entry) {
+            if (this.sorted == null) {
+                this.unsorted.add(entry);
+                this.minimum = Math.min(this.minimum, entry.offset);
+                return true;
+            }
+            return this.sorted.add(entry);
+        }
+        // Sort the elements on the first call
+        private @NonNull TreeSet<Entry<S>> sorted(@NonNull Comparator<Entry<S>> order) {
+            if (this.sorted == null) {
+                this.sorted = new TreeSet<>(order);
+                this.sorted.addAll(this.unsorted);
+                this.unsorted = null;
+            }
+            return this.sorted;
+        }
+        private boolean isEmpty() {
+            return this.sorted == null ? this.unsorted.isEmpty() : this.sorted.isEmpty();
+        }
+        // The offset of the first element of the non-empty bucket
+        private long first() {
+            return this.sorted == null ? this.minimum : this.sorted.first().offset;
+        }
+    }
+
 }
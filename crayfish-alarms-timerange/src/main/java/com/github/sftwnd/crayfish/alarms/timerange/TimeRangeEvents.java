@@ -0,0 +1,56 @@
+/*
+ * Copyright © 2017-2023 Andrey D. Shindarev. All rights reserved.
+ * This program is made available under the terms of the BSD 3-Clause License.
+ * Contacts: ashindarev@gmail.com
+ */
+package com.github.sftwnd.crayfish.alarms.timerange;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Java Flight Recorder events of the TimeRange. The events are created on every call, but the fields are calculated
+ * and the event is committed only if the event is enabled in the active recording
+ */
+final class TimeRangeEvents {
+
+    static final String CATEGORY = "Crayfish Alarms";
+
+    private TimeRangeEvents() {
+    }
+
+    @Name("com.github.sftwnd.crayfish.alarms.TimeRangeAdd")
+    @Label("TimeRange Add")
+    @Description("Registration of the elements in the TimeRange")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static final class Add extends Event {
+        @Label("Elements")
+        int elements;
+        @Label("Rejected")
+        int rejected;
+    }
+
+    @Name("com.github.sftwnd.crayfish.alarms.TimeRangeExtract")
+    @Label("TimeRange Extract")
+    @Description("Extraction of the fired elements from the TimeRange")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static final class Extract extends Event {
+        @Label("Fired")
+        int fired;
+        @Label("Buckets")
+        @Description("Number of the buckets touched by the extraction")
+        int buckets;
+        @Label("Lateness")
+        @Description("Maximal time from the time marker of the fired element until the extraction")
+        @Timespan(Timespan.NANOSECONDS)
+        long lateness;
+    }
+
+}
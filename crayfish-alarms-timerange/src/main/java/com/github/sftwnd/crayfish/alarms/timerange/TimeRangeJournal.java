@@ -0,0 +1,314 @@
+/*
+ * Copyright © 2017-2023 Andrey D. Shindarev. All rights reserved.
+ * This program is made available under the terms of the BSD 3-Clause License.
+ * Contacts: ashindarev@gmail.com
+ */
+package com.github.sftwnd.crayfish.alarms.timerange;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+
+/**
+ * Write-ahead journal of the TimeRange in the memory-mapped segment file.
+ * The segment starts with the header describing the range, followed by the records:
+ * [type:1][length:4][epochSecond:8][nano:4][element:length]. The type byte is written last, so the torn record
+ * looks like the end of the journal. When the segment is full, it is compacted: the records are replaced with
+ * ADD records of the pending elements only. The journal is deleted when its range is complete and recreated on the
+ * next record. The ADD record followed by the REVOKE record is skipped with it on the replay.
+ */
+final class TimeRangeJournal {
+
+    static final byte END = 0;
+    static final byte ADD = 1;
+    static final byte REMOVE = 2;
+    static final byte EXTRACT = 3;
+    static final byte CLEAN = 4;
+    // Compensation of the refused reschedule: the ADD record just before it is void
+    static final byte REVOKE = 5;
+
+    private static final int MAGIC = 0x4352544A;
+    private static final int VERSION = 1;
+    // magic, version, startInstant, lastInstant
+    private static final int HEADER_SIZE = 4 + 4 + 12 + 12;
+    // type, length, instant
+    private static final int RECORD_HEADER_SIZE = 1 + 4 + 12;
+
+    private final Path path;
+    private final Instant startInstant;
+    private final Instant lastInstant;
+    private final int segmentSize;
+    private MappedByteBuffer buffer;
+    // The position of the next record
+    private int position;
+    // The position of the first record after the last compaction
+    private int compacted;
+
+    /**
+     * Open the journal file or create the new one
+     * @param path journal file
+     * @param startInstant the beginning of the range
+     * @param lastInstant the end of the range
+     * @param segmentSize the minimal size of the segment in bytes
+     */
+    TimeRangeJournal(@NonNull Path path, @NonNull Instant startInstant, @NonNull Instant lastInstant, int segmentSize) {
+        this.path = Objects.requireNonNull(path, "TimeRangeJournal::new - path is null");
+        this.startInstant = Objects.requireNonNull(startInstant, "TimeRangeJournal::new - startInstant is null");
+        this.lastInstant = Objects.requireNonNull(lastInstant, "TimeRangeJournal::new - lastInstant is null");
+        if (segmentSize <= HEADER_SIZE) {
+            throw new IllegalArgumentException("TimeRangeJournal::new - segmentSize is too small: " + segmentSize);
+        }
+        this.segmentSize = segmentSize;
+        try {
+            boolean exists = Files.exists(path) && Files.size(path) > 0;
+            this.buffer = map(path, exists ? Math.max(Math.toIntExact(Files.size(path)), segmentSize) : segmentSize);
+            if (exists) {
+                validate();
+            } else {
+                writeHeader(this.buffer);
+            }
+        } catch (IOException ioex) {
+            throw new UncheckedIOException(ioex);
+        }
+        this.position = HEADER_SIZE;
+        this.compacted = HEADER_SIZE;
+    }
+
+    /**
+     * Pass all the records of the journal to the visitor and set the position of the next record after them
+     * @param visitor handler of the records
+     */
+    void replay(@NonNull RecordVisitor visitor) {
+        this.position = HEADER_SIZE;
+        for (byte type = type(this.position); type != END; type = type(this.position)) {
+            int length = this.buffer.getInt(this.position + 1);
+            int next = this.position + RECORD_HEADER_SIZE + length;
+            if (type == ADD && type(next) == REVOKE) {
+                this.position = next + RECORD_HEADER_SIZE + this.buffer.getInt(next + 1);
+            } else {
+                if (type != REVOKE) {
+                    Instant instant = Instant.ofEpochSecond(this.buffer.getLong(this.position + 5), this.buffer.getInt(this.position + 13));
+                    byte[] element = new byte[length];
+                    this.buffer.duplicate().position(this.position + RECORD_HEADER_SIZE).get(element);
+                    visitor.record(type, instant, element);
+                }
+                this.position = next;
+            }
+        }
+    }
+
+    /**
+     * Append the record to the journal, compacting the segment if it is full
+     * @param type type of the record
+     * @param instant time marker of the element or the moment of the extraction
+     * @param element binary form of the element
+     */
+    void append(byte type, @NonNull Instant instant, @NonNull byte[] element) {
+        if (this.buffer == null) {
+            create();
+        }
+        if (RECORD_HEADER_SIZE + element.length > this.buffer.capacity() - this.position) {
+            compact(RECORD_HEADER_SIZE + element.length);
+        }
+        write(this.buffer, this.position, type, instant, element);
+        this.position += RECORD_HEADER_SIZE + element.length;
+    }
+
+    /**
+     * Force the changes of the segment to the storage device
+     */
+    void force() {
+        if (this.buffer != null) {
+            this.buffer.force();
+        }
+    }
+
+    /**
+     * Compact the journal if the records written after the last compaction take more than the half of the segment
+     */
+    void compactIfGrown() {
+        if (this.buffer != null && this.position - this.compacted > this.segmentSize / 2) {
+            compact(0);
+        }
+    }
+
+    /**
+     * Delete the journal file. The journal is created again on the next record
+     */
+    void delete() {
+        try {
+            this.buffer = null;
+            Files.deleteIfExists(this.path);
+        } catch (IOException ioex) {
+            throw new UncheckedIOException(ioex);
+        }
+    }
+
+    private void create() {
+        try {
+            this.buffer = map(this.path, this.segmentSize);
+            writeHeader(this.buffer);
+        } catch (IOException ioex) {
+            throw new UncheckedIOException(ioex);
+        }
+        this.position = HEADER_SIZE;
+        this.compacted = HEADER_SIZE;
+    }
+
+    // Rewrite the journal with the ADD records of the pending elements only. The new segment is written to the
+    // temporary file that replaces the journal, so the failure of the compaction leaves the old journal intact
+    private void compact(int reserve) {
+        List<Record> records = pending();
+        long size = HEADER_SIZE + (long) reserve;
+        for (Record record : records) {
+            size += RECORD_HEADER_SIZE + record.element.length;
+        }
+        int capacity = Math.toIntExact(Math.max(this.segmentSize, size > this.segmentSize / 2 ? 2 * size : size));
+        Path temporary = this.path.resolveSibling(this.path.getFileName() + ".tmp");
+        try {
+            Files.deleteIfExists(temporary);
+            MappedByteBuffer compacted = map(temporary, capacity);
+            writeHeader(compacted);
+            int next = HEADER_SIZE;
+            for (Record record : records) {
+                write(compacted, next, ADD, record.instant, record.element);
+                next += RECORD_HEADER_SIZE + record.element.length;
+            }
+            compacted.force();
+            Files.move(temporary, this.path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            this.buffer = compacted;
+            this.position = next;
+            this.compacted = next;
+        } catch (IOException ioex) {
+            throw new UncheckedIOException(ioex);
+        }
+    }
+
+    // The elements that are added, but not removed, extracted or cleaned, in the order of addition
+    private @NonNull List<Record> pending() {
+        List<Record> added = new ArrayList<>();
+        PriorityQueue<Record> queue = new PriorityQueue<>(Comparator.comparing((Record record) -> record.instant));
+        Map<ByteBuffer, Deque<Record>> index = new HashMap<>();
+        replay((type, instant, element) -> {
+            if (type == ADD) {
+                Record record = new Record(instant, element);
+                added.add(record);
+                queue.add(record);
+                index.computeIfAbsent(ByteBuffer.wrap(element), ignore -> new ArrayDeque<>()).add(record);
+            } else if (type == REMOVE) {
+                // The range keeps the duplicates of the element as one element, so the removal cancels all of them
+                Deque<Record> same = index.remove(ByteBuffer.wrap(element));
+                if (same != null) {
+                    same.forEach(record -> record.pending = false);
+                }
+            } else if (type == EXTRACT) {
+                while (!queue.isEmpty() && !queue.peek().instant.isAfter(instant)) {
+                    queue.poll().pending = false;
+                }
+            } else if (type == CLEAN) {
+                added.forEach(record -> record.pending = false);
+                queue.clear();
+                index.clear();
+            }
+        });
+        List<Record> result = new ArrayList<>();
+        for (Record record : added) {
+            if (record.pending) {
+                result.add(record);
+            }
+        }
+        return result;
+    }
+
+    private byte type(int offset) {
+        if (offset + RECORD_HEADER_SIZE > this.buffer.capacity()) {
+            return END;
+        }
+        byte type = this.buffer.get(offset);
+        int length = type == END ? 0 : this.buffer.getInt(offset + 1);
+        // The broken record is treated as the end of the journal
+        return type < ADD || type > REVOKE || length < 0 || length > this.buffer.capacity() - offset - RECORD_HEADER_SIZE ? END : type;
+    }
+
+    private void validate() {
+        if (this.buffer.getInt(0) != MAGIC || this.buffer.getInt(4) != VERSION) {
+            throw new IllegalStateException("TimeRangeJournal::new - file is not a journal of the supported version: " + this.path);
+        }
+        Instant start = Instant.ofEpochSecond(this.buffer.getLong(8), this.buffer.getInt(16));
+        Instant last = Instant.ofEpochSecond(this.buffer.getLong(20), this.buffer.getInt(28));
+        if (!this.startInstant.equals(start) || !this.lastInstant.equals(last)) {
+            throw new IllegalStateException("TimeRangeJournal::new - journal " + this.path + " belongs to the range [" + start + ", " + last + ")");
+        }
+    }
+
+    private void writeHeader(@NonNull MappedByteBuffer target) {
+        target.putInt(0, MAGIC);
+        target.putInt(4, VERSION);
+        target.putLong(8, this.startInstant.getEpochSecond());
+        target.putInt(16, this.startInstant.getNano());
+        target.putLong(20, this.lastInstant.getEpochSecond());
+        target.putInt(28, this.lastInstant.getNano());
+    }
+
+    private static void write(@NonNull MappedByteBuffer target, int offset, byte type, @NonNull Instant instant, @NonNull byte[] element) {
+        target.putInt(offset + 1, element.length);
+        target.putLong(offset + 5, instant.getEpochSecond());
+        target.putInt(offset + 13, instant.getNano());
+        target.duplicate().position(offset + RECORD_HEADER_SIZE).put(element);
+        // The end of the journal marker after the record
+        if (offset + RECORD_HEADER_SIZE + element.length < target.capacity()) {
+            target.put(offset + RECORD_HEADER_SIZE + element.length, END);
+        }
+        // The record becomes visible after the type is written
+        target.put(offset, type);
+    }
+
+    private static @NonNull MappedByteBuffer map(@NonNull Path path, int size) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    /**
+     * Handler of the journal record
+     */
+    @FunctionalInterface
+    interface RecordVisitor {
+        /**
+         * Process the journal record
+         * @param type type of the record
+         * @param instant time marker of the element or the moment of the extraction
+         * @param element binary form of the element (empty for EXTRACT and CLEAN records)
+         */
+        void record(byte type, @NonNull Instant instant, @NonNull byte[] element);
+    }
+
+    private static final class Record {
+        private final Instant instant;
+        private final byte[] element;
+        private boolean pending = true;
+        private Record(Instant instant, byte[] element) {
+            this.instant = instant;
+            this.element = element;
+        }
+    }
+
+}
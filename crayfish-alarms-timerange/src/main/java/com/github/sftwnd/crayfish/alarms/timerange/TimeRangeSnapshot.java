@@ -0,0 +1,201 @@
+/*
+ * Copyright © 2017-2023 Andrey D. Shindarev. All rights reserved.
+ * This program is made available under the terms of the BSD 3-Clause License.
+ * Contacts: ashindarev@gmail.com
+ */
+package com.github.sftwnd.crayfish.alarms.timerange;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * Binary snapshot of the TimeRange. The snapshot starts with the header describing the range, followed by the elements
+ * in the order of the buckets: [offset:8][length:4][element:length], and ends with the offset -1.
+ * The offset is the time marker of the element in nanos from the beginning of the first interval of the range.
+ */
+final class TimeRangeSnapshot {
+
+    private static final int MAGIC = 0x43525453;
+    private static final int VERSION = 1;
+    private static final long END = -1L;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // offset, length
+    private static final int RECORD_HEADER_SIZE = 8 + 4;
+
+    private TimeRangeSnapshot() {
+    }
+
+    /**
+     * Streaming writer of the snapshot
+     */
+    static final class Writer {
+
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+        /**
+         * Start the snapshot of the range
+         * @param channel target of the snapshot
+         * @param region the borders of the range
+         */
+        Writer(@NonNull WritableByteChannel channel, @NonNull ITimeRegion region) {
+            this.channel = Objects.requireNonNull(channel, "TimeRangeSnapshot.Writer::new - channel is null");
+            this.buffer.putInt(MAGIC)
+                    .putInt(VERSION)
+                    .putLong(region.getStartInstant().getEpochSecond())
+                    .putInt(region.getStartInstant().getNano())
+                    .putLong(region.getLastInstant().getEpochSecond())
+                    .putInt(region.getLastInstant().getNano());
+        }
+
+        /**
+         * Write the element
+         * @param offset time marker of the element in nanos from the beginning of the first interval
+         * @param element binary form of the element
+         */
+        void write(long offset, @NonNull byte[] element) {
+            reserve(RECORD_HEADER_SIZE);
+            this.buffer.putLong(offset).putInt(element.length);
+            if (element.length > this.buffer.remaining()) {
+                flush();
+                write(ByteBuffer.wrap(element));
+            } else {
+                this.buffer.put(element);
+            }
+        }
+
+        /**
+         * Write the end of the snapshot and flush the buffer to the channel
+         */
+        void finish() {
+            reserve(RECORD_HEADER_SIZE);
+            this.buffer.putLong(END);
+            flush();
+        }
+
+        private void reserve(int size) {
+            if (this.buffer.remaining() < size) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            this.buffer.flip();
+            write(this.buffer);
+            this.buffer.clear();
+        }
+
+        private void write(@NonNull ByteBuffer source) {
+            try {
+                while (source.hasRemaining()) {
+                    this.channel.write(source);
+                }
+            } catch (IOException ioex) {
+                throw new UncheckedIOException(ioex);
+            }
+        }
+
+    }
+
+    /**
+     * Streaming reader of the snapshot
+     */
+    static final class Reader {
+
+        private final ReadableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private long offset;
+        private byte[] element;
+
+        /**
+         * Open the snapshot of the range
+         * @param channel source of the snapshot
+         * @param region the borders of the range the snapshot has to belong to
+         */
+        Reader(@NonNull ReadableByteChannel channel, @NonNull ITimeRegion region) {
+            this.channel = Objects.requireNonNull(channel, "TimeRangeSnapshot.Reader::new - channel is null");
+            this.buffer.flip();
+            require(32);
+            if (this.buffer.getInt() != MAGIC || this.buffer.getInt() != VERSION) {
+                throw new IllegalStateException("TimeRangeSnapshot.Reader::new - the source is not a snapshot of the supported version");
+            }
+            Instant start = Instant.ofEpochSecond(this.buffer.getLong(), this.buffer.getInt());
+            Instant last = Instant.ofEpochSecond(this.buffer.getLong(), this.buffer.getInt());
+            if (!region.getStartInstant().equals(start) || !region.getLastInstant().equals(last)) {
+                throw new IllegalStateException("TimeRangeSnapshot.Reader::new - snapshot belongs to the range [" + start + ", " + last + ")");
+            }
+        }
+
+        /**
+         * Read the next element
+         * @return true if the element is read or false at the end of the snapshot
+         */
+        boolean next() {
+            require(8);
+            this.offset = this.buffer.getLong();
+            if (this.offset == END) {
+                this.element = null;
+                return false;
+            }
+            require(4);
+            int length = this.buffer.getInt();
+            if (length < 0) {
+                throw new IllegalStateException("TimeRangeSnapshot.Reader::next - wrong length of the element: " + length);
+            }
+            this.element = new byte[length];
+            int copied = Math.min(length, this.buffer.remaining());
+            this.buffer.get(this.element, 0, copied);
+            if (copied < length) {
+                read(ByteBuffer.wrap(this.element, copied, length - copied));
+            }
+            return true;
+        }
+
+        long offset() {
+            return this.offset;
+        }
+
+        @NonNull byte[] element() {
+            return this.element;
+        }
+
+        // Make sure the buffer contains the specified number of bytes, reading ahead as much as the channel gives
+        private void require(int size) {
+            if (this.buffer.remaining() < size) {
+                this.buffer.compact();
+                try {
+                    while (this.buffer.position() < size) {
+                        if (this.channel.read(this.buffer) < 0) {
+                            throw new EOFException("Unexpected end of the snapshot");
+                        }
+                    }
+                } catch (IOException ioex) {
+                    throw new UncheckedIOException(ioex);
+                }
+                this.buffer.flip();
+            }
+        }
+
+        private void read(@NonNull ByteBuffer target) {
+            try {
+                while (target.hasRemaining()) {
+                    if (this.channel.read(target) < 0) {
+                        throw new EOFException("Unexpected end of the snapshot");
+                    }
+                }
+            } catch (IOException ioex) {
+                throw new UncheckedIOException(ioex);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,539 @@
+/*
+ * Copyright © 2017-2023 Andrey D. Shindarev. All rights reserved.
+ * This program is made available under the terms of the BSD 3-Clause License.
+ * Contacts: ashindarev@gmail.com
+ */
+package com.github.sftwnd.crayfish.alarms.timerange;
+
+import com.github.sftwnd.crayfish.common.expectation.TemporalExtractor;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.TemporalAccessor;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static java.util.Optional.ofNullable;
+
+/**
+ * A time range built as a hashed hierarchical timing wheel. Elements are kept in unordered slots of the size of the
+ * interval, so the insertion of the element and the expiry of the slot take O(1) regardless of the length of the range.
+ * The wheel of every next level covers WHEEL_SIZE slots of the previous one, and when the wheel of the lower level
+ * makes a turn the slot of the upper level is cascaded down.
+ * Unlike TimeRange elements are not ordered inside the interval and duplicates are not filtered out.
+ * @param <M> Element type when added
+ * @param <S> Element type in the internal storage
+ * @param <R> Element type when retrieving
+ */
+class TimeRangeWheel<M,S,R> extends AbstractTimeRange implements ITimeRange<M,R> {
+
+    /*
+        Used sonar warnings:
+            java:S107 Methods should not have too many params
+     */
+
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+    /**
+     * Constructor for the internal storage object from the incoming element
+     */
+    private final Transformer<M,S> preserver;
+
+    /**
+     * Getting the date from the preserved element
+     */
+    private final TemporalExtractor<S,? extends TemporalAccessor> expectation;
+
+    /**
+     * Getting result element from internal storage
+     */
+    private final Transformer<S,R> reducer;
+
+    // Slots of the wheels: [level][slot]. The element is placed to the slot of the lowest level on which its interval
+    // differs from the current one. Elements which interval has already come are kept in the current slot of the level 0
+    private final Node<S>[][] wheels;
+    // The minimal offset of the elements in the slot: [level][slot]
+    private final long[][] minimums;
+    // Number of elements on each level
+    private final int[] levelSizes;
+    // The current interval of the wheel
+    private long currentTick = 0;
+    // Number of elements in the wheel
+    private int size = 0;
+    // Number of the non-empty slots
+    private int slots = 0;
+    // The offset of the nearest element (NONE in case of absence) and the sign of its relevance
+    private long nearest = NONE;
+    private boolean nearestKnown = true;
+    // Listener of the metrics of the range
+    private IAlarmMetrics metrics = IAlarmMetrics.NONE;
+
+    /**
+     * A timing wheel containing objects marked with a time-marker for the range to search for triggered
+     *
+     * @param time The moment limiting the region processing period (if duration is positive, then on the left, otherwise - on the right)
+     * @param duration Duration of the period of the region (if negative, then to the left of instant, otherwise - to the right).
+     * @param interval The size of the slot of the wheel (if &gt; duration or &lt;= ZERO, then it is taken equal to duration.abs())
+     * @param completeTimeout At a specified interval after the end of the described range, if there are no processed objects, the actor stops
+     * @param preserver Method for converting an input element into an internal element
+     * @param expectation Getting timestamp from incoming element
+     * @param reducer Method for converting an internal element into a result element
+     */
+    @SuppressWarnings("java:S107")
+    TimeRangeWheel(
+            @NonNull  TemporalAccessor time,
+            @NonNull  Duration duration,
+            @NonNull  Duration interval,
+            @Nullable Duration completeTimeout,
+            @NonNull  Transformer<M,S> preserver,
+            @NonNull  TemporalExtractor<S,? extends TemporalAccessor> expectation,
+            @NonNull  Transformer<S,R> reducer
+    ) {
+        super(time, duration, interval, completeTimeout);
+        this.preserver = Objects.requireNonNull(preserver, "TimeRangeWheel::new - preserver is null");
+        this.expectation = Objects.requireNonNull(expectation, "TimeRangeWheel::new - expectation is null");
+        this.reducer = Objects.requireNonNull(reducer, "TimeRangeWheel::new - reducer is null");
+        int levels = 1;
+        while (levels * WHEEL_BITS < Long.SIZE - 1 && intervals() > 1L << (levels * WHEEL_BITS)) {
+            levels++;
+        }
+        this.wheels = wheels(levels);
+        this.minimums = new long[levels][WHEEL_SIZE];
+        Arrays.stream(this.minimums).forEach(slots -> Arrays.fill(slots, NONE));
+        this.levelSizes = new int[levels];
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <S> Node<S>[][] wheels(int levels) {
+        return (Node<S>[][]) new Node<?>[levels][WHEEL_SIZE];
+    }
+
+    /**
+     * Add the specified set of elements to the wheel
+     * Out-of-range data is ignored
+     * @param elements collection of added elements
+     * @return list of ignored elements
+     */
+    @Override
+    public @NonNull Collection<M> addElements(@NonNull Collection<M> elements) {
+        Objects.requireNonNull(elements, "TimeRangeWheel::addElements - elements is null");
+        TimeRangeEvents.Add event = new TimeRangeEvents.Add();
+        event.begin();
+        List<M> excludes = new LinkedList<>();
+        for (M element : elements) {
+            if (element != null) {
+                S storeElement = this.preserver.apply(element);
+                Instant instant = Instant.from(this.expectation.apply(storeElement));
+                if (inRange(instant)) {
+                    store(storeElement, offset(instant));
+                } else {
+                    excludes.add(element);
+                }
+            }
+        }
+        report();
+        event.end();
+        if (event.shouldCommit()) {
+            event.elements = elements.size();
+            event.rejected = excludes.size();
+            event.commit();
+        }
+        return excludes;
+    }
+
+    private void store(@NonNull S element, long offset) {
+        insert(new Node<>(element, offset));
+        this.size++;
+        if (this.nearestKnown) {
+            this.nearest = Math.min(this.nearest, offset);
+        }
+    }
+
+    /**
+     * Remove the specified set of pending elements from the wheel
+     * The element is looked for in the slot where it is placed according to its time marker, one occurrence
+     * equal to the element is removed
+     * @param elements collection of removed elements
+     * @return list of elements that were not found
+     */
+    @Override
+    public @NonNull Collection<M> removeElements(@NonNull Collection<M> elements) {
+        Objects.requireNonNull(elements, "TimeRangeWheel::removeElements - elements is null");
+        List<M> missed = new LinkedList<>();
+        for (M element : elements) {
+            if (element != null) {
+                S storeElement = this.preserver.apply(element);
+                Instant instant = Instant.from(this.expectation.apply(storeElement));
+                if (!inRange(instant) || !remove(storeElement, offset(instant))) {
+                    missed.add(element);
+                }
+            }
+        }
+        report();
+        return missed;
+    }
+
+    // The level and the slot of the element are the same as the ones chosen by insert: the upper digits of the
+    // current interval do not change until the slot of the element is cascaded
+    private boolean remove(@NonNull S element, long offset) {
+        long tick = tick(offset);
+        int level = level(tick);
+        int slot = slot(Math.max(tick, this.currentTick), level);
+        Node<S> previous = null;
+        for (Node<S> node = this.wheels[level][slot]; node != null; previous = node, node = node.next) {
+            if (node.offset == offset && Objects.equals(node.element, element)) {
+                if (previous == null) {
+                    this.wheels[level][slot] = node.next;
+                } else {
+                    previous.next = node.next;
+                }
+                if (this.wheels[level][slot] == null) {
+                    this.slots--;
+                }
+                this.levelSizes[level]--;
+                this.size--;
+                if (this.minimums[level][slot] == offset) {
+                    this.minimums[level][slot] = minimum(this.wheels[level][slot]);
+                }
+                if (this.nearestKnown && this.nearest == offset) {
+                    this.nearestKnown = false;
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long minimum(@Nullable Node<?> node) {
+        long minimum = NONE;
+        for (; node != null; node = node.next) {
+            minimum = Math.min(minimum, node.offset);
+        }
+        return minimum;
+    }
+
+    /**
+     * Replace the pending element with the rescheduled one in one step
+     * Nothing is changed if the pending element is not found or the rescheduled one is out of range
+     * @param element pending element
+     * @param rescheduled element with the new time marker
+     * @return true if the element is rescheduled or false otherwise
+     */
+    @Override
+    public boolean reschedule(@NonNull M element, @NonNull M rescheduled) {
+        Objects.requireNonNull(element, "TimeRangeWheel::reschedule - element is null");
+        Objects.requireNonNull(rescheduled, "TimeRangeWheel::reschedule - rescheduled is null");
+        S storeElement = this.preserver.apply(element);
+        Instant instant = Instant.from(this.expectation.apply(storeElement));
+        S storeRescheduled = this.preserver.apply(rescheduled);
+        Instant rescheduledInstant = Instant.from(this.expectation.apply(storeRescheduled));
+        if (inRange(instant) && inRange(rescheduledInstant) && remove(storeElement, offset(instant))) {
+            store(storeRescheduled, offset(rescheduledInstant));
+            report();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Extracting from the wheel the elements that, according to the time marker, are considered
+     * to have worked at the time passed by the parameter
+     * @param instant point in time at which the check is made
+     * @param limit maximal number of the extracted elements
+     * @param consumer handler of the triggered element
+     * @return number of triggered elements
+     */
+    @Override
+    public int extractFiredElements(@Nullable Instant instant, int limit, @NonNull Consumer<? super R> consumer) {
+        Objects.requireNonNull(consumer, "TimeRangeWheel::extractFiredElements - consumer is null");
+        Instant now = ofNullable(instant).orElseGet(getTimeSource()::instant);
+        TimeRangeEvents.Extract event = new TimeRangeEvents.Extract();
+        event.begin();
+        int fired = 0;
+        Extraction<R> extraction = null;
+        if (this.size > 0 && !now.isBefore(getStartInstant())) {
+            this.nearestKnown = false;
+            long nowOffset = limitedOffset(now);
+            long nowTick = tick(nowOffset);
+            // The lateness is measured from the real moment, not limited by the range
+            extraction = new Extraction<>(consumer, this.metrics == IAlarmMetrics.NONE && !event.isEnabled() ? nowOffset : offset(now));
+            try {
+                // All the elements of the passed intervals are fired completely (the interval is left when the limit is reached)
+                while (this.currentTick < nowTick && this.size > 0 && fired < limit) {
+                    fired += fireSlot(limit - fired, extraction);
+                    if (fired < limit) {
+                        advance(nowTick);
+                    }
+                }
+                if (this.size == 0) {
+                    this.currentTick = Math.max(this.currentTick, nowTick);
+                } else if (fired < limit) {
+                    fired += fireSlot(nowOffset, limit - fired, extraction);
+                }
+            } finally {
+                report();
+            }
+        }
+        event.end();
+        if (fired > 0 && event.shouldCommit()) {
+            event.fired = fired;
+            event.buckets = extraction.slots;
+            event.lateness = extraction.firedOffset - extraction.earliest;
+            event.commit();
+        }
+        return fired;
+    }
+
+    /**
+     * Write the point-in-time snapshot of the pending elements in the order of the slots of the wheels
+     * @param channel target of the snapshot
+     * @param serializer conversion of the resulting element to the binary form
+     */
+    @Override
+    public void snapshot(@NonNull WritableByteChannel channel, @NonNull Function<? super R, byte[]> serializer) {
+        Objects.requireNonNull(serializer, "TimeRangeWheel::snapshot - serializer is null");
+        TimeRangeSnapshot.Writer writer = new TimeRangeSnapshot.Writer(channel, this);
+        for (Node<S>[] slots : this.wheels) {
+            for (Node<S> slot : slots) {
+                for (Node<S> node = slot; node != null; node = node.next) {
+                    writer.write(node.offset, serializer.apply(this.reducer.apply(node.element)));
+                }
+            }
+        }
+        writer.finish();
+    }
+
+    /**
+     * Load the elements from the snapshot of the same range to the slots by the time marker stored in the snapshot
+     * @param channel source of the snapshot
+     * @param deserializer restoring of the incoming element from the binary form written by snapshot
+     */
+    @Override
+    public void restore(@NonNull ReadableByteChannel channel, @NonNull Function<byte[], ? extends M> deserializer) {
+        Objects.requireNonNull(deserializer, "TimeRangeWheel::restore - deserializer is null");
+        TimeRangeSnapshot.Reader reader = new TimeRangeSnapshot.Reader(channel, this);
+        while (reader.next()) {
+            store(this.preserver.apply(deserializer.apply(reader.element())), restoredOffset(reader.offset()));
+        }
+        report();
+    }
+
+    /**
+     * Remove all alarms from the TimeRange
+     */
+    @Override
+    public void clean() {
+        Arrays.stream(this.wheels).forEach(slots -> Arrays.fill(slots, null));
+        Arrays.stream(this.minimums).forEach(slots -> Arrays.fill(slots, NONE));
+        Arrays.fill(this.levelSizes, 0);
+        this.size = 0;
+        this.slots = 0;
+        this.nearest = NONE;
+        this.nearestKnown = true;
+        report();
+    }
+
+    /**
+     * Set the listener of the metrics of the range: the lateness of the fired elements and the number of the pending
+     * elements and non-empty slots
+     * @param metrics listener of the metrics (NONE in the case of null)
+     */
+    @Override
+    public void setMetrics(@Nullable IAlarmMetrics metrics) {
+        this.metrics = ofNullable(metrics).orElse(IAlarmMetrics.NONE);
+        report();
+    }
+
+    private void report() {
+        if (this.metrics != IAlarmMetrics.NONE) {
+            this.metrics.pending(this.size, this.slots);
+        }
+    }
+
+    @Override
+    protected boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    @Override
+    protected @Nullable Instant getNearestInstant() {
+        if (!this.nearestKnown) {
+            this.nearest = findNearest();
+            this.nearestKnown = true;
+        }
+        return this.nearest == NONE ? null : instant(this.nearest);
+    }
+
+    // The first non-empty slot in the order: the current slot, the next slots of the level 0,
+    // the next slots of the level 1 and so on, contains the nearest element
+    private long findNearest() {
+        for (int level = 0; level < this.wheels.length; level++) {
+            if (this.levelSizes[level] > 0) {
+                for (int slot = slot(this.currentTick, level); slot < WHEEL_SIZE; slot++) {
+                    if (this.wheels[level][slot] != null) {
+                        return this.minimums[level][slot];
+                    }
+                }
+            }
+        }
+        return NONE;
+    }
+
+    // Move the current interval forward, but not after the limit, cascading the slots of the upper levels
+    private void advance(long limit) {
+        int level = 0;
+        while (level < this.wheels.length && this.levelSizes[level] == 0) {
+            level++;
+        }
+        // If the lower levels are empty, there is nothing to do until the turn of the wheel of the first non-empty level
+        long next = level == 0 ? this.currentTick + 1
+                  : ((this.currentTick >>> (level * WHEEL_BITS)) + 1) << (level * WHEEL_BITS);
+        if (next > limit) {
+            this.currentTick = limit;
+        } else {
+            this.currentTick = next;
+            if (slot(next, 0) == 0) {
+                cascade();
+            }
+        }
+    }
+
+    // Move the elements of the current slots of the upper levels to the lower levels
+    private void cascade() {
+        for (int level = 1; level < this.wheels.length; level++) {
+            int slot = slot(this.currentTick, level);
+            Node<S> node = this.wheels[level][slot];
+            if (node != null) {
+                this.wheels[level][slot] = null;
+                this.slots--;
+            }
+            this.minimums[level][slot] = NONE;
+            while (node != null) {
+                Node<S> next = node.next;
+                this.levelSizes[level]--;
+                insert(node);
+                node = next;
+            }
+            if (slot != 0) {
+                break;
+            }
+        }
+    }
+
+    private void insert(@NonNull Node<S> node) {
+        long tick = tick(node.offset);
+        int level = level(tick);
+        int slot = slot(Math.max(tick, this.currentTick), level);
+        if (this.wheels[level][slot] == null) {
+            this.slots++;
+        }
+        node.next = this.wheels[level][slot];
+        this.wheels[level][slot] = node;
+        this.minimums[level][slot] = Math.min(this.minimums[level][slot], node.offset);
+        this.levelSizes[level]++;
+    }
+
+    // Fire the elements of the current slot, but not more than limit
+    private int fireSlot(int limit, @NonNull Extraction<R> extraction) {
+        int slot = slot(this.currentTick, 0);
+        int fired = 0;
+        if (this.wheels[0][slot] != null) {
+            extraction.slots++;
+        }
+        for (Node<S> node = this.wheels[0][slot]; node != null && fired < limit; node = this.wheels[0][slot]) {
+            this.wheels[0][slot] = node.next;
+            if (node.next == null) {
+                this.slots--;
+            }
+            fire(node, extraction);
+            fired++;
+        }
+        this.minimums[0][slot] = minimum(this.wheels[0][slot]);
+        return fired;
+    }
+
+    // Fire the elements of the current slot that have happened for now, but not more than limit
+    private int fireSlot(long nowOffset, int limit, @NonNull Extraction<R> extraction) {
+        int slot = slot(this.currentTick, 0);
+        int fired = 0;
+        if (this.wheels[0][slot] != null) {
+            extraction.slots++;
+        }
+        long minimum = NONE;
+        Node<S> previous = null;
+        for (Node<S> node = this.wheels[0][slot]; node != null; node = node.next) {
+            if (node.offset <= nowOffset && fired < limit) {
+                // Unlink the node before it is fired
+                if (previous == null) {
+                    this.wheels[0][slot] = node.next;
+                } else {
+                    previous.next = node.next;
+                }
+                if (this.wheels[0][slot] == null) {
+                    this.slots--;
+                }
+                fire(node, extraction);
+                fired++;
+            } else {
+                previous = node;
+                minimum = Math.min(minimum, node.offset);
+            }
+        }
+        this.minimums[0][slot] = minimum;
+        return fired;
+    }
+
+    private void fire(@NonNull Node<S> node, @NonNull Extraction<R> extraction) {
+        this.levelSizes[0]--;
+        this.size--;
+        extraction.earliest = Math.min(extraction.earliest, node.offset);
+        if (this.metrics != IAlarmMetrics.NONE) {
+            this.metrics.fired(extraction.firedOffset - node.offset);
+        }
+        extraction.consumer.accept(this.reducer.apply(node.element));
+    }
+
+    // The level of the element is the highest digit of the interval that differs from the current one
+    private int level(long tick) {
+        return tick <= this.currentTick ? 0 : (Long.SIZE - 1 - Long.numberOfLeadingZeros(tick ^ this.currentTick)) / WHEEL_BITS;
+    }
+
+    private static int slot(long tick, int level) {
+        return (int) (tick >>> (level * WHEEL_BITS)) & WHEEL_MASK;
+    }
+
+    // The consumer of the extraction with the data of the metrics and the event
+    private static final class Extraction<R> {
+        private final Consumer<? super R> consumer;
+        private final long firedOffset;
+        private long earliest = NONE;
+        private int slots = 0;
+        private Extraction(Consumer<? super R> consumer, long firedOffset) {
+            this.consumer = consumer;
+            this.firedOffset = firedOffset;
+        }
+    }
+
+    // The element of the slot list with the cached time marker
+    private static final class Node<S> {
+        private final S element;
+        private final long offset;
+        private Node<S> next;
+        private Node(S element, long offset) {
+            this.element = element;
+            this.offset = offset;
+        }
+    }
+
+}
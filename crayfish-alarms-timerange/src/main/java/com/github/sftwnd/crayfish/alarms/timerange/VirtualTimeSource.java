@@ -0,0 +1,64 @@
+/*
+ * Copyright © 2017-2023 Andrey D. Shindarev. All rights reserved.
+ * This program is made available under the terms of the BSD 3-Clause License.
+ * Contacts: ashindarev@gmail.com
+ */
+package com.github.sftwnd.crayfish.alarms.timerange;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Controllable time source of the simulation. The time stands still until it is moved forward, it never goes back
+ */
+public class VirtualTimeSource implements ITimeSource {
+
+    private final AtomicLong nanos;
+
+    /**
+     * Construct the time source
+     * @param start initial moment
+     */
+    public VirtualTimeSource(@NonNull Instant start) {
+        this.nanos = new AtomicLong(ITimeSource.nanos(Objects.requireNonNull(start, "VirtualTimeSource::new - start is null")));
+    }
+
+    @Override
+    public long nanos() {
+        return this.nanos.get();
+    }
+
+    /**
+     * Move the time forward to the moment. The moment in the past is ignored
+     * @param epochNanos moment in nanos from the epoch
+     * @return current moment after the move
+     */
+    public long advanceTo(long epochNanos) {
+        return this.nanos.accumulateAndGet(epochNanos, Math::max);
+    }
+
+    /**
+     * Move the time forward to the moment. The moment in the past is ignored
+     * @param instant the moment
+     */
+    public void advanceTo(@NonNull Instant instant) {
+        advanceTo(ITimeSource.nanos(Objects.requireNonNull(instant, "VirtualTimeSource::advanceTo - instant is null")));
+    }
+
+    /**
+     * Move the time forward by the duration
+     * @param duration not negative duration
+     */
+    public void advance(@NonNull Duration duration) {
+        Objects.requireNonNull(duration, "VirtualTimeSource::advance - duration is null");
+        if (duration.isNegative()) {
+            throw new IllegalArgumentException("VirtualTimeSource::advance - duration is negative: " + duration);
+        }
+        this.nanos.addAndGet(duration.toNanos());
+    }
+
+}
@@ -3,5 +3,6 @@ open module com.github.sftwnd.crayfish_alarms_timerange {
     requires transitive com.github.spotbugs.annotations;
     requires transitive com.github.sftwnd.crayfish_common_expectation;
     requires static lombok;
+    requires jdk.jfr;
     exports com.github.sftwnd.crayfish.alarms.timerange;
 }
\ No newline at end of file
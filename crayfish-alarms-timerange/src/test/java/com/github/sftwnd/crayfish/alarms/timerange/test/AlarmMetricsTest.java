@@ -0,0 +1,57 @@
+package com.github.sftwnd.crayfish.alarms.timerange.test;
+
+import com.github.sftwnd.crayfish.alarms.timerange.AlarmMetrics;
+import com.github.sftwnd.crayfish.alarms.timerange.ITimeRange;
+import com.github.sftwnd.crayfish.alarms.timerange.ITimeRangeFactory;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AlarmMetricsTest {
+
+    @Test
+    void histogramTest() {
+        AlarmMetrics.Histogram histogram = new AlarmMetrics.Histogram();
+        assertEquals(0, histogram.getPercentile(99), "Percentile of the empty histogram has to be 0");
+        IntStream.rangeClosed(1, 100).forEach(histogram::record);
+        assertEquals(100, histogram.getCount(), "All the values have to be counted");
+        assertEquals(50.5, histogram.getMean(), "Mean has to be calculated by the recorded values");
+        assertEquals(100, histogram.getMax(), "Max has to be the largest recorded value");
+        assertEquals(63, histogram.getPercentile(50), "Median has to be limited by the upper bound of its bucket");
+        assertEquals(100, histogram.getPercentile(99), "Percentile has to be limited by the max value");
+    }
+
+    @Test
+    void timeRangeMetricsTest() {
+        Instant now = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        AlarmMetrics metrics = new AlarmMetrics();
+        ITimeRange<Instant, Instant> timeRange = ITimeRangeFactory.metered(
+                ITimeRangeFactory.<Instant>temporal(Duration.ofMinutes(1), Duration.ofSeconds(1), Duration.ZERO, null),
+                metrics
+        ).timeRange(now);
+        timeRange.addElements(List.of(now, now, now.plusMillis(1500), now.plusSeconds(30)));
+        assertEquals(4, metrics.getPendingElements(), "Added elements have to be counted");
+        assertEquals(3, metrics.getPendingBuckets(), "Filled buckets have to be counted");
+        timeRange.removeElement(now.plusSeconds(30));
+        assertEquals(3, metrics.getPendingElements(), "Removed element hasn't got to be counted");
+        assertEquals(2, metrics.getPendingBuckets(), "Emptied bucket hasn't got to be counted");
+        timeRange.extractFiredElements(now.plusSeconds(1));
+        assertEquals(1, metrics.getPendingElements(), "Equal elements have to be merged and fired elements hasn't got to be counted");
+        assertEquals(1, metrics.getPendingBuckets(), "Fired bucket hasn't got to be counted");
+        timeRange.addElement(now.plusMillis(1500));
+        assertEquals(1, metrics.getPendingElements(), "Duplicate of the element in the sorted bucket hasn't got to be counted");
+        assertEquals(1, metrics.getLateness().getCount(), "Lateness of the fired element has to be recorded");
+        assertEquals(Duration.ofSeconds(1).toNanos(), metrics.getLateness().getMax(), "Lateness has to be measured from the time marker");
+        timeRange.clean();
+        assertEquals(0, metrics.getPendingElements(), "Clean has to reset the pending elements");
+        assertTrue(timeRange.isComplete(now.plus(Duration.ofMinutes(1))), "Empty range has to be complete");
+    }
+
+}
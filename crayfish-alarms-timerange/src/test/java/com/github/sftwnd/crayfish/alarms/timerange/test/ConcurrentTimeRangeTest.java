@@ -0,0 +1,147 @@
+package com.github.sftwnd.crayfish.alarms.timerange.test;
+
+import com.github.sftwnd.crayfish.alarms.timerange.AlarmMetrics;
+import com.github.sftwnd.crayfish.alarms.timerange.ITimeRange;
+import com.github.sftwnd.crayfish.alarms.timerange.ITimeRangeFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConcurrentTimeRangeTest {
+
+    private static final Duration DURATION = Duration.ofMinutes(1);
+    private static final Duration INTERVAL = Duration.ofMillis(100);
+    private static final Duration COMPLETE_TIMEOUT = Duration.ofSeconds(1);
+
+    private Instant now;
+    private ITimeRange<Instant, Instant> timeRange;
+
+    @Test
+    void threadSafeTest() {
+        assertTrue(timeRange.isThreadSafe(), "Concurrent TimeRange has to be thread-safe");
+    }
+
+    @Test
+    void extractOrderedTest() {
+        List<Instant> elements = IntStream.range(0, 100).mapToObj(i -> now.plusMillis(99L - i)).collect(Collectors.toList());
+        timeRange.addElements(elements);
+        timeRange.addElements(elements);
+        List<Instant> expected = new ArrayList<>(elements);
+        Collections.sort(expected);
+        assertEquals(expected.subList(0, 50), new ArrayList<>(timeRange.extractFiredElements(now.plusMillis(49))), "TimeRange has to return unique ordered elements");
+        assertEquals(Duration.ofMillis(1), timeRange.duration(now.plusMillis(49)), "TimeRange has to return duration to the nearest element");
+    }
+
+    @Test
+    void concurrentAddTest() throws InterruptedException {
+        int producers = 8;
+        int count = 5000;
+        Set<Instant> fired = ConcurrentHashMap.newKeySet();
+        CountDownLatch startCdl = new CountDownLatch(1);
+        CountDownLatch doneCdl = new CountDownLatch(producers);
+        List<Thread> threads = IntStream.range(0, producers).mapToObj(producer -> new Thread(() -> {
+            try {
+                startCdl.await(1, TimeUnit.SECONDS);
+                for (int i = 0; i < count; i++) {
+                    timeRange.addElement(now.plusNanos(((long) i * producers + producer) * 1_000_000L));
+                }
+            } catch (InterruptedException ignore) {
+                Thread.currentThread().interrupt();
+            } finally {
+                doneCdl.countDown();
+            }
+        })).collect(Collectors.toList());
+        threads.forEach(Thread::start);
+        startCdl.countDown();
+        Instant instant = now;
+        while (doneCdl.getCount() > 0) {
+            instant = instant.plusMillis(10);
+            timeRange.extractFiredElements(instant, element -> assertTrue(fired.add(element), "Element has to be fired once"));
+        }
+        assertTrue(doneCdl.await(1, TimeUnit.SECONDS), "All producers have to be completed");
+        timeRange.extractFiredElements(timeRange.getLastInstant(), element -> assertTrue(fired.add(element), "Element has to be fired once"));
+        assertEquals(producers * count, fired.size(), "All elements have to be fired");
+        assertEquals(IntStream.range(0, producers * count).mapToObj(i -> now.plusMillis(i)).collect(Collectors.toSet()), new HashSet<>(fired), "TimeRange has to return all added elements");
+        assertTrue(timeRange.isComplete(timeRange.getLastInstant().plus(COMPLETE_TIMEOUT)), "TimeRange without elements has to be complete");
+    }
+
+    @Test
+    void concurrentFreeTest() throws InterruptedException {
+        int producers = 4;
+        int count = 20000;
+        AlarmMetrics metrics = new AlarmMetrics();
+        timeRange.setMetrics(metrics);
+        Set<Instant> fired = ConcurrentHashMap.newKeySet();
+        CountDownLatch doneCdl = new CountDownLatch(producers);
+        // The elements of the same buckets are added while the extracting thread drains and frees them
+        IntStream.range(0, producers).mapToObj(producer -> new Thread(() -> {
+            try {
+                for (int i = 0; i < count; i++) {
+                    timeRange.addElement(now.plusNanos((long) i * producers + producer));
+                }
+            } finally {
+                doneCdl.countDown();
+            }
+        })).forEach(Thread::start);
+        while (doneCdl.getCount() > 0) {
+            timeRange.extractFiredElements(now.plusSeconds(1), element -> assertTrue(fired.add(element), "Element has to be fired once"));
+        }
+        assertTrue(doneCdl.await(1, TimeUnit.SECONDS), "All producers have to be completed");
+        timeRange.extractFiredElements(now.plusSeconds(1), element -> assertTrue(fired.add(element), "Element has to be fired once"));
+        assertEquals(producers * count, fired.size(), "Elements added to the freed buckets have to be fired");
+        assertEquals(0, metrics.getPendingElements(), "Fired elements hasn't got to be pending");
+        assertEquals(0, metrics.getPendingBuckets(), "Drained buckets have to be freed");
+        assertEquals(producers * count, metrics.getLateness().getCount(), "Lateness of the fired elements has to be recorded");
+    }
+
+    @Test
+    void cleanTest() {
+        timeRange.addElements(List.of(now.plusSeconds(10), now.plusSeconds(20)));
+        timeRange.clean();
+        timeRange.addElement(now.plusSeconds(30));
+        assertEquals(Duration.ofSeconds(30), timeRange.duration(now), "Nearest element hasn't got to stay after clean");
+        assertEquals(List.of(now.plusSeconds(30)), new ArrayList<>(timeRange.extractFiredElements(timeRange.getLastInstant())), "Only the element added after clean has to be fired");
+    }
+
+    @Test
+    void manyIntervalsTest() {
+        // A day with the millisecond interval: the chunks of the buckets are created only for the intervals with elements
+        ITimeRange<Instant, Instant> day = ITimeRangeFactory.<Instant>concurrent(Duration.ofDays(1), Duration.ofMillis(1), Duration.ZERO, instant -> instant, null)
+                .timeRange(now);
+        day.addElements(List.of(now.plus(Duration.ofHours(20)), now.plusMillis(1)));
+        assertEquals(List.of(now.plusMillis(1)), new ArrayList<>(day.extractFiredElements(now.plus(Duration.ofHours(1)))), "Near element has to be fired");
+        assertEquals(List.of(now.plus(Duration.ofHours(20))), new ArrayList<>(day.extractFiredElements(day.getLastInstant())), "Far element has to be fired over the empty chunks");
+        assertTrue(day.isComplete(day.getLastInstant()), "TimeRange without elements has to be complete");
+    }
+
+    @BeforeEach
+    void startUp() {
+        this.now = Instant.now().truncatedTo(ChronoUnit.MINUTES);
+        ITimeRangeFactory<Instant, Instant> timeRangeFactory = ITimeRangeFactory.concurrent(DURATION, INTERVAL, COMPLETE_TIMEOUT, instant -> instant, null);
+        this.timeRange = timeRangeFactory.timeRange(now);
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.now = null;
+        this.timeRange = null;
+    }
+
+}
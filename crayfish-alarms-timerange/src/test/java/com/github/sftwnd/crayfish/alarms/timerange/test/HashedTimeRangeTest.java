@@ -0,0 +1,116 @@
+package com.github.sftwnd.crayfish.alarms.timerange.test;
+
+import com.github.sftwnd.crayfish.alarms.timerange.ITimeRange;
+import com.github.sftwnd.crayfish.alarms.timerange.ITimeRangeFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HashedTimeRangeTest {
+
+    private static final Duration DURATION = Duration.ofMinutes(1);
+    private static final Duration INTERVAL = Duration.ofSeconds(1);
+    private static final Duration COMPLETE_TIMEOUT = Duration.ofSeconds(10);
+
+    private Instant now;
+    private ITimeRange<Alarm, Alarm> timeRange;
+
+    @Test
+    void hashCodeCollisionTest() {
+        Alarm first = new Alarm("Aa", now);
+        Alarm second = new Alarm("BB", now);
+        assertEquals(first.hashCode(), second.hashCode(), "Alarms have to have colliding hashCode");
+        timeRange.addElements(List.of(first, second));
+        assertEquals(Set.of(first, second), new HashSet<>(timeRange.extractFiredElements(now)), "Elements with colliding hashCode haven't got to be lost");
+    }
+
+    @Test
+    void duplicateTest() {
+        timeRange.addElements(List.of(new Alarm("A", now), new Alarm("A", now), new Alarm("A", now.plusMillis(1))));
+        assertEquals(2, timeRange.extractFiredElements(now.plusMillis(1)).size(), "Equal elements with the same time marker have to be filtered out");
+    }
+
+    @Test
+    void keyExtractorTest() {
+        ITimeRange<Alarm, Alarm> keyTimeRange = ITimeRangeFactory.<Alarm>hashed(DURATION, INTERVAL, COMPLETE_TIMEOUT, Alarm::getTick, Alarm::getTick).timeRange(now);
+        keyTimeRange.addElements(List.of(new Alarm("A", now), new Alarm("B", now)));
+        assertEquals(List.of(new Alarm("A", now)), new ArrayList<>(keyTimeRange.extractFiredElements(now)), "Elements with the same key have to be filtered out");
+    }
+
+    @Test
+    void extractInsideIntervalTest() {
+        Alarm first = new Alarm("A", now.plusMillis(100));
+        Alarm second = new Alarm("B", now.plusMillis(200));
+        timeRange.addElements(List.of(second, first));
+        assertEquals(List.of(first), new ArrayList<>(timeRange.extractFiredElements(first.getTick())), "TimeRange has to return only happened elements");
+        assertEquals(Duration.ofMillis(100), timeRange.duration(first.getTick()), "TimeRange has to return duration to the nearest element");
+        assertTrue(timeRange.removeElement(second).isEmpty(), "Pending element has to be removed");
+        assertTrue(timeRange.isComplete(timeRange.getLastInstant().plus(COMPLETE_TIMEOUT)), "TimeRange without elements has to be complete");
+    }
+
+    @Test
+    void extractOrderedTest() {
+        // All the elements are in the same interval
+        List<Alarm> alarms = IntStream.range(0, 1000).mapToObj(i -> new Alarm("A" + i, now.plusMillis(i))).collect(Collectors.toList());
+        List<Alarm> reversed = new ArrayList<>(alarms);
+        Collections.reverse(reversed);
+        timeRange.addElements(reversed);
+        assertTrue(timeRange.removeElements(alarms.subList(0, 500)).isEmpty(), "Pending elements have to be removed");
+        timeRange.addElement(alarms.get(100));
+        assertEquals(Duration.ofMillis(100), timeRange.duration(now), "TimeRange has to return duration to the nearest element after the removal");
+        List<Alarm> fired = new ArrayList<>();
+        assertEquals(10, timeRange.extractFiredElements(now.plusMillis(999), 10, fired::add), "TimeRange hasn't got to return more than limit elements");
+        assertEquals(alarms.get(100), fired.get(0), "Element added after the removal has to be fired first");
+        assertEquals(alarms.subList(500, 509), fired.subList(1, 10), "Elements have to be fired in the order of the time marker");
+        assertEquals(alarms.subList(509, 700), new ArrayList<>(timeRange.extractFiredElements(now.plusMillis(699))), "TimeRange has to return only happened elements in order");
+        assertEquals(Duration.ofMillis(700), timeRange.duration(now), "TimeRange has to return duration to the nearest element");
+    }
+
+    @BeforeEach
+    void startUp() {
+        this.now = Instant.now().truncatedTo(ChronoUnit.MINUTES);
+        this.timeRange = ITimeRangeFactory.<Alarm>hashed(DURATION, INTERVAL, COMPLETE_TIMEOUT, Alarm::getTick, null).timeRange(now);
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.now = null;
+        this.timeRange = null;
+    }
+
+    static class Alarm {
+        private final String id;
+        private final Instant tick;
+        Alarm(String id, Instant tick) {
+            this.id = id;
+            this.tick = tick;
+        }
+        Instant getTick() {
+            return tick;
+        }
+        @Override
+        public boolean equals(Object object) {
+            return object instanceof Alarm && id.equals(((Alarm) object).id) && tick.equals(((Alarm) object).tick);
+        }
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(id);
+        }
+    }
+
+}
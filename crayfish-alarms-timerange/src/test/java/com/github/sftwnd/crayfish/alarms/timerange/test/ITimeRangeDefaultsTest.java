@@ -0,0 +1,114 @@
+package com.github.sftwnd.crayfish.alarms.timerange.test;
+
+import com.github.sftwnd.crayfish.alarms.timerange.ITimeRange;
+import com.github.sftwnd.crayfish.alarms.timerange.ITimeRangeFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ITimeRangeDefaultsTest {
+
+    private Instant now;
+    private ITimeRange<Instant, Instant> timeRange;
+
+    @Test
+    void defaultRescheduleTest() {
+        Instant element = now.plusSeconds(1);
+        Instant rescheduled = now.plusSeconds(2);
+        timeRange.addElement(element);
+        assertTrue(timeRange.reschedule(element, rescheduled), "Pending element has to be rescheduled");
+        assertFalse(timeRange.reschedule(element, now.plusSeconds(3)), "Absent element hasn't got to be rescheduled");
+        assertFalse(timeRange.reschedule(rescheduled, timeRange.getLastInstant()), "Element hasn't got to be rescheduled out of range");
+        assertEquals(List.of(rescheduled), new ArrayList<>(timeRange.extractFiredElements(timeRange.getLastInstant())), "Element rejected on the reschedule has to stay in the range");
+    }
+
+    @Test
+    void defaultLimitedExtractionTest() {
+        List<Instant> elements = List.of(now.plusSeconds(1), now.plusSeconds(2), now.plusSeconds(3));
+        timeRange.addElements(elements);
+        List<Instant> fired = new ArrayList<>();
+        assertEquals(2, timeRange.extractFiredElements(now.plusSeconds(2), 5, fired::add), "TimeRange has to return number of fired elements");
+        assertEquals(1, timeRange.extractFiredElements(timeRange.getLastInstant(), fired::add), "TimeRange has to return number of fired elements");
+        assertEquals(elements, fired, "Fired elements have to be passed to the consumer");
+    }
+
+    @BeforeEach
+    void startUp() {
+        this.now = Instant.now().truncatedTo(ChronoUnit.MINUTES);
+        ITimeRangeFactory<Instant, Instant> timeRangeFactory = ITimeRangeFactory.temporal(Duration.ofMinutes(1), Duration.ofSeconds(1), Duration.ZERO, null);
+        this.timeRange = new Delegate<>(timeRangeFactory.timeRange(now));
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.now = null;
+        this.timeRange = null;
+    }
+
+    // The implementation of the abstract methods only
+    private static class Delegate<M,R> implements ITimeRange<M,R> {
+        private final ITimeRange<M,R> timeRange;
+        private Delegate(ITimeRange<M,R> timeRange) {
+            this.timeRange = timeRange;
+        }
+        @Override
+        public Collection<M> addElements(Collection<M> elements) {
+            return timeRange.addElements(elements);
+        }
+        @Override
+        public Collection<M> removeElements(Collection<M> elements) {
+            return timeRange.removeElements(elements);
+        }
+        @Override
+        public Collection<R> extractFiredElements(Instant instant) {
+            return timeRange.extractFiredElements(instant);
+        }
+        @Override
+        public void snapshot(WritableByteChannel channel, Function<? super R, byte[]> serializer) {
+            timeRange.snapshot(channel, serializer);
+        }
+        @Override
+        public void restore(ReadableByteChannel channel, Function<byte[], ? extends M> deserializer) {
+            timeRange.restore(channel, deserializer);
+        }
+        @Override
+        public Instant getStartInstant() {
+            return timeRange.getStartInstant();
+        }
+        @Override
+        public Instant getLastInstant() {
+            return timeRange.getLastInstant();
+        }
+        @Override
+        public boolean isExpired(Instant instant) {
+            return timeRange.isExpired(instant);
+        }
+        @Override
+        public boolean isComplete(Instant instant) {
+            return timeRange.isComplete(instant);
+        }
+        @Override
+        public Duration duration(Instant now) {
+            return timeRange.duration(now);
+        }
+        @Override
+        public void clean() {
+            timeRange.clean();
+        }
+    }
+
+}
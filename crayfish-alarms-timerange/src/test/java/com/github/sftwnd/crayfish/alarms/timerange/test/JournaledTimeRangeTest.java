@@ -0,0 +1,201 @@
+package com.github.sftwnd.crayfish.alarms.timerange.test;
+
+import com.github.sftwnd.crayfish.alarms.timerange.IElementSerializer;
+import com.github.sftwnd.crayfish.alarms.timerange.ITimeRange;
+import com.github.sftwnd.crayfish.alarms.timerange.ITimeRangeFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JournaledTimeRangeTest {
+
+    private static final Duration DURATION = Duration.ofMinutes(1);
+    private static final Duration INTERVAL = Duration.ofSeconds(1);
+    private static final Duration COMPLETE_TIMEOUT = Duration.ofSeconds(10);
+
+    @TempDir
+    Path directory;
+    private Instant now;
+
+    @Test
+    void restoreTest() {
+        ITimeRange<Instant, Instant> timeRange = factory(4096).timeRange(now);
+        Instant first = now.plusSeconds(1);
+        Instant second = now.plusSeconds(2);
+        Instant third = now.plusSeconds(3);
+        timeRange.addElements(List.of(first, second, third, now.minusSeconds(1)));
+        timeRange.removeElement(second);
+        assertEquals(List.of(first), new ArrayList<>(timeRange.extractFiredElements(first)), "TimeRange has to return fired element");
+        ITimeRange<Instant, Instant> restored = factory(4096).timeRange(now);
+        assertEquals(Duration.ofSeconds(2), restored.duration(first), "Restored TimeRange has to return duration to the nearest element");
+        assertEquals(List.of(third), new ArrayList<>(restored.extractFiredElements(restored.getLastInstant())), "Restored TimeRange has to contain pending elements only");
+    }
+
+    @Test
+    void compactionTest() throws IOException {
+        ITimeRange<Instant, Instant> timeRange = factory(512).timeRange(now);
+        List<Instant> elements = IntStream.range(0, 1000).mapToObj(i -> now.plusMillis(i * 50L)).collect(Collectors.toList());
+        for (int i = 0; i < elements.size(); i++) {
+            timeRange.addElement(elements.get(i));
+            if (i % 10 == 9) {
+                timeRange.extractFiredElements(elements.get(i - 5));
+            }
+        }
+        timeRange.reschedule(elements.get(999), now.plusSeconds(55));
+        try (Stream<Path> files = Files.list(directory)) {
+            Path journal = files.findFirst().orElseThrow();
+            assertTrue(Files.size(journal) < 8192, "Journal has to be compacted");
+        }
+        ITimeRange<Instant, Instant> restored = factory(512).timeRange(now);
+        List<Instant> expected = new ArrayList<>(elements.subList(995, 999));
+        expected.add(now.plusSeconds(55));
+        assertEquals(expected, new ArrayList<>(restored.extractFiredElements(restored.getLastInstant())), "Compacted journal has to contain pending elements only");
+    }
+
+    @Test
+    void duplicateRemoveTest() {
+        ITimeRange<Instant, Instant> timeRange = factory(512).timeRange(now);
+        Instant duplicate = now.plusSeconds(1);
+        timeRange.addElement(duplicate);
+        timeRange.addElement(duplicate);
+        timeRange.removeElement(duplicate);
+        // The records of the other elements overflow the segment, so the journal is compacted
+        List<Instant> elements = IntStream.range(0, 40).mapToObj(i -> now.plusSeconds(10).plusMillis(i)).collect(Collectors.toList());
+        elements.forEach(timeRange::addElement);
+        ITimeRange<Instant, Instant> restored = factory(512).timeRange(now);
+        assertEquals(elements, new ArrayList<>(restored.extractFiredElements(restored.getLastInstant())), "Removed duplicate element hasn't got to be restored");
+    }
+
+    @Test
+    void limitedExtractionTest() {
+        ITimeRange<Instant, Instant> timeRange = factory(4096).timeRange(now);
+        Instant first = now.plusSeconds(1);
+        Instant second = now.plusSeconds(2);
+        Instant third = now.plusSeconds(10);
+        timeRange.addElements(List.of(first, second, third));
+        List<Instant> extracted = new ArrayList<>();
+        assertEquals(2, timeRange.extractFiredElements(second, 2, extracted::add), "TimeRange has to extract elements up to the limit");
+        assertEquals(0, timeRange.extractFiredElements(second, 2, extracted::add), "TimeRange hasn't got to extract elements twice");
+        assertEquals(List.of(first, second), extracted, "TimeRange has to return fired elements");
+        ITimeRange<Instant, Instant> restored = factory(4096).timeRange(now);
+        assertEquals(List.of(third), new ArrayList<>(restored.extractFiredElements(restored.getLastInstant())), "Elements extracted before the empty extraction haven't got to be restored");
+    }
+
+    @Test
+    void refusedRescheduleTest() {
+        ITimeRange<Instant, Instant> timeRange = factory(4096).timeRange(now);
+        Instant element = now.plusSeconds(1);
+        Instant rescheduled = now.plusSeconds(5);
+        timeRange.addElements(List.of(element, rescheduled));
+        assertTrue(timeRange.reschedule(element, now.plusSeconds(3)), "Pending element has to be rescheduled");
+        assertFalse(timeRange.reschedule(element, rescheduled), "Absent element hasn't got to be rescheduled");
+        assertFalse(timeRange.reschedule(now.plusSeconds(4), now.plusSeconds(6)), "Absent element hasn't got to be rescheduled");
+        ITimeRange<Instant, Instant> restored = factory(4096).timeRange(now);
+        assertEquals(List.of(now.plusSeconds(3), rescheduled), new ArrayList<>(restored.extractFiredElements(restored.getLastInstant())), "Refused reschedule hasn't got to be restored");
+    }
+
+    @Test
+    void deleteCompleteTest() throws IOException {
+        ITimeRange<Instant, Instant> timeRange = factory(4096).timeRange(now);
+        timeRange.addElement(now.plusSeconds(1));
+        timeRange.extractFiredElements(now.plusSeconds(2));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(1, files.count(), "Journal of the incomplete range has to be kept");
+        }
+        timeRange.extractFiredElements(timeRange.getLastInstant().plus(COMPLETE_TIMEOUT));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(0, files.count(), "Journal of the complete range has to be deleted");
+        }
+    }
+
+    @Test
+    void snapshotTest() throws IOException {
+        ITimeRange<Instant, Instant> timeRange = factory(4096).timeRange(now);
+        timeRange.addElements(List.of(now.plusSeconds(1), now.plusSeconds(2)));
+        Path snapshot = Files.createTempFile(directory, "timerange", ".snapshot");
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.WRITE)) {
+            timeRange.snapshot(channel, new InstantSerializer()::serialize);
+        }
+        Path other = Files.createDirectory(directory.resolve("other"));
+        ITimeRange<Instant, Instant> otherRange = factory(other, 4096).timeRange(now);
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            otherRange.restore(channel, new InstantSerializer()::deserialize);
+        }
+        ITimeRange<Instant, Instant> restored = factory(other, 4096).timeRange(now);
+        assertEquals(List.of(now.plusSeconds(1), now.plusSeconds(2)), new ArrayList<>(restored.extractFiredElements(restored.getLastInstant())), "Elements restored from the snapshot have to be journaled");
+    }
+
+    @Test
+    void cleanTest() {
+        ITimeRange<Instant, Instant> timeRange = factory(4096).timeRange(now);
+        timeRange.addElement(now.plusSeconds(1));
+        timeRange.clean();
+        timeRange.addElement(now.plusSeconds(2));
+        ITimeRange<Instant, Instant> restored = factory(4096).timeRange(now);
+        assertEquals(List.of(now.plusSeconds(2)), new ArrayList<>(restored.extractFiredElements(restored.getLastInstant())), "Cleaned elements haven't got to be restored");
+    }
+
+    @Test
+    void wrongJournalTest() throws IOException {
+        factory(4096).timeRange(now);
+        try (Stream<Path> files = Files.list(directory)) {
+            Files.write(files.findFirst().orElseThrow(), new byte[64]);
+        }
+        ITimeRangeFactory<Instant, Instant> factory = factory(4096);
+        assertThrows(IllegalStateException.class, () -> factory.timeRange(now), "TimeRange hasn't got to be created on the wrong journal");
+    }
+
+    private ITimeRangeFactory<Instant, Instant> factory(int segmentSize) {
+        return factory(directory, segmentSize);
+    }
+
+    private ITimeRangeFactory<Instant, Instant> factory(Path directory, int segmentSize) {
+        return ITimeRangeFactory.journaled(
+                ITimeRangeFactory.temporal(DURATION, INTERVAL, COMPLETE_TIMEOUT, null),
+                directory, segmentSize, new InstantSerializer(), instant -> instant);
+    }
+
+    @BeforeEach
+    void startUp() {
+        this.now = Instant.now().truncatedTo(ChronoUnit.MINUTES);
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.now = null;
+    }
+
+    static class InstantSerializer implements IElementSerializer<Instant> {
+        @Override
+        public byte[] serialize(Instant element) {
+            return ByteBuffer.allocate(12).putLong(element.getEpochSecond()).putInt(element.getNano()).array();
+        }
+        @Override
+        public Instant deserialize(byte[] bytes) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            return Instant.ofEpochSecond(buffer.getLong(), buffer.getInt());
+        }
+    }
+
+}
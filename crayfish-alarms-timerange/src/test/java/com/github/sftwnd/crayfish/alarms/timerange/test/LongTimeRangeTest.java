@@ -0,0 +1,173 @@
+package com.github.sftwnd.crayfish.alarms.timerange.test;
+
+import com.github.sftwnd.crayfish.alarms.timerange.ILongTimeRange;
+import com.github.sftwnd.crayfish.alarms.timerange.ILongTimeRangeFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LongTimeRangeTest {
+
+    private static final Duration DURATION = Duration.ofMinutes(1);
+    private static final Duration INTERVAL = Duration.ofSeconds(1);
+    private static final Duration COMPLETE_TIMEOUT = Duration.ofSeconds(10);
+
+    private Instant now;
+    private ILongTimeRange timeRange;
+
+    @Test
+    void addSkipOthersElementsTest() {
+        assertFalse(timeRange.addElement(1L, now.toEpochMilli() - 1), "Element before the range has to be excluded");
+        assertFalse(timeRange.addElement(2L, timeRange.getLastInstant().toEpochMilli()), "Element after the range has to be excluded");
+        assertFalse(timeRange.addElement(3L, Long.MAX_VALUE), "Element far after the range has to be excluded");
+        assertTrue(timeRange.addElement(4L, now.toEpochMilli()), "Element on the start of the range has to be added");
+        assertFalse(timeRange.isComplete(timeRange.getLastInstant().plus(COMPLETE_TIMEOUT)), "TimeRange with elements hasn't got to be complete");
+    }
+
+    @Test
+    void extractInsideIntervalTest() {
+        timeRange.addElement(1L, now.plusMillis(200).toEpochMilli());
+        timeRange.addElement(2L, now.plusMillis(100).toEpochMilli());
+        timeRange.addElement(3L, now.plusMillis(300).toEpochMilli());
+        List<Long> fired = new ArrayList<>();
+        assertEquals(2, timeRange.extractFiredElements(now.plusMillis(200), fired::add), "TimeRange has to return number of fired elements");
+        assertEquals(Set.of(1L, 2L), new HashSet<>(fired), "TimeRange has to return only happened elements");
+        assertEquals(Duration.ofMillis(100), timeRange.duration(now.plusMillis(200)), "TimeRange has to return duration to the nearest element");
+        fired.clear();
+        assertEquals(1, timeRange.extractFiredElements(now.plusSeconds(5), fired::add), "TimeRange has to return rest of the elements");
+        assertEquals(List.of(3L), fired, "TimeRange has to return rest of the elements");
+    }
+
+    @Test
+    void extractRandomElementsTest() {
+        Random random = new Random(DURATION.toMillis());
+        Map<Long, Long> elements = new HashMap<>();
+        for (long id = 0; id < 5000; id++) {
+            long epochMillis = now.toEpochMilli() + Math.floorMod(random.nextLong(), DURATION.toMillis());
+            elements.put(id, epochMillis);
+            assertTrue(timeRange.addElement(id, epochMillis), "Element in the range has to be accepted");
+        }
+        List<Long> checkPoints = random.longs(100, 0, DURATION.toMillis()).sorted().boxed().collect(Collectors.toList());
+        for (long checkPoint : checkPoints) {
+            long epochMillis = now.toEpochMilli() + checkPoint;
+            Set<Long> expected = elements.entrySet().stream().filter(entry -> entry.getValue() <= epochMillis).map(Map.Entry::getKey).collect(Collectors.toSet());
+            expected.forEach(elements::remove);
+            Set<Long> fired = new HashSet<>();
+            timeRange.extractFiredElements(Instant.ofEpochMilli(epochMillis), fired::add);
+            assertEquals(expected, fired, "TimeRange has to return all happened elements");
+            Duration expectedDuration = elements.values().stream().min(Long::compareTo)
+                    .map(millis -> Duration.ofMillis(millis - epochMillis))
+                    .orElse(Duration.between(Instant.ofEpochMilli(epochMillis), timeRange.getLastInstant().plus(COMPLETE_TIMEOUT)));
+            assertEquals(expectedDuration, timeRange.duration(Instant.ofEpochMilli(epochMillis)), "TimeRange has to return duration to the nearest element");
+        }
+        Set<Long> fired = new HashSet<>();
+        timeRange.extractFiredElements(timeRange.getLastInstant(), fired::add);
+        assertEquals(elements.keySet(), fired, "TimeRange has to return all elements at the end of the range");
+        assertTrue(timeRange.isComplete(timeRange.getLastInstant().plus(COMPLETE_TIMEOUT)), "TimeRange without elements has to be complete");
+    }
+
+    @Test
+    void consumerExceptionTest() {
+        timeRange.addElement(1L, now.toEpochMilli());
+        timeRange.addElement(2L, now.toEpochMilli());
+        Instant instant = now.plusSeconds(1);
+        assertThrows(IllegalStateException.class, () -> timeRange.extractFiredElements(instant, id -> { throw new IllegalStateException(); }), "Consumer exception has to be thrown");
+        List<Long> fired = new ArrayList<>();
+        timeRange.extractFiredElements(instant, fired::add);
+        assertEquals(List.of(2L), fired, "Elements not passed to the consumer have to stay in the TimeRange");
+    }
+
+    @Test
+    void removeElementTest() {
+        long epochMillis = now.plusMillis(100).toEpochMilli();
+        timeRange.addElement(1L, epochMillis);
+        timeRange.addElement(2L, epochMillis);
+        timeRange.addElement(3L, now.plusSeconds(2).toEpochMilli());
+        assertFalse(timeRange.removeElement(1L, epochMillis + 1), "Alarm with other moment hasn't got to be removed");
+        assertTrue(timeRange.removeElement(1L, epochMillis), "Pending alarm has to be removed");
+        assertTrue(timeRange.removeElement(2L, epochMillis), "Pending alarm has to be removed");
+        assertEquals(Duration.ofSeconds(2), timeRange.duration(now), "Duration after the nearest alarm removal has to be equals duration to the next alarm");
+        assertTrue(timeRange.removeElement(3L, now.plusSeconds(2).toEpochMilli()), "Pending alarm has to be removed");
+        assertTrue(timeRange.isComplete(timeRange.getLastInstant().plus(COMPLETE_TIMEOUT)), "TimeRange without alarms has to be complete");
+    }
+
+    @Test
+    void rescheduleTest() {
+        long epochMillis = now.plusSeconds(30).toEpochMilli();
+        long rescheduledMillis = now.plusSeconds(1).toEpochMilli();
+        timeRange.addElement(1L, epochMillis);
+        assertFalse(timeRange.reschedule(1L, epochMillis, timeRange.getLastInstant().toEpochMilli()), "Alarm hasn't got to be rescheduled out of range");
+        assertTrue(timeRange.reschedule(1L, epochMillis, rescheduledMillis), "Pending alarm has to be rescheduled");
+        assertFalse(timeRange.reschedule(1L, epochMillis, rescheduledMillis), "Not found alarm hasn't got to be rescheduled");
+        assertEquals(Duration.ofSeconds(1), timeRange.duration(now), "Duration after reschedule has to be equals duration to the new time");
+    }
+
+    @Test
+    void cleanTest() {
+        timeRange.addElement(1L, now.plusSeconds(1).toEpochMilli());
+        timeRange.clean();
+        assertTrue(timeRange.isComplete(timeRange.getLastInstant().plus(COMPLETE_TIMEOUT)), "TimeRange after clean() call has to be complete");
+    }
+
+    @Test
+    void manyIntervalsTest() {
+        // A year with the millisecond interval: the buckets are allocated only for the intervals with alarms
+        ILongTimeRange year = ILongTimeRangeFactory.create(Duration.ofDays(365), Duration.ofMillis(1), Duration.ZERO).timeRange(now);
+        assertTrue(year.addElement(2L, now.plus(Duration.ofDays(300)).toEpochMilli()), "Far alarm has to be added");
+        assertTrue(year.addElement(1L, now.plusMillis(1).toEpochMilli()), "Near alarm has to be added");
+        List<Long> fired = new ArrayList<>();
+        assertEquals(1, year.extractFiredElements(now.plus(Duration.ofDays(1)), fired::add), "Near alarm has to be fired");
+        assertEquals(Duration.ofDays(299), year.duration(now.plus(Duration.ofDays(1))), "Duration has to be calculated to the far alarm");
+        assertEquals(1, year.extractFiredElements(year.getLastInstant(), fired::add), "Far alarm has to be fired over the empty intervals");
+        assertEquals(List.of(1L, 2L), fired, "Alarms have to be fired in the order of the moments");
+    }
+
+    @Test
+    void snapshotRestoreTest() {
+        timeRange.addElement(1L, now.plusMillis(100).toEpochMilli());
+        timeRange.addElement(2L, now.plusSeconds(20).toEpochMilli());
+        timeRange.addElement(3L, now.plusSeconds(30).toEpochMilli());
+        timeRange.extractFiredElements(now.plusSeconds(1), id -> {});
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        timeRange.snapshot(Channels.newChannel(snapshot));
+        ILongTimeRange restored = ILongTimeRangeFactory.create(DURATION, INTERVAL, COMPLETE_TIMEOUT).timeRange(now);
+        restored.restore(Channels.newChannel(new ByteArrayInputStream(snapshot.toByteArray())));
+        assertEquals(Duration.ofSeconds(19), restored.duration(now.plusSeconds(1)), "Restored TimeRange has to return duration to the nearest alarm");
+        List<Long> fired = new ArrayList<>();
+        restored.extractFiredElements(restored.getLastInstant(), fired::add);
+        assertEquals(List.of(2L, 3L), fired, "Restored TimeRange has to contain pending alarms only");
+    }
+
+    @BeforeEach
+    void startUp() {
+        this.now = Instant.now().truncatedTo(ChronoUnit.MINUTES);
+        this.timeRange = ILongTimeRangeFactory.create(DURATION, INTERVAL, COMPLETE_TIMEOUT).timeRange(now);
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.now = null;
+        this.timeRange = null;
+    }
+
+}
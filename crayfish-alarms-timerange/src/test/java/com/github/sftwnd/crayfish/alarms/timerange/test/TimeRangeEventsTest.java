@@ -0,0 +1,57 @@
+package com.github.sftwnd.crayfish.alarms.timerange.test;
+
+import com.github.sftwnd.crayfish.alarms.timerange.ITimeRange;
+import com.github.sftwnd.crayfish.alarms.timerange.ITimeRangeFactory;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TimeRangeEventsTest {
+
+    private static final String ADD_EVENT = "com.github.sftwnd.crayfish.alarms.TimeRangeAdd";
+    private static final String EXTRACT_EVENT = "com.github.sftwnd.crayfish.alarms.TimeRangeExtract";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recordingTest() throws IOException {
+        Instant now = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        ITimeRange<Instant, Instant> timeRange = ITimeRangeFactory.<Instant>temporal(
+                Duration.ofMinutes(1), Duration.ofSeconds(1), Duration.ZERO, null
+        ).timeRange(now);
+        Path file = directory.resolve("timerange.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(ADD_EVENT);
+            recording.enable(EXTRACT_EVENT);
+            recording.start();
+            timeRange.addElements(List.of(now, now.plusMillis(1500), now.minusNanos(1)));
+            timeRange.extractFiredElements(now.plusSeconds(2));
+            recording.stop();
+            recording.dump(file);
+        }
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        List<RecordedEvent> adds = events.stream().filter(event -> ADD_EVENT.equals(event.getEventType().getName())).collect(Collectors.toList());
+        List<RecordedEvent> extracts = events.stream().filter(event -> EXTRACT_EVENT.equals(event.getEventType().getName())).collect(Collectors.toList());
+        assertEquals(1, adds.size(), "Registration has to be recorded");
+        assertEquals(3, adds.get(0).getInt("elements"), "Size of the batch has to be recorded");
+        assertEquals(1, adds.get(0).getInt("rejected"), "Number of the rejected elements has to be recorded");
+        assertEquals(1, extracts.size(), "Extraction has to be recorded");
+        assertEquals(2, extracts.get(0).getInt("fired"), "Number of the fired elements has to be recorded");
+        assertEquals(2, extracts.get(0).getInt("buckets"), "Number of the touched buckets has to be recorded");
+        assertEquals(Duration.ofSeconds(2), extracts.get(0).getDuration("lateness"), "Lateness of the earliest element has to be recorded");
+    }
+
+}
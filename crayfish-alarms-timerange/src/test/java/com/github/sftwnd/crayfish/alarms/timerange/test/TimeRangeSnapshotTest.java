@@ -0,0 +1,142 @@
+package com.github.sftwnd.crayfish.alarms.timerange.test;
+
+import com.github.sftwnd.crayfish.alarms.timerange.ITimeRange;
+import com.github.sftwnd.crayfish.alarms.timerange.ITimeRangeFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimeRangeSnapshotTest {
+
+    private static final Duration DURATION = Duration.ofMinutes(1);
+    private static final Duration INTERVAL = Duration.ofSeconds(1);
+    private static final Duration COMPLETE_TIMEOUT = Duration.ofSeconds(10);
+    private static final Function<Instant, byte[]> SERIALIZER = instant -> ByteBuffer.allocate(12).putLong(instant.getEpochSecond()).putInt(instant.getNano()).array();
+    private static final Function<byte[], Instant> DESERIALIZER = bytes -> {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return Instant.ofEpochSecond(buffer.getLong(), buffer.getInt());
+    };
+
+    @TempDir
+    Path directory;
+    private Instant now;
+    private ITimeRangeFactory<Instant, Instant> timeRangeFactory;
+
+    @Test
+    void snapshotRestoreTest() throws IOException {
+        Random random = new Random(DURATION.toMillis());
+        List<Instant> elements = IntStream.range(0, 100000)
+                .mapToObj(i -> now.plusNanos(Math.floorMod(random.nextLong(), DURATION.toNanos())))
+                .collect(Collectors.toList());
+        ITimeRange<Instant, Instant> timeRange = timeRangeFactory.timeRange(now);
+        timeRange.addElements(elements);
+        Instant checkPoint = now.plusSeconds(30);
+        timeRange.extractFiredElements(checkPoint);
+        Path snapshot = directory.resolve("timerange.snapshot");
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            timeRange.snapshot(channel, SERIALIZER);
+        }
+        ITimeRange<Instant, Instant> restored = timeRangeFactory.timeRange(now);
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            restored.restore(channel, DESERIALIZER);
+        }
+        assertEquals(timeRange.duration(checkPoint), restored.duration(checkPoint), "Restored TimeRange has to return the same duration to the nearest element");
+        assertEquals(new ArrayList<>(timeRange.extractFiredElements(timeRange.getLastInstant())),
+                new ArrayList<>(restored.extractFiredElements(restored.getLastInstant())),
+                "Restored TimeRange has to return all pending elements in order");
+    }
+
+    @Test
+    void emptySnapshotTest() throws IOException {
+        Path snapshot = directory.resolve("empty.snapshot");
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            timeRangeFactory.timeRange(now).snapshot(channel, SERIALIZER);
+        }
+        ITimeRange<Instant, Instant> restored = timeRangeFactory.timeRange(now);
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            restored.restore(channel, DESERIALIZER);
+        }
+        assertTrue(restored.isComplete(restored.getLastInstant().plus(COMPLETE_TIMEOUT)), "TimeRange restored from the empty snapshot has to be complete");
+        assertEquals(new HashSet<>(), new HashSet<>(restored.extractFiredElements(restored.getLastInstant())), "TimeRange restored from the empty snapshot hasn't got elements");
+    }
+
+    @Test
+    void wrongRangeSnapshotTest() throws IOException {
+        Path snapshot = directory.resolve("wrong.snapshot");
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            ITimeRange<Instant, Instant> timeRange = timeRangeFactory.timeRange(now);
+            timeRange.addElement(now.plusSeconds(1));
+            timeRange.snapshot(channel, SERIALIZER);
+        }
+        ITimeRange<Instant, Instant> restored = timeRangeFactory.timeRange(now.plus(DURATION));
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            assertThrows(IllegalStateException.class, () -> restored.restore(channel, DESERIALIZER), "Snapshot of the other range hasn't got to be restored");
+        }
+    }
+
+    @Test
+    void implementationsSnapshotTest() throws IOException {
+        List<ITimeRangeFactory<Instant, Instant>> factories = List.of(
+                ITimeRangeFactory.wheel(DURATION, INTERVAL, COMPLETE_TIMEOUT, (Instant instant) -> instant),
+                ITimeRangeFactory.concurrent(DURATION, INTERVAL, COMPLETE_TIMEOUT, (Instant instant) -> instant, null),
+                ITimeRangeFactory.hashed(DURATION, INTERVAL, COMPLETE_TIMEOUT, (Instant instant) -> instant, null));
+        Random random = new Random(DURATION.toMillis());
+        List<Instant> elements = IntStream.range(0, 10000)
+                .mapToObj(i -> now.plusNanos(Math.floorMod(random.nextLong(), DURATION.toNanos())))
+                .collect(Collectors.toList());
+        Instant checkPoint = now.plusSeconds(30);
+        for (ITimeRangeFactory<Instant, Instant> factory : factories) {
+            ITimeRange<Instant, Instant> timeRange = factory.timeRange(now);
+            timeRange.addElements(elements);
+            timeRange.extractFiredElements(checkPoint);
+            Path snapshot = Files.createTempFile(directory, "timerange", ".snapshot");
+            try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.WRITE)) {
+                timeRange.snapshot(channel, SERIALIZER);
+            }
+            ITimeRange<Instant, Instant> restored = factory.timeRange(now);
+            try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+                restored.restore(channel, DESERIALIZER);
+            }
+            String name = timeRange.getClass().getSimpleName();
+            assertEquals(timeRange.duration(checkPoint), restored.duration(checkPoint), name + " restored has to return the same duration to the nearest element");
+            assertEquals(new HashSet<>(timeRange.extractFiredElements(timeRange.getLastInstant())),
+                    new HashSet<>(restored.extractFiredElements(restored.getLastInstant())),
+                    name + " restored has to return all pending elements");
+        }
+    }
+
+    @BeforeEach
+    void startUp() {
+        this.now = Instant.now().truncatedTo(ChronoUnit.MINUTES);
+        this.timeRangeFactory = ITimeRangeFactory.temporal(DURATION, INTERVAL, COMPLETE_TIMEOUT, null);
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.now = null;
+        this.timeRangeFactory = null;
+    }
+
+}
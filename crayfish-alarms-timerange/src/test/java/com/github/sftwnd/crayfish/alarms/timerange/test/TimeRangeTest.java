@@ -232,6 +232,31 @@ class TimeRangeTest {
         assertTrue(timeRange.extractFiredElements(limit).isEmpty(), "Collection has to be empty after clean() call");
     }
 
+    @Test
+    void extractOrderedTest() {
+        this.timeRange.addElements(List.of(elementC, elementA, elementB));
+        assertEquals(List.of(elementA, elementB, elementC), new ArrayList<>(this.timeRange.extractFiredElements(now)),
+                "TimeRange has to return fired elements in ascending order of the time marker");
+    }
+
+    @Test
+    void extractToConsumerTest() {
+        addElements();
+        List<ExpectedTest> fired = new ArrayList<>();
+        assertEquals(2, this.timeRange.extractFiredElements(elementB.getTick(), fired::add), "TimeRange has to return number of fired elements");
+        assertEquals(List.of(elementA, elementB), fired, "TimeRange has to pass fired elements to the consumer");
+        assertEquals(Duration.between(elementB.getTick(), elementC.getTick()), this.timeRange.duration(elementB.getTick()),
+                "Duration after extract has to be equals duration to the next element");
+    }
+
+    @Test
+    void cleanDurationTest() {
+        addElements();
+        timeRange.clean();
+        assertEquals(Duration.between(timeRange.getStartInstant(), now.plus(completeTimeout)), timeRange.duration(timeRange.getStartInstant()),
+                "Duration after clean() call has to be equals duration to the end plus completion");
+    }
+
     @Test
     void getStartInstantTest() {
         assertEquals(now.minus(1, ChronoUnit.MINUTES), timeRange.getStartInstant(), "TimeRange::getStartInstant - wrong result");
@@ -287,6 +312,64 @@ class TimeRangeTest {
         assertEquals(List.of(strD), timeRange.extractFiredElements(now.plusMillis(1)), "constructPackable has to return one element");
     }
 
+    @Test
+    void removeElementsTest() {
+        addElements();
+        ExpectedTest missed = expected(now.minusSeconds(3));
+        assertEquals(List.of(missed), new ArrayList<>(timeRange.removeElements(List.of(elementA, missed))), "Not found element has to be returned by removeElements");
+        assertEquals(Duration.between(elementA.getTick(), elementB.getTick()), timeRange.duration(elementA.getTick()),
+                "Duration after the nearest element removal has to be equals duration to the next element");
+        assertTrue(timeRange.removeElement(elementB).isEmpty(), "Pending element has to be removed");
+        assertEquals(List.of(elementC), new ArrayList<>(timeRange.extractFiredElements(now)), "Removed elements hasn't got to be fired");
+        assertEquals(List.of(elementC), new ArrayList<>(timeRange.removeElement(elementC)), "Fired element can't be removed");
+    }
+
+    @Test
+    void rescheduleTest() {
+        addElements();
+        ExpectedTest rescheduled = expected(now.minusSeconds(1));
+        assertTrue(timeRange.reschedule(elementA, rescheduled), "Pending element has to be rescheduled");
+        assertEquals(Duration.between(elementA.getTick(), elementB.getTick()), timeRange.duration(elementA.getTick()),
+                "Duration after the nearest element reschedule has to be equals duration to the next element");
+        assertFalse(timeRange.reschedule(elementA, rescheduled), "Not found element hasn't got to be rescheduled");
+        assertFalse(timeRange.reschedule(elementB, expected(now)), "Element hasn't got to be rescheduled out of range");
+        assertEquals(List.of(elementB, elementC, rescheduled), new ArrayList<>(timeRange.extractFiredElements(now)), "Rescheduled element has to be fired at the new time");
+    }
+
+    @Test
+    void addFarElementsTest() {
+        this.timeRange.addElements(List.of(elementC, elementB, elementC, elementA));
+        assertEquals(Duration.between(timeRange.getStartInstant(), elementA.getTick()), timeRange.duration(timeRange.getStartInstant()),
+                "Duration has to be equals duration to the nearest element before the bucket is sorted");
+        assertEquals(List.of(elementA, elementB, elementC), new ArrayList<>(this.timeRange.extractFiredElements(now)),
+                "TimeRange has to return unique fired elements in ascending order of the time marker");
+    }
+
+    @Test
+    void extractLimitedTest() {
+        addElements();
+        List<ExpectedTest> fired = new ArrayList<>();
+        assertEquals(2, timeRange.extractFiredElements(now, 2, fired::add), "TimeRange hasn't got to return more than limit elements");
+        assertEquals(List.of(elementA, elementB), fired, "TimeRange has to return the earliest elements on the limit");
+        assertEquals(Duration.ZERO, timeRange.duration(now), "Fired elements over the limit has to stay in the TimeRange");
+        assertEquals(List.of(elementC), new ArrayList<>(timeRange.extractFiredElements(now)), "Fired elements over the limit has to be returned by the next call");
+    }
+
+    @Test
+    void manyIntervalsTest() {
+        // A century with the millisecond interval: the buckets are allocated only for the intervals with elements
+        ITimeRange<ExpectedTest, ExpectedTest> century = ITimeRangeFactory.<ExpectedTest>expected(Duration.ofDays(36525), Duration.ofMillis(1), Duration.ZERO, null)
+                .timeRange(now);
+        ExpectedTest first = expected(now.plusMillis(1));
+        ExpectedTest middle = expected(now.plus(Duration.ofDays(365)));
+        ExpectedTest last = expected(now.plus(Duration.ofDays(36524)));
+        assertTrue(century.addElements(List.of(last, first, middle)).isEmpty(), "Elements have to be added to the range with many intervals");
+        assertEquals(Duration.ofMillis(1), century.duration(now), "Duration has to be calculated to the nearest element");
+        assertEquals(List.of(first, middle), new ArrayList<>(century.extractFiredElements(middle.getTick())), "Elements have to be fired over the empty intervals");
+        assertEquals(Duration.ofDays(36524 - 365), century.duration(middle.getTick()), "Duration has to be calculated to the far element");
+        assertEquals(List.of(last), new ArrayList<>(century.extractFiredElements(century.getLastInstant())), "Last element has to be fired");
+    }
+
     void addElements() {
         timeRange.addElements(elements);
     }
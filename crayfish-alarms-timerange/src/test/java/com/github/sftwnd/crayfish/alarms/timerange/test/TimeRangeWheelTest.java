@@ -0,0 +1,177 @@
+package com.github.sftwnd.crayfish.alarms.timerange.test;
+
+import com.github.sftwnd.crayfish.alarms.timerange.AlarmMetrics;
+import com.github.sftwnd.crayfish.alarms.timerange.ITimeRange;
+import com.github.sftwnd.crayfish.alarms.timerange.ITimeRangeFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimeRangeWheelTest {
+
+    private static final Duration DURATION = Duration.ofHours(3);
+    private static final Duration INTERVAL = Duration.ofMillis(250);
+    private static final Duration COMPLETE_TIMEOUT = Duration.ofSeconds(10);
+
+    private Instant now;
+    private ITimeRange<Instant, Instant> timeRange;
+
+    @Test
+    void addSkipOthersElementsTest() {
+        List<Instant> exclude = List.of(now.minusNanos(1), timeRange.getLastInstant());
+        assertEquals(exclude, new ArrayList<>(timeRange.addElements(exclude)), "Elements before and after the range has to be excluded from addElements operation");
+        assertTrue(timeRange.isComplete(timeRange.getLastInstant().plus(COMPLETE_TIMEOUT)), "TimeRange without elements has to be complete");
+    }
+
+    @Test
+    void extractOnStartTest() {
+        timeRange.addElements(List.of(now, now.plusNanos(1)));
+        assertEquals(List.of(now), new ArrayList<>(timeRange.extractFiredElements(now)), "TimeRange has to return element on the start of the range");
+        assertEquals(List.of(now.plusNanos(1)), new ArrayList<>(timeRange.extractFiredElements(now.plusNanos(1))), "TimeRange has to return element inside the interval");
+    }
+
+    @Test
+    void extractRandomElementsTest() {
+        Random random = new Random(DURATION.toMillis());
+        List<Instant> elements = IntStream.range(0, 20000)
+                .mapToObj(i -> now.plusNanos(Math.floorMod(random.nextLong(), DURATION.toNanos())))
+                .collect(Collectors.toList());
+        assertTrue(timeRange.addElements(elements).isEmpty(), "All elements in the range has to be accepted");
+        List<Instant> checkPoints = IntStream.range(0, 500)
+                .mapToObj(i -> now.plusNanos(Math.floorMod(random.nextLong(), DURATION.toNanos())))
+                .sorted()
+                .collect(Collectors.toList());
+        List<Instant> pending = new ArrayList<>(elements);
+        for (Instant checkPoint : checkPoints) {
+            Set<Instant> expected = pending.stream().filter(instant -> !instant.isAfter(checkPoint)).collect(Collectors.toSet());
+            pending.removeAll(expected);
+            Collection<Instant> fired = timeRange.extractFiredElements(checkPoint);
+            assertEquals(expected.size(), fired.size(), "TimeRange has to return all happened elements");
+            assertEquals(expected, new HashSet<>(fired), "TimeRange has to return only happened elements");
+            Duration expectedDuration = pending.stream().min(Instant::compareTo)
+                    .map(instant -> Duration.between(checkPoint, instant))
+                    .orElse(Duration.between(checkPoint, timeRange.getLastInstant().plus(COMPLETE_TIMEOUT)));
+            assertEquals(expectedDuration, timeRange.duration(checkPoint), "TimeRange has to return duration to the nearest element");
+        }
+        assertEquals(new HashSet<>(pending), new HashSet<>(timeRange.extractFiredElements(timeRange.getLastInstant())), "TimeRange has to return all elements at the end of the range");
+    }
+
+    @Test
+    void addAfterExtractTest() {
+        Instant first = now.plus(Duration.ofHours(1));
+        Instant second = now.plus(Duration.ofHours(2));
+        timeRange.addElement(second);
+        assertTrue(timeRange.extractFiredElements(first).isEmpty(), "TimeRange hasn't got to return elements in future");
+        timeRange.addElements(List.of(first.minusSeconds(1), first.plusMillis(1)));
+        assertEquals(List.of(first.minusSeconds(1)), new ArrayList<>(timeRange.extractFiredElements(first)), "TimeRange has to return overdue element");
+        assertEquals(Duration.ofMillis(1), timeRange.duration(first), "TimeRange has to return duration to the nearest element");
+        assertEquals(Set.of(first.plusMillis(1), second), new HashSet<>(timeRange.extractFiredElements(second)), "TimeRange has to return both elements");
+    }
+
+    @Test
+    void sameInstantElementsTest() {
+        timeRange.addElements(Collections.nCopies(3, now.plusSeconds(1)));
+        assertEquals(3, timeRange.extractFiredElements(now.plusSeconds(1)).size(), "Wheel hasn't got to filter out duplicates");
+    }
+
+    @Test
+    void removeElementsTest() {
+        Instant first = now.plusSeconds(1);
+        Instant second = now.plus(Duration.ofHours(2));
+        timeRange.addElements(List.of(first, second, second));
+        assertTrue(timeRange.removeElement(first).isEmpty(), "Pending element has to be removed");
+        assertEquals(Duration.between(now, second), timeRange.duration(now), "Duration after the nearest element removal has to be equals duration to the next element");
+        assertTrue(timeRange.extractFiredElements(now.plus(Duration.ofHours(1))).isEmpty(), "Removed element hasn't got to be fired");
+        assertTrue(timeRange.removeElement(second).isEmpty(), "Cascaded element has to be removed");
+        assertEquals(List.of(first), new ArrayList<>(timeRange.removeElement(first)), "Not found element has to be returned by removeElement");
+        assertEquals(List.of(second), new ArrayList<>(timeRange.extractFiredElements(second)), "Just one occurrence of the element has to be removed");
+    }
+
+    @Test
+    void rescheduleTest() {
+        Instant first = now.plus(Duration.ofHours(2));
+        Instant rescheduled = now.plusSeconds(1);
+        timeRange.addElement(first);
+        assertTrue(timeRange.reschedule(first, rescheduled), "Pending element has to be rescheduled");
+        assertEquals(Duration.ofSeconds(1), timeRange.duration(now), "Duration after reschedule has to be equals duration to the new time");
+        assertFalse(timeRange.reschedule(rescheduled, timeRange.getLastInstant()), "Element hasn't got to be rescheduled out of range");
+        assertEquals(List.of(rescheduled), new ArrayList<>(timeRange.extractFiredElements(rescheduled)), "Rescheduled element has to be fired at the new time");
+        assertTrue(timeRange.extractFiredElements(timeRange.getLastInstant()).isEmpty(), "Element hasn't got to be fired at the old time");
+    }
+
+    @Test
+    void extractLimitedTest() {
+        List<Instant> elements = IntStream.range(0, 10).mapToObj(i -> now.plusMillis(100L * i)).collect(Collectors.toList());
+        timeRange.addElements(elements);
+        Instant checkPoint = now.plusSeconds(1);
+        Set<Instant> fired = new HashSet<>();
+        assertEquals(3, timeRange.extractFiredElements(checkPoint, 3, fired::add), "Wheel hasn't got to return more than limit elements");
+        assertEquals(Set.copyOf(elements.subList(0, 3)), fired, "Wheel has to return the elements of the earliest intervals on the limit");
+        assertEquals(Duration.ZERO, timeRange.duration(checkPoint), "Fired elements over the limit has to stay in the wheel");
+        assertEquals(Set.copyOf(elements.subList(3, 10)), new HashSet<>(timeRange.extractFiredElements(checkPoint)), "Fired elements over the limit has to be returned by the next call");
+    }
+
+    @Test
+    void metricsTest() {
+        AlarmMetrics metrics = new AlarmMetrics();
+        timeRange.setMetrics(metrics);
+        // The far elements are placed to the slots of the upper levels and are cascaded down on the extraction
+        List<Instant> elements = List.of(now, now.plusMillis(100), now.plusSeconds(1), now.plusSeconds(100), now.plus(Duration.ofHours(2)));
+        timeRange.addElements(elements);
+        assertEquals(5, metrics.getPendingElements(), "Added elements have to be counted");
+        assertEquals(4, metrics.getPendingBuckets(), "Filled slots have to be counted");
+        timeRange.removeElement(now.plusSeconds(1));
+        assertEquals(3, metrics.getPendingBuckets(), "Emptied slot hasn't got to be counted");
+        assertEquals(2, timeRange.extractFiredElements(now.plusSeconds(50)).size(), "Fired elements have to be extracted");
+        assertEquals(2, metrics.getPendingElements(), "Fired elements hasn't got to be counted");
+        assertEquals(2, metrics.getPendingBuckets(), "Fired slot hasn't got to be counted");
+        assertEquals(1, timeRange.extractFiredElements(now.plusSeconds(101)).size(), "Cascaded element has to be extracted");
+        assertEquals(1, metrics.getPendingBuckets(), "Cascaded and fired slots hasn't got to be counted");
+        assertEquals(3, metrics.getLateness().getCount(), "Lateness of the fired elements has to be recorded");
+        assertEquals(Duration.ofSeconds(50).toNanos(), metrics.getLateness().getMax(), "Lateness has to be measured from the time marker");
+        timeRange.clean();
+        assertEquals(0, metrics.getPendingElements(), "Cleaned elements hasn't got to be counted");
+        assertEquals(0, metrics.getPendingBuckets(), "Cleaned slots hasn't got to be counted");
+    }
+
+    @Test
+    void cleanTest() {
+        timeRange.addElements(List.of(now, now.plusSeconds(1)));
+        assertFalse(timeRange.isComplete(timeRange.getLastInstant().plus(COMPLETE_TIMEOUT)), "TimeRange with elements hasn't got to be complete");
+        timeRange.clean();
+        assertTrue(timeRange.isComplete(timeRange.getLastInstant().plus(COMPLETE_TIMEOUT)), "TimeRange after clean() call has to be complete");
+        assertEquals(Duration.ofSeconds(1).plus(COMPLETE_TIMEOUT), timeRange.duration(timeRange.getLastInstant().minusSeconds(1)),
+                "Duration after clean() call has to be equals duration to the end plus completion");
+    }
+
+    @BeforeEach
+    void startUp() {
+        this.now = Instant.now().truncatedTo(ChronoUnit.MINUTES);
+        ITimeRangeFactory<Instant, Instant> timeRangeFactory = ITimeRangeFactory.wheel(DURATION, INTERVAL, COMPLETE_TIMEOUT, instant -> instant);
+        this.timeRange = timeRangeFactory.timeRange(now);
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.now = null;
+        this.timeRange = null;
+    }
+
+}
@@ -0,0 +1,75 @@
+package com.github.sftwnd.crayfish.alarms.timerange.test;
+
+import com.github.sftwnd.crayfish.alarms.timerange.ITimeRange;
+import com.github.sftwnd.crayfish.alarms.timerange.ITimeRangeFactory;
+import com.github.sftwnd.crayfish.alarms.timerange.ITimeSource;
+import com.github.sftwnd.crayfish.alarms.timerange.VirtualTimeSource;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimeSourceTest {
+
+    @Test
+    void conversionTest() {
+        Instant instant = Instant.parse("2023-01-01T10:15:30.123456789Z");
+        assertEquals(instant, ITimeSource.instant(ITimeSource.nanos(instant)), "Instant has to be restored from nanos");
+        Instant before = Instant.parse("1969-12-31T23:59:59.5Z");
+        assertEquals(before, ITimeSource.instant(ITimeSource.nanos(before)), "Instant before the epoch has to be restored from nanos");
+        assertEquals(Long.MAX_VALUE, ITimeSource.nanos(Instant.MAX), "Nanos has to be limited by MAX_VALUE");
+        assertEquals(Long.MIN_VALUE, ITimeSource.nanos(Instant.MIN), "Nanos has to be limited by MIN_VALUE");
+    }
+
+    @Test
+    void systemTest() {
+        ITimeSource timeSource = ITimeSource.system();
+        long first = timeSource.nanos();
+        long second = timeSource.nanos();
+        assertTrue(second >= first, "System time source has to be monotonic");
+        assertTrue(Duration.between(Instant.now(), timeSource.instant()).abs().compareTo(Duration.ofSeconds(1)) < 0,
+                "System time source has to be anchored to the wall clock");
+    }
+
+    @Test
+    void timeRangeTest() {
+        Instant now = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        AtomicLong nanos = new AtomicLong(ITimeSource.nanos(now));
+        ITimeRange<Instant, Instant> timeRange = ITimeRangeFactory.timed(
+                ITimeRangeFactory.<Instant>temporal(Duration.ofMinutes(1), Duration.ofSeconds(1), Duration.ZERO, null),
+                nanos::get
+        ).timeRange(now);
+        timeRange.addElements(List.of(now.plusSeconds(10), now.plusSeconds(20)));
+        assertEquals(Duration.ofSeconds(10), timeRange.duration(), "Duration has to be calculated from the moment of the time source");
+        nanos.addAndGet(Duration.ofSeconds(15).toNanos());
+        assertEquals(List.of(now.plusSeconds(10)), new ArrayList<>(timeRange.extractFiredElements()), "Elements have to be fired by the moment of the time source");
+        assertFalse(timeRange.isExpired(), "Range hasn't got to be expired by the moment of the time source");
+        nanos.addAndGet(Duration.ofMinutes(1).toNanos());
+        assertEquals(List.of(now.plusSeconds(20)), new ArrayList<>(timeRange.extractFiredElements()), "Elements have to be fired by the moment of the time source");
+        assertTrue(timeRange.isComplete(), "Range has to be complete by the moment of the time source");
+    }
+
+    @Test
+    void virtualTest() {
+        Instant now = Instant.parse("2023-01-01T00:00:00Z");
+        VirtualTimeSource timeSource = new VirtualTimeSource(now);
+        assertEquals(now, timeSource.instant(), "Virtual time has to start from the initial moment");
+        timeSource.advance(Duration.ofHours(1));
+        assertEquals(now.plus(Duration.ofHours(1)), timeSource.instant(), "Virtual time has to be moved by the duration");
+        timeSource.advanceTo(now);
+        assertEquals(now.plus(Duration.ofHours(1)), timeSource.instant(), "Virtual time hasn't got to go back");
+        timeSource.advanceTo(now.plus(Duration.ofDays(1)));
+        assertEquals(now.plus(Duration.ofDays(1)), timeSource.instant(), "Virtual time has to be moved to the moment");
+        assertThrows(IllegalArgumentException.class, () -> timeSource.advance(Duration.ofSeconds(-1)), "Virtual time hasn't got to be moved back");
+    }
+
+}
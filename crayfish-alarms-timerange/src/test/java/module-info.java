@@ -2,5 +2,6 @@ open module com.github.sftwnd.crayfish_alarms_timerange.test {
     requires com.github.sftwnd.crayfish_alarms_timerange;
     requires static lombok;
     requires org.junit.jupiter.api;
+    requires jdk.jfr;
     requires org.mockito;
 }
\ No newline at end of file